@@ -37,6 +37,11 @@ CREATE TABLE documents (
     created_by UUID REFERENCES users(id),
     content TEXT, -- For small to medium documents
     content_binary BYTEA, -- For larger binary content if needed
+    content_type VARCHAR(100), -- MIME type of binary content (e.g. image/png)
+    content_hash VARCHAR(64), -- SHA-256 of the current content, used as the HTTP ETag
+    content_size BIGINT NOT NULL DEFAULT 0, -- Size of the current content in bytes
+    snapshot_seq BIGINT NOT NULL DEFAULT 0, -- Last document_ops entry folded into content
+    chunk_manifest TEXT, -- Comma-separated document_chunks hashes, in order, when content is chunked
     created_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP
 );
@@ -46,11 +51,39 @@ CREATE TABLE document_revisions (
     id UUID PRIMARY KEY DEFAULT uuid_generate_v4(),
     document_id UUID NOT NULL REFERENCES documents(id) ON DELETE CASCADE,
     user_id UUID REFERENCES users(id),
-    content_diff TEXT NOT NULL, -- Store differences between versions
+    content_diff TEXT, -- Store differences between versions
+    chunk_manifest TEXT, -- Set instead of content_diff when the previous content was chunked
     revision_number INTEGER NOT NULL,
     created_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP
 );
 
+-- Create document_ops table: append-only edit log, folded into documents.content by snapshots
+CREATE TABLE document_ops (
+    document_id UUID NOT NULL REFERENCES documents(id) ON DELETE CASCADE,
+    seq BIGINT NOT NULL, -- Per-document sequence number
+    position INTEGER NOT NULL, -- Splice: delete delete_count chars at position, then insert insert_text
+    delete_count INTEGER NOT NULL,
+    insert_text TEXT NOT NULL,
+    user_id UUID REFERENCES users(id) ON DELETE SET NULL,
+    created_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (document_id, seq)
+);
+
+-- Create document_chunks table: content-addressed pieces of large documents, shared across documents and revisions
+CREATE TABLE document_chunks (
+    hash VARCHAR(64) PRIMARY KEY, -- SHA-256 of content
+    content TEXT NOT NULL,
+    size INTEGER NOT NULL, -- Length in characters
+    created_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Create document_chunk_refs table: chunks used by a document or any of its revisions, so sweeps need no manifest scans
+CREATE TABLE document_chunk_refs (
+    document_id UUID NOT NULL REFERENCES documents(id) ON DELETE CASCADE,
+    hash VARCHAR(64) NOT NULL REFERENCES document_chunks(hash),
+    PRIMARY KEY (document_id, hash)
+);
+
 -- Create room_permissions table to track which users can access which rooms
 CREATE TABLE room_permissions (
     id UUID PRIMARY KEY DEFAULT uuid_generate_v4(),
@@ -92,7 +125,10 @@ CREATE TRIGGER update_document_updated_at BEFORE UPDATE
 
 -- Create indexes for performance
 CREATE INDEX idx_documents_room_id ON documents(room_id);
+CREATE INDEX idx_documents_room_created_at_id ON documents(room_id, created_at, id);
+CREATE INDEX idx_rooms_created_at_id ON rooms(created_at, id);
 CREATE INDEX idx_document_revisions_document_id ON document_revisions(document_id);
+CREATE INDEX idx_document_chunk_refs_hash ON document_chunk_refs(hash);
 CREATE INDEX idx_room_permissions_room_id ON room_permissions(room_id);
 CREATE INDEX idx_room_permissions_user_id ON room_permissions(user_id);
 CREATE INDEX idx_room_visits_room_id ON room_visits(room_id);
@@ -0,0 +1,143 @@
+package com.example.demo.config;
+
+import com.example.demo.dto.DocumentResponse;
+import com.example.demo.dto.DocumentUpdateRequest;
+import com.example.demo.service.DocumentService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The room WebSocket hot path in isolation: a client message is parsed, dispatched and
+ * re-serialized by {@link RoomWebSocketHandler}, then fanned out to every other session
+ * in the room. Sessions are in-memory stubs and persistence is stubbed out, so results
+ * cover only the handler's own CPU and allocation cost; run with {@code -prof gc} (the
+ * profile default) for allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoomMessagePathBenchmark {
+
+    @Param({"1024", "16384", "262144", "1048576"})
+    private int payloadBytes;
+
+    @Param({"2", "50", "500"})
+    private int roomSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private RoomWebSocketHandler handler;
+    private StubWebSocketSession sender;
+    private TextMessage documentUpdate;
+    private TextMessage cursorMove;
+    private String documentUpdateJson;
+    private Map<String, Object> parsedUpdate;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        handler = new RoomWebSocketHandler();
+        handler.setDocumentService(new NoOpDocumentService());
+        handler.setRealtimeMetrics(new RealtimeMetrics(new SimpleMeterRegistry(), false));
+        handler.setHotspotTracker(new HotspotTracker(true, 100, 4));
+        handler.setHotPathLogger(new HotPathLogger("sampled", 1000, 8192));
+        handler.setSlowOperationLog(new SlowOperationLog(new SimpleMeterRegistry(), 20, 200, 1000, 5, 100));
+        handler.setAdmissionController(new AdmissionController(new SimpleMeterRegistry(), false, 50, 8, 500, 0.9, 500, 100, 0.5, 0.8));
+
+        UUID roomId = UUID.randomUUID();
+        List<StubWebSocketSession> sessions = new ArrayList<>();
+        for (int i = 0; i < roomSize; i++) {
+            RoomSessionAccess access = new RoomSessionAccess(roomId, UUID.randomUUID(), "user" + i, "write");
+            StubWebSocketSession session = new StubWebSocketSession("session-" + i, access);
+            handler.afterConnectionEstablished(session);
+            sessions.add(session);
+        }
+        sender = sessions.get(0);
+
+        documentUpdateJson = objectMapper.writeValueAsString(Map.of(
+                "type", "DOCUMENT_UPDATE",
+                "documentId", UUID.randomUUID().toString(),
+                "content", randomText(payloadBytes)));
+        documentUpdate = new TextMessage(documentUpdateJson);
+        cursorMove = new TextMessage(objectMapper.writeValueAsString(Map.of(
+                "type", "CURSOR_MOVE",
+                "username", "user0",
+                "position", 42,
+                "padding", randomText(payloadBytes))));
+        parsedUpdate = objectMapper.readValue(documentUpdateJson, Map.class);
+    }
+
+    /**
+     * Full path for a document edit: parse, permission check, persistence call, re-serialize, fan-out.
+     */
+    @Benchmark
+    public long documentUpdate() throws Exception {
+        handler.handleMessage(sender, documentUpdate);
+        return sender.getMessagesSent();
+    }
+
+    /**
+     * Messages the handler does not interpret are parsed once, then relayed as received.
+     */
+    @Benchmark
+    public long relayedMessage() throws Exception {
+        handler.handleMessage(sender, cursorMove);
+        return sender.getMessagesSent();
+    }
+
+    @Benchmark
+    public void parseOnly(Blackhole blackhole) throws Exception {
+        blackhole.consume(objectMapper.readValue(documentUpdateJson, Map.class));
+    }
+
+    @Benchmark
+    public String serializeOnly() throws Exception {
+        return objectMapper.writeValueAsString(parsedUpdate);
+    }
+
+    private static String randomText(int length) {
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(i % 80 == 79 ? '\n' : (char) ('a' + random.nextInt(26)));
+        }
+        return text.toString();
+    }
+
+    // Keeps the database out of the measurement
+    private static final class NoOpDocumentService extends DocumentService {
+
+        NoOpDocumentService() {
+            super(null, null, null, null, null, null, null, null);
+        }
+
+        @Override
+        public Optional<DocumentResponse> updateDocument(UUID roomId, UUID documentId, DocumentUpdateRequest request) {
+            return Optional.of(new DocumentResponse());
+        }
+    }
+}
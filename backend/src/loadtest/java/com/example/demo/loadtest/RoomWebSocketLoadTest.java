@@ -0,0 +1,290 @@
+package com.example.demo.loadtest;
+
+import com.example.demo.dto.DocumentCreateRequest;
+import com.example.demo.dto.DocumentResponse;
+import com.example.demo.dto.RoomCreateRequest;
+import com.example.demo.dto.RoomResponse;
+import com.example.demo.model.DocumentType;
+import com.example.demo.service.DocumentService;
+import com.example.demo.service.RoomService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * End-to-end load generator for room WebSockets. Starts the backend on a random port
+ * against embedded H2, opens {@code rooms x clients} connections to /ws/room/{roomId}
+ * and has every client type into a shared document at a fixed rate. Each edit carries
+ * its send time; peers record edit-to-peer delivery latency in an HDR histogram.
+ * Clients and server share the JVM, so send and receive times share a clock, and
+ * server CPU is measured from the servlet container's own threads.
+ * <p>
+ * Runs only with {@code ./mvnw test -Pload}; size with {@code -Dload.rooms},
+ * {@code -Dload.clients-per-room}, {@code -Dload.edits-per-second} and
+ * {@code -Dload.duration-seconds}. The report is written as JSON to target/loadtest.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("h2")
+@TestPropertySource(properties = {
+        "document-ops.wal.fsync=never",
+        "logging.level.com.example.demo=WARN"
+})
+class RoomWebSocketLoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoomWebSocketLoadTest.class);
+    private static final String SERVER_THREAD_PREFIX = "http-nio-";
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final int rooms = Integer.getInteger("load.rooms", 10);
+    private final int clientsPerRoom = Integer.getInteger("load.clients-per-room", 10);
+    private final int editsPerSecond = Integer.getInteger("load.edits-per-second", 5);
+    private final int warmupSeconds = Integer.getInteger("load.warmup-seconds", 5);
+    private final int durationSeconds = Integer.getInteger("load.duration-seconds", 30);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private RoomService roomService;
+
+    @Autowired
+    private DocumentService documentService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Histogram latency = new ConcurrentHistogram(HIGHEST_TRACKABLE_NANOS, 3);
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private volatile boolean recording;
+
+    @Test
+    void editToPeerLatency() throws Exception {
+        StandardWebSocketClient client = new StandardWebSocketClient();
+        List<Typist> typists = new ArrayList<>();
+        for (int r = 0; r < rooms; r++) {
+            RoomResponse room = roomService.createRoom(RoomCreateRequest.builder()
+                    .name("Load room " + r)
+                    .isPasswordProtected(false)
+                    .build());
+            DocumentResponse document = documentService.createDocument(room.getId(), DocumentCreateRequest.builder()
+                    .name("Shared document")
+                    .type(DocumentType.code)
+                    .content("")
+                    .build()).orElseThrow();
+            URI uri = URI.create("ws://localhost:" + port + "/ws/room/" + room.getId());
+            for (int c = 0; c < clientsPerRoom; c++) {
+                Typist typist = new Typist(document.getId().toString(), "client-" + r + "-" + c);
+                typist.session = client.doHandshake(typist, null, uri).get(10, TimeUnit.SECONDS);
+                typists.add(typist);
+            }
+        }
+        logger.warn("Connected {} clients in {} rooms", typists.size(), rooms);
+
+        ScheduledExecutorService typing = Executors.newScheduledThreadPool(
+                Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+        long periodMicros = 1_000_000L / editsPerSecond;
+        for (Typist typist : typists) {
+            // Spread the clients over the period so edits do not arrive in lockstep
+            long offset = (long) (Math.random() * periodMicros);
+            typing.scheduleAtFixedRate(typist::typeOneEdit, offset, periodMicros, TimeUnit.MICROSECONDS);
+        }
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(warmupSeconds));
+        latency.reset();
+        sent.set(0);
+        delivered.set(0);
+        errors.set(0);
+        recording = true;
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long serverCpuBefore = serverCpuNanos(threads);
+        long processCpuBefore = processCpuNanos();
+        long started = System.nanoTime();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(durationSeconds));
+        recording = false;
+        long elapsed = System.nanoTime() - started;
+        long serverCpu = serverCpuNanos(threads) - serverCpuBefore;
+        long processCpu = processCpuNanos() - processCpuBefore;
+
+        typing.shutdownNow();
+        for (Typist typist : typists) {
+            typist.session.close(CloseStatus.NORMAL);
+        }
+
+        Path report = writeReport(elapsed, serverCpu, processCpu);
+        logger.warn(String.format("Sent %d edits, delivered %d (expected %d); p50 %.2f ms, p99 %.2f ms, p999 %.2f ms; report: %s",
+                sent.get(), delivered.get(), sent.get() * (clientsPerRoom - 1),
+                millis(latency.getValueAtPercentile(50)), millis(latency.getValueAtPercentile(99)),
+                millis(latency.getValueAtPercentile(99.9)), report));
+
+        assertThat(sent.get()).isPositive();
+        assertThat(delivered.get()).isPositive();
+    }
+
+    private Path writeReport(long elapsedNanos, long serverCpuNanos, long processCpuNanos) throws Exception {
+        double seconds = elapsedNanos / 1e9;
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("rooms", rooms);
+        config.put("clientsPerRoom", clientsPerRoom);
+        config.put("editsPerSecondPerClient", editsPerSecond);
+        config.put("warmupSeconds", warmupSeconds);
+        config.put("durationSeconds", durationSeconds);
+        config.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+
+        Map<String, Object> latencyMs = new LinkedHashMap<>();
+        latencyMs.put("count", latency.getTotalCount());
+        latencyMs.put("mean", millis((long) latency.getMean()));
+        for (double percentile : new double[] {50, 90, 99, 99.9}) {
+            latencyMs.put("p" + (percentile == 99.9 ? "999" : Integer.toString((int) percentile)),
+                    millis(latency.getValueAtPercentile(percentile)));
+        }
+        latencyMs.put("max", millis(latency.getMaxValue()));
+
+        Map<String, Object> throughput = new LinkedHashMap<>();
+        throughput.put("editsSent", sent.get());
+        throughput.put("deliveriesExpected", sent.get() * (clientsPerRoom - 1));
+        throughput.put("deliveries", delivered.get());
+        throughput.put("clientErrors", errors.get());
+        throughput.put("editsPerSecond", sent.get() / seconds);
+        throughput.put("deliveriesPerSecond", delivered.get() / seconds);
+
+        Map<String, Object> cpu = new LinkedHashMap<>();
+        // Cores kept busy on average; the process figure includes the load generator itself
+        cpu.put("serverThreadCores", serverCpuNanos / (double) elapsedNanos);
+        cpu.put("processCores", processCpuNanos < 0 ? null : processCpuNanos / (double) elapsedNanos);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("timestamp", Instant.now().toString());
+        report.put("config", config);
+        report.put("elapsedSeconds", seconds);
+        report.put("editToPeerLatencyMs", latencyMs);
+        report.put("throughput", throughput);
+        report.put("cpu", cpu);
+
+        Path out = Paths.get("target", "loadtest", "websocket-report-" + System.currentTimeMillis() + ".json");
+        Files.createDirectories(out.getParent());
+        objectMapper.enable(SerializationFeature.INDENT_OUTPUT).writeValue(out.toFile(), report);
+        return out.toAbsolutePath();
+    }
+
+    private static long serverCpuNanos(ThreadMXBean threads) {
+        long total = 0;
+        for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+            if (info != null && info.getThreadName().startsWith(SERVER_THREAD_PREFIX)) {
+                long cpu = threads.getThreadCpuTime(info.getThreadId());
+                if (cpu > 0) {
+                    total += cpu;
+                }
+            }
+        }
+        return total;
+    }
+
+    private static long processCpuNanos() {
+        java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return -1;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /**
+     * One client: appends a character to the shared document per tick and times every edit it receives from peers.
+     */
+    private final class Typist extends TextWebSocketHandler {
+
+        private final String documentId;
+        private final String name;
+        private final StringBuilder text = new StringBuilder();
+        private volatile WebSocketSession session;
+
+        Typist(String documentId, String name) {
+            this.documentId = documentId;
+            this.name = name;
+        }
+
+        void typeOneEdit() {
+            WebSocketSession current = session;
+            if (current == null || !current.isOpen()) {
+                return;
+            }
+            try {
+                text.append((char) ('a' + text.length() % 26));
+                Map<String, Object> edit = new LinkedHashMap<>();
+                edit.put("type", "DOCUMENT_UPDATE");
+                edit.put("documentId", documentId);
+                edit.put("content", text.toString());
+                edit.put("sender", name);
+                edit.put("sentAtNanos", System.nanoTime());
+                String payload = objectMapper.writeValueAsString(edit);
+                synchronized (this) {
+                    current.sendMessage(new TextMessage(payload));
+                }
+                if (recording) {
+                    sent.incrementAndGet();
+                }
+            } catch (Exception e) {
+                errors.incrementAndGet();
+            }
+        }
+
+        @Override
+        protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+            long receivedAt = System.nanoTime();
+            Map<?, ?> data = objectMapper.readValue(message.getPayload(), Map.class);
+            Object sentAt = data.get("sentAtNanos");
+            if (!"DOCUMENT_UPDATE".equals(data.get("type")) || !(sentAt instanceof Number)) {
+                return;
+            }
+            if (recording) {
+                latency.recordValue(Math.min(HIGHEST_TRACKABLE_NANOS, Math.max(0, receivedAt - ((Number) sentAt).longValue())));
+                delivered.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void handleTransportError(WebSocketSession session, Throwable exception) {
+            errors.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.demo.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Puts the REST API behind {@link AdmissionController#http()}, answering 503 with
+ * Retry-After when a call is shed. Runs after the security filters so rejections still
+ * carry CORS headers. Actuator and the WebSocket handshake are not limited.
+ */
+@Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER + 1)
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionControlFilter.class);
+
+    private static final AntPathMatcher PATHS = new AntPathMatcher();
+
+    private final AdmissionController admissionController;
+
+    @Autowired
+    public AdmissionControlFilter(AdmissionController admissionController) {
+        this.admissionController = admissionController;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !pathOf(request).startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        AdmissionController.Priority priority = priorityOf(request.getMethod(), pathOf(request));
+        AdmissionController.Gate gate = admissionController.http();
+        if (!gate.tryAcquire(priority)) {
+            logger.debug("Shed {} {} ({})", request.getMethod(), request.getRequestURI(), priority);
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"error\":\"Server is busy, please retry\"}");
+            return;
+        }
+        long admittedAt = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            gate.release(admittedAt);
+        }
+    }
+
+    private static String pathOf(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private static AdmissionController.Priority priorityOf(String method, String path) {
+        if (("PUT".equals(method) && PATHS.match("/api/rooms/*/documents/**", path))
+                || ("POST".equals(method) && (PATHS.match("/api/rooms/join", path) || PATHS.match("/api/rooms/*/join", path)))) {
+            return AdmissionController.Priority.CRITICAL;
+        }
+        if ("GET".equals(method) && (PATHS.match("/api/rooms", path)
+                || PATHS.match("/api/rooms/*/documents", path)
+                || PATHS.match("/api/user/rooms", path))) {
+            return AdmissionController.Priority.LOW;
+        }
+        return AdmissionController.Priority.NORMAL;
+    }
+}
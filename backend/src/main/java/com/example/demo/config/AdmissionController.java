@@ -0,0 +1,125 @@
+package com.example.demo.config;
+
+import com.example.demo.util.AimdLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load shedding for REST calls and inbound WebSocket messages. Each has a {@link Gate}
+ * with its own {@link AimdLimiter} and latency SLO, so the concurrency it admits shrinks
+ * as soon as calls get slower than the SLO instead of every caller queueing behind them.
+ * Low-priority work (listings, presence) only gets {@code admission.low-priority-share}
+ * of the limit and normal work {@code admission.normal-priority-share}; document saves
+ * and joins may use all of it, so they are the last to be refused. Work that cannot be
+ * retried is admitted with {@link Gate#acquire} and only counts against the limit.
+ */
+@Component
+public class AdmissionController {
+
+    public enum Priority { LOW, NORMAL, CRITICAL }
+
+    private final boolean enabled;
+    private final Gate http;
+    private final Gate websocket;
+
+    @Autowired
+    public AdmissionController(
+            MeterRegistry meterRegistry,
+            @Value("${admission.enabled:true}") boolean enabled,
+            @Value("${admission.initial-limit:50}") int initialLimit,
+            @Value("${admission.min-limit:8}") int minLimit,
+            @Value("${admission.max-limit:500}") int maxLimit,
+            @Value("${admission.backoff-ratio:0.9}") double backoffRatio,
+            @Value("${admission.http.latency-slo-ms:500}") long httpSloMs,
+            @Value("${admission.websocket.latency-slo-ms:100}") long websocketSloMs,
+            @Value("${admission.low-priority-share:0.5}") double lowPriorityShare,
+            @Value("${admission.normal-priority-share:0.8}") double normalPriorityShare) {
+        this.enabled = enabled;
+        double[] shares = { lowPriorityShare, normalPriorityShare, 1.0 };
+        this.http = new Gate(meterRegistry, "http", shares,
+                new AimdLimiter(initialLimit, minLimit, maxLimit, backoffRatio, TimeUnit.MILLISECONDS.toNanos(httpSloMs)));
+        this.websocket = new Gate(meterRegistry, "websocket", shares,
+                new AimdLimiter(initialLimit, minLimit, maxLimit, backoffRatio, TimeUnit.MILLISECONDS.toNanos(websocketSloMs)));
+    }
+
+    public Gate http() {
+        return http;
+    }
+
+    public Gate websocket() {
+        return websocket;
+    }
+
+    public final class Gate {
+
+        private final AimdLimiter limiter;
+        private final double[] shares;
+        private final Counter[] rejections;
+
+        private Gate(MeterRegistry meterRegistry, String scope, double[] shares, AimdLimiter limiter) {
+            this.limiter = limiter;
+            this.shares = shares;
+            Gauge.builder("admission.limit", limiter, AimdLimiter::getLimit)
+                    .description("Current adaptive concurrency limit")
+                    .tag("scope", scope)
+                    .register(meterRegistry);
+            Gauge.builder("admission.inflight", limiter, AimdLimiter::getInFlight)
+                    .description("Admitted calls still running")
+                    .tag("scope", scope)
+                    .register(meterRegistry);
+            Priority[] priorities = Priority.values();
+            this.rejections = new Counter[priorities.length];
+            for (Priority priority : priorities) {
+                rejections[priority.ordinal()] = Counter.builder("admission.rejected")
+                        .description("Calls shed by the adaptive concurrency limit")
+                        .tag("scope", scope)
+                        .tag("priority", priority.name().toLowerCase(Locale.ROOT))
+                        .register(meterRegistry);
+            }
+        }
+
+        /**
+         * Admit a call; an admitted call must be released with the {@link System#nanoTime}
+         * it was admitted at.
+         */
+        public boolean tryAcquire(Priority priority) {
+            if (!enabled || limiter.tryAcquire(shares[priority.ordinal()])) {
+                return true;
+            }
+            rejections[priority.ordinal()].increment();
+            return false;
+        }
+
+        /**
+         * Admit a call that is never refused, such as an edit the client will not resend.
+         */
+        public void acquire() {
+            if (enabled) {
+                limiter.acquire();
+            }
+        }
+
+        public void release(long admittedAtNanos) {
+            if (enabled) {
+                limiter.release(admittedAtNanos);
+            }
+        }
+
+        /**
+         * Release with {@code latencyNanos} as the latency sample, for calls whose total time
+         * includes work the limit should not react to.
+         */
+        public void release(long admittedAtNanos, long latencyNanos) {
+            if (enabled) {
+                limiter.release(admittedAtNanos, latencyNanos);
+            }
+        }
+    }
+}
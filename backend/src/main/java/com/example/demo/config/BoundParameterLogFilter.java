@@ -0,0 +1,45 @@
+package com.example.demo.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+/**
+ * Keeps Hibernate's bound-parameter trace readable: a value longer than
+ * {@code maxChars} (in practice document content, chunks, revisions and op text) is
+ * logged as its length instead of in full, so a keystroke does not write the whole
+ * document to the log. Registered in logback-spring.xml.
+ */
+public class BoundParameterLogFilter extends TurboFilter {
+
+    private static final String BINDER_LOGGER = "org.hibernate.type.descriptor.sql.BasicBinder";
+    private static final String BIND_PREFIX = "binding parameter [";
+    private static final String VALUE_START = " - [";
+
+    private int maxChars = 64;
+
+    public void setMaxChars(int maxChars) {
+        this.maxChars = maxChars;
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        // Hibernate formats the message itself, so the value is inside the format string
+        if (format == null || level != Level.TRACE || format.length() <= maxChars
+                || !BINDER_LOGGER.equals(logger.getName()) || !format.startsWith(BIND_PREFIX)) {
+            return FilterReply.NEUTRAL;
+        }
+        int valueStart = format.indexOf(VALUE_START);
+        if (valueStart < 0) {
+            return FilterReply.NEUTRAL;
+        }
+        int valueChars = format.length() - valueStart - VALUE_START.length() - 1;
+        if (valueChars <= maxChars) {
+            return FilterReply.NEUTRAL;
+        }
+        logger.trace(format.substring(0, valueStart) + VALUE_START + valueChars + " chars elided]");
+        return FilterReply.DENY;
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.demo.config;
+
+import com.example.demo.service.DocumentOpLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Drains the WebSocket tier before a node goes away, either on shutdown (on the context
+ * closed event, which is published before any lifecycle bean stops, so the web server's
+ * graceful shutdown only begins once sessions are drained) or ahead of it through
+ * /actuator/drain. Draining marks the node not ready, refuses new handshakes,
+ * saves buffered document edits, then closes sessions with 1012 in shuffled batches
+ * spaced by {@code drain.batch-interval-ms} plus jitter. Each client is also told a
+ * random delay within {@code drain.reconnect-spread-ms} to wait before reconnecting,
+ * so the surviving nodes and the database see the reconnects spread out.
+ */
+@Component
+public class DrainCoordinator implements ApplicationListener<ContextClosedEvent> {
+
+    private static final Logger logger = LoggerFactory.getLogger(DrainCoordinator.class);
+
+    private final ObjectProvider<RoomWebSocketHandler> handler;
+    private final DocumentOpLog opLog;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int batchSize;
+    private final long batchIntervalMs;
+    private final long jitterMs;
+    private final long reconnectSpreadMs;
+    private final long timeoutMs;
+
+    private volatile CompletableFuture<Void> drained;
+    private volatile Instant startedAt;
+    private volatile int sessionsClosed;
+
+    @Autowired
+    public DrainCoordinator(
+            ObjectProvider<RoomWebSocketHandler> handler,
+            DocumentOpLog opLog,
+            ApplicationEventPublisher eventPublisher,
+            @Value("${drain.batch-size:50}") int batchSize,
+            @Value("${drain.batch-interval-ms:200}") long batchIntervalMs,
+            @Value("${drain.jitter-ms:100}") long jitterMs,
+            @Value("${drain.reconnect-spread-ms:5000}") long reconnectSpreadMs,
+            @Value("${drain.timeout-ms:25000}") long timeoutMs) {
+        this.handler = handler;
+        this.opLog = opLog;
+        this.eventPublisher = eventPublisher;
+        this.batchSize = Math.max(1, batchSize);
+        this.batchIntervalMs = batchIntervalMs;
+        this.jitterMs = jitterMs;
+        this.reconnectSpreadMs = reconnectSpreadMs;
+        this.timeoutMs = timeoutMs;
+    }
+
+    public boolean isDraining() {
+        return drained != null;
+    }
+
+    /**
+     * Start draining unless already under way.
+     * @return completes once every session is closed
+     */
+    public synchronized CompletableFuture<Void> drain() {
+        if (drained == null) {
+            startedAt = Instant.now();
+            AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.REFUSING_TRAFFIC);
+            drained = CompletableFuture.runAsync(this::closeSessions, runnable -> {
+                Thread thread = new Thread(runnable, "websocket-drain");
+                thread.setDaemon(true);
+                thread.start();
+            });
+        }
+        return drained;
+    }
+
+    public Map<String, Object> status() {
+        CompletableFuture<Void> current = drained;
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("draining", current != null);
+        status.put("done", current != null && current.isDone());
+        status.put("startedAt", startedAt != null ? startedAt.toString() : null);
+        status.put("sessionsClosed", sessionsClosed);
+        status.put("sessionsOpen", handler.getObject().openSessions().size());
+        return status;
+    }
+
+    private void closeSessions() {
+        logger.info("Draining: refusing new WebSocket handshakes and saving buffered edits");
+        flushEdits();
+
+        RoomWebSocketHandler roomHandler = handler.getObject();
+        List<WebSocketSession> sessions = roomHandler.openSessions();
+        // Shuffled so a busy room does not reconnect all at once
+        Collections.shuffle(sessions);
+        logger.info("Draining: closing {} sessions in batches of {}", sessions.size(), batchSize);
+        try {
+            for (int from = 0; from < sessions.size(); from += batchSize) {
+                if (from > 0) {
+                    TimeUnit.MILLISECONDS.sleep(batchIntervalMs + ThreadLocalRandom.current().nextLong(jitterMs + 1));
+                }
+                for (WebSocketSession session : sessions.subList(from, Math.min(from + batchSize, sessions.size()))) {
+                    roomHandler.closeForRestart(session, ThreadLocalRandom.current().nextLong(reconnectSpreadMs + 1));
+                    sessionsClosed++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Edits that arrived while the sessions were closing
+        flushEdits();
+        logger.info("Draining: done, {} sessions closed", sessionsClosed);
+    }
+
+    private void flushEdits() {
+        try {
+            opLog.flushNow();
+        } catch (RuntimeException e) {
+            // Still in the op log and its WAL; flushed again on shutdown
+            logger.error("Draining: could not save buffered edits: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Blocks shutdown until sessions are drained, while the web server, the scheduler and
+     * the database are all still up.
+     */
+    @Override
+    public void onApplicationEvent(ContextClosedEvent event) {
+        try {
+            drain().get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            logger.warn("Draining did not complete within {} ms", timeoutMs);
+        } catch (ExecutionException e) {
+            logger.error("Draining failed: {}", e.getCause().toString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.demo.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Drains the node ahead of shutdown at /actuator/drain, e.g. from a pre-stop hook:
+ * POST starts {@link DrainCoordinator#drain()} and returns at once, GET reports progress.
+ * There is no undo; a drained node refuses handshakes until restarted.
+ */
+@Component
+@Endpoint(id = "drain")
+public class DrainEndpoint {
+
+    private final DrainCoordinator drainCoordinator;
+
+    @Autowired
+    public DrainEndpoint(DrainCoordinator drainCoordinator) {
+        this.drainCoordinator = drainCoordinator;
+    }
+
+    @ReadOperation
+    public Map<String, Object> status() {
+        return drainCoordinator.status();
+    }
+
+    @WriteOperation
+    public Map<String, Object> drain() {
+        drainCoordinator.drain();
+        return drainCoordinator.status();
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.demo.config;
+
+import com.example.demo.util.RealtimeEvents;
+import jdk.jfr.Configuration;
+import jdk.jfr.Event;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * On-demand Java Flight Recorder recordings at /actuator/flightrecording, so production
+ * runs without a recording (and the {@link RealtimeEvents} cost nothing) until someone
+ * needs one. POST starts a recording, bounded in duration and size by the
+ * {@code flight-recording.*} limits; GET reports it; GET /{id} dumps it as a .jfr file
+ * for JDK Mission Control; DELETE stops and discards it. One recording at a time.
+ */
+@Component
+@Endpoint(id = "flightrecording")
+public class FlightRecordingEndpoint {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlightRecordingEndpoint.class);
+
+    @Value("${flight-recording.settings:default}")
+    private String settings;
+
+    @Value("${flight-recording.dir:data/jfr}")
+    private String dir;
+
+    @Value("${flight-recording.default-duration-seconds:60}")
+    private int defaultDurationSeconds;
+
+    @Value("${flight-recording.max-duration-seconds:600}")
+    private int maxDurationSeconds;
+
+    @Value("${flight-recording.max-size-mb:100}")
+    private int maxSizeMb;
+
+    private Recording recording;
+
+    @ReadOperation
+    public synchronized Map<String, Object> status() {
+        return describe(recording);
+    }
+
+    /**
+     * Start a recording; any earlier one is discarded.
+     */
+    @WriteOperation
+    public synchronized Map<String, Object> start(@Nullable Integer durationSeconds, @Nullable Integer sizeMb)
+            throws IOException, ParseException {
+        discard();
+
+        int seconds = Math.min(durationSeconds != null && durationSeconds > 0 ? durationSeconds : defaultDurationSeconds,
+                maxDurationSeconds);
+        int megabytes = Math.min(sizeMb != null && sizeMb > 0 ? sizeMb : maxSizeMb, maxSizeMb);
+
+        Recording started = new Recording(Configuration.getConfiguration(settings));
+        for (Class<? extends Event> type : RealtimeEvents.TYPES) {
+            started.enable(type);
+        }
+        started.setName("collabedge-on-demand");
+        started.setToDisk(true);
+        started.setDuration(Duration.ofSeconds(seconds));
+        started.setMaxSize(megabytes * 1024L * 1024L);
+        started.start();
+        recording = started;
+
+        logger.info("Started flight recording {} for {} s, at most {} MB", started.getId(), seconds, megabytes);
+        return describe(started);
+    }
+
+    /**
+     * Dump the recording, running or finished, as a .jfr file.
+     */
+    @ReadOperation(produces = "application/octet-stream")
+    public synchronized WebEndpointResponse<Resource> dump(@Selector long id) throws IOException {
+        if (recording == null || recording.getId() != id || recording.getState() == RecordingState.CLOSED) {
+            return new WebEndpointResponse<>(WebEndpointResponse.STATUS_NOT_FOUND);
+        }
+        Path directory = Paths.get(dir);
+        Files.createDirectories(directory);
+        Path file = directory.resolve("recording-" + id + ".jfr");
+        recording.dump(file);
+        return new WebEndpointResponse<>(new FileSystemResource(file), WebEndpointResponse.STATUS_OK);
+    }
+
+    @DeleteOperation
+    public synchronized Map<String, Object> stop() throws IOException {
+        discard();
+        return describe(null);
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        discard();
+    }
+
+    private void discard() throws IOException {
+        if (recording == null) {
+            return;
+        }
+        long id = recording.getId();
+        recording.close();
+        recording = null;
+        Files.deleteIfExists(Paths.get(dir).resolve("recording-" + id + ".jfr"));
+        logger.info("Discarded flight recording {}", id);
+    }
+
+    private static Map<String, Object> describe(Recording recording) {
+        Map<String, Object> status = new LinkedHashMap<>();
+        if (recording == null) {
+            status.put("state", "NONE");
+            return status;
+        }
+        status.put("id", recording.getId());
+        status.put("state", recording.getState().name());
+        status.put("startTime", recording.getStartTime());
+        status.put("stopTime", recording.getStopTime());
+        status.put("duration", recording.getDuration());
+        status.put("maxSizeBytes", recording.getMaxSize());
+        status.put("sizeBytes", recording.getSize());
+        return status;
+    }
+}
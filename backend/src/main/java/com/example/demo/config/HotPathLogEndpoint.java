@@ -0,0 +1,33 @@
+package com.example.demo.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Dumps {@link HotPathLogger}'s event counts and recent events at /actuator/hotpathlog,
+ * including the ones sampling kept out of the application log. Optional query
+ * parameter: {@code limit}.
+ */
+@Component
+@Endpoint(id = "hotpathlog")
+public class HotPathLogEndpoint {
+
+    private static final int DEFAULT_LIMIT = 1000;
+
+    private final HotPathLogger hotPathLogger;
+
+    @Autowired
+    public HotPathLogEndpoint(HotPathLogger hotPathLogger) {
+        this.hotPathLogger = hotPathLogger;
+    }
+
+    @ReadOperation
+    public Map<String, Object> dump(@Nullable Integer limit) {
+        return hotPathLogger.dump(limit != null && limit > 0 ? limit : DEFAULT_LIMIT);
+    }
+}
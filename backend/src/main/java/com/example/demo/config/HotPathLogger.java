@@ -0,0 +1,101 @@
+package com.example.demo.config;
+
+import com.example.demo.util.HotPathLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Logging for events that happen on every WebSocket frame. Each event is counted and
+ * kept in a {@link HotPathLog} ring, which /actuator/hotpathlog dumps on demand; only
+ * one in {@code hot-path-logging.sample-every} of each kind reaches the application log,
+ * plus every failure. In verbose mode (the dev profile) every event is logged.
+ */
+@Component
+public class HotPathLogger {
+
+    private static final Logger logger = LoggerFactory.getLogger(HotPathLogger.class);
+
+    public enum Event {
+        MESSAGE_RECEIVED,
+        DOCUMENT_UPDATE,
+        MESSAGE_THROTTLED,
+        MESSAGE_FAILED,
+        DOCUMENT_UPDATE_FAILED,
+        SEND_FAILED
+    }
+
+    public enum Mode { SAMPLED, VERBOSE }
+
+    private final Mode mode;
+    private final long sampleEvery;
+    private final HotPathLog<Event> log;
+
+    @Autowired
+    public HotPathLogger(
+            @Value("${hot-path-logging.mode:sampled}") String mode,
+            @Value("${hot-path-logging.sample-every:1000}") long sampleEvery,
+            @Value("${hot-path-logging.ring-size:8192}") int ringSize) {
+        this.mode = Mode.valueOf(mode.toUpperCase(Locale.ROOT));
+        this.sampleEvery = Math.max(1, sampleEvery);
+        this.log = new HotPathLog<>(Event.class, ringSize);
+    }
+
+    /**
+     * Record a routine event; {@code value} is its size (frame bytes, or chars of document text).
+     */
+    public void record(Event event, String roomId, String subject, long value) {
+        long count = log.record(event, roomId, subject, value, null);
+        if (mode == Mode.VERBOSE || (count - 1) % sampleEvery == 0) {
+            logger.info("{} in room {} ({}, size {}) [#{}]", event, roomId, subject, value, count);
+        }
+    }
+
+    /**
+     * Record and always log a failure. The stack trace is only logged at DEBUG.
+     */
+    public void error(Event event, String roomId, String subject, Exception cause) {
+        long count = log.record(event, roomId, subject, 0, cause.getMessage());
+        if (logger.isDebugEnabled()) {
+            logger.error("{} in room {} ({}): {} [#{}]", event, roomId, subject, cause.getMessage(), count, cause);
+        } else {
+            logger.error("{} in room {} ({}): {} [#{}]", event, roomId, subject, cause.getMessage(), count);
+        }
+    }
+
+    /**
+     * Event counts and the newest {@code limit} events still in the ring.
+     */
+    public Map<String, Object> dump(int limit) {
+        List<Map<String, Object>> events = new ArrayList<>();
+        for (HotPathLog.Entry<Event> entry : log.snapshot(limit)) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("sequence", entry.getSequence());
+            row.put("time", entry.getTimeMillis());
+            row.put("event", entry.getEvent());
+            row.put("roomId", entry.getRoomId());
+            row.put("subject", entry.getSubject());
+            row.put("value", entry.getValue());
+            if (entry.getDetail() != null) {
+                row.put("detail", entry.getDetail());
+            }
+            events.add(row);
+        }
+
+        Map<String, Object> dump = new LinkedHashMap<>();
+        dump.put("mode", mode);
+        dump.put("sampleEvery", sampleEvery);
+        dump.put("counts", log.counts());
+        dump.put("dropped", log.dropped());
+        dump.put("events", events);
+        return dump;
+    }
+}
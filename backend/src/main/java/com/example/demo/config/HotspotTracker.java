@@ -0,0 +1,166 @@
+package com.example.demo.config;
+
+import com.example.demo.util.SlidingTopK;
+import com.example.demo.util.SpaceSaving;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Which rooms, documents and users carry the most WebSocket traffic. For each of those,
+ * in each direction, the heaviest keys by bytes and by messages are tracked with
+ * {@link SlidingTopK} over the last minute and the last 15 minutes. Memory is fixed by
+ * {@code hotspots.capacity} and {@code hotspots.stripes} however many rooms are live, and
+ * counts are estimates with an error bound.
+ * <p>
+ * Every frame updates a dozen trackers, so they are striped: each thread records into
+ * the stripe picked by its id, and reports merge the stripes. Socket threads then rarely
+ * contend for the same monitors.
+ * <p>
+ * Outbound traffic is charged to the user whose message was fanned out, so a user's
+ * outbound bytes are the bandwidth their edits cost. Guests are keyed by session.
+ */
+@Component
+public class HotspotTracker {
+
+    public enum Dimension { ROOM, DOCUMENT, USER }
+
+    public enum Direction { INBOUND, OUTBOUND }
+
+    private static final int DIRECTIONS = Direction.values().length;
+    private static final int UNITS = 2;
+    private static final int BYTES = 0;
+    private static final int MESSAGES = 1;
+
+    private final boolean enabled;
+    private final int stripes;
+    private final List<Window> windows = new ArrayList<>();
+
+    @Autowired
+    public HotspotTracker(
+            @Value("${hotspots.enabled:true}") boolean enabled,
+            @Value("${hotspots.capacity:100}") int capacity,
+            @Value("${hotspots.stripes:4}") int stripes) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("hotspots.stripes must be at least 1");
+        }
+        this.enabled = enabled;
+        this.stripes = stripes;
+        windows.add(new Window("1m", capacity, stripes, Duration.ofMinutes(1), 6));
+        windows.add(new Window("15m", capacity, stripes, Duration.ofMinutes(15), 15));
+    }
+
+    /**
+     * Count traffic; {@code documentId} and {@code userId} may be null when a message has none.
+     */
+    public void record(Direction direction, String roomId, String documentId, String userId, long messages, long bytes) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        int stripe = (int) (Thread.currentThread().getId() % stripes);
+        for (Window window : windows) {
+            window.add(stripe, Dimension.ROOM, direction, roomId, messages, bytes, now);
+            window.add(stripe, Dimension.DOCUMENT, direction, documentId, messages, bytes, now);
+            window.add(stripe, Dimension.USER, direction, userId, messages, bytes, now);
+        }
+    }
+
+    /**
+     * Top {@code limit} keys per dimension, direction and unit, for one window or all of them.
+     */
+    public Map<String, Object> report(String windowName, int limit) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("enabled", enabled);
+        long now = System.currentTimeMillis();
+        for (Window window : windows) {
+            if (windowName == null || window.name.equals(windowName)) {
+                report.put(window.name, window.report(limit, now));
+            }
+        }
+        return report;
+    }
+
+    private static String label(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Window {
+
+        private final String name;
+        private final int capacity;
+        // [stripe][tracker]
+        private final SlidingTopK<String>[][] trackers;
+
+        @SuppressWarnings("unchecked")
+        Window(String name, int capacity, int stripes, Duration length, int buckets) {
+            this.name = name;
+            this.capacity = capacity;
+            this.trackers = new SlidingTopK[stripes][Dimension.values().length * DIRECTIONS * UNITS];
+            for (SlidingTopK<String>[] stripe : trackers) {
+                for (int i = 0; i < stripe.length; i++) {
+                    stripe[i] = new SlidingTopK<>(capacity, length, buckets);
+                }
+            }
+        }
+
+        void add(int stripe, Dimension dimension, Direction direction, String key, long messages, long bytes, long now) {
+            if (key == null) {
+                return;
+            }
+            SlidingTopK<String>[] stripeTrackers = trackers[stripe];
+            stripeTrackers[index(dimension, direction, BYTES)].add(key, bytes, now);
+            stripeTrackers[index(dimension, direction, MESSAGES)].add(key, messages, now);
+        }
+
+        Map<String, Object> report(int limit, long now) {
+            Map<String, Object> byDimension = new LinkedHashMap<>();
+            for (Dimension dimension : Dimension.values()) {
+                Map<String, Object> byDirection = new LinkedHashMap<>();
+                for (Direction direction : Direction.values()) {
+                    Map<String, Object> byUnit = new LinkedHashMap<>();
+                    byUnit.put("bytes", top(snapshot(index(dimension, direction, BYTES), now), limit));
+                    byUnit.put("messages", top(snapshot(index(dimension, direction, MESSAGES), now), limit));
+                    byDirection.put(label(direction), byUnit);
+                }
+                byDimension.put(label(dimension), byDirection);
+            }
+            return byDimension;
+        }
+
+        // One tracker's window merged across the stripes
+        private SpaceSaving<String> snapshot(int index, long now) {
+            SpaceSaving<String> merged = new SpaceSaving<>(capacity);
+            for (SlidingTopK<String>[] stripe : trackers) {
+                merged.addAll(stripe[index].snapshot(now));
+            }
+            return merged;
+        }
+
+        private static int index(Dimension dimension, Direction direction, int unit) {
+            return (dimension.ordinal() * DIRECTIONS + direction.ordinal()) * UNITS + unit;
+        }
+
+        private static Map<String, Object> top(SpaceSaving<String> summary, int limit) {
+            List<Map<String, Object>> entries = new ArrayList<>();
+            for (SpaceSaving.Entry<String> entry : summary.top(limit)) {
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("key", entry.getKey());
+                row.put("count", entry.getCount());
+                row.put("error", entry.getError());
+                entries.add(row);
+            }
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("total", summary.getTotal());
+            result.put("top", entries);
+            return result;
+        }
+    }
+}
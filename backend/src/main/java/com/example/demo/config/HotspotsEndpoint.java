@@ -0,0 +1,32 @@
+package com.example.demo.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Read-only view of {@link HotspotTracker} at /actuator/hotspots. Optional query
+ * parameters: {@code window} (1m or 15m, both by default) and {@code limit}.
+ */
+@Component
+@Endpoint(id = "hotspots")
+public class HotspotsEndpoint {
+
+    private static final int DEFAULT_LIMIT = 10;
+
+    private final HotspotTracker tracker;
+
+    @Autowired
+    public HotspotsEndpoint(HotspotTracker tracker) {
+        this.tracker = tracker;
+    }
+
+    @ReadOperation
+    public Map<String, Object> hotspots(@Nullable String window, @Nullable Integer limit) {
+        return tracker.report(window, limit != null && limit > 0 ? limit : DEFAULT_LIMIT);
+    }
+}
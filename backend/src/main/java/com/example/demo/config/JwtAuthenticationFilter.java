@@ -1,6 +1,7 @@
 package com.example.demo.config;
 
 import com.example.demo.util.JwtUtil;
+import com.example.demo.util.VerifiedJwt;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,6 +17,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Optional;
 import java.util.UUID;
 
 @Component
@@ -33,16 +35,18 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String token = extractTokenFromRequest(request);
             
-            if (token != null && jwtUtil.validateToken(token)) {
-                String userId = jwtUtil.getUserIdFromToken(token);
-                String username = jwtUtil.getUsernameFromToken(token);
+            Optional<VerifiedJwt> verified = token != null ? jwtUtil.verify(token) : Optional.empty();
+            
+            if (verified.isPresent()) {
+                VerifiedJwt jwt = verified.get();
+                String username = jwt.getUsername();
                 
-                if (userId != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+                if (SecurityContextHolder.getContext().getAuthentication() == null) {
                     // Create authentication object
                     JwtUserDetails userDetails = new JwtUserDetails(
-                        UUID.fromString(userId), 
+                        jwt.getUserId(), 
                         username, 
-                        jwtUtil.getEmailFromToken(token)
+                        jwt.getEmail()
                     );
                     
                     UsernamePasswordAuthenticationToken authentication = 
@@ -0,0 +1,140 @@
+package com.example.demo.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * SQL statements and database time of one unit of work on the current thread: an HTTP
+ * request, a WebSocket message, or whatever a test wraps in {@link #begin}. Hibernate
+ * reports into the active scope through {@link QueryStatsInspector} (statements) and
+ * {@link QueryStatsSessionListener} (execution time); with no scope active they do nothing.
+ * <p>
+ * Each scope also counts how often each distinct SQL string ran, since the same select
+ * repeated once per row is the signature of an N+1 query.
+ */
+public final class QueryStats {
+
+    // Distinct statements tracked per scope; beyond this new ones are only counted
+    private static final int MAX_DISTINCT_STATEMENTS = 64;
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private QueryStats() {
+    }
+
+    /**
+     * Start counting on this thread until the scope is closed. Scopes nest; an inner
+     * scope's statements also count towards the outer one.
+     */
+    public static Scope begin(String kind, String operation) {
+        Scope scope = new Scope(kind, operation, CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    public static Scope current() {
+        return CURRENT.get();
+    }
+
+    static void statementPrepared(String sql) {
+        for (Scope scope = CURRENT.get(); scope != null; scope = scope.parent) {
+            scope.statementPrepared(sql);
+        }
+    }
+
+    static void statementExecuted(long nanos) {
+        for (Scope scope = CURRENT.get(); scope != null; scope = scope.parent) {
+            scope.dbNanos += nanos;
+        }
+    }
+
+    public static final class Scope implements AutoCloseable {
+
+        private final String kind;
+        private final Scope parent;
+        private final long startedAt = System.nanoTime();
+        private final Map<String, Integer> repeats = new HashMap<>();
+        private String operation;
+        private int statements;
+        private long dbNanos;
+        private long elapsedNanos = -1;
+        private String mostRepeatedStatement;
+        private int mostRepeatedCount;
+
+        private Scope(String kind, String operation, Scope parent) {
+            this.kind = kind;
+            this.operation = operation;
+            this.parent = parent;
+        }
+
+        private void statementPrepared(String sql) {
+            statements++;
+            Integer seen = repeats.get(sql);
+            if (seen == null && repeats.size() >= MAX_DISTINCT_STATEMENTS) {
+                return;
+            }
+            int count = seen == null ? 1 : seen + 1;
+            repeats.put(sql, count);
+            if (count > mostRepeatedCount) {
+                mostRepeatedCount = count;
+                mostRepeatedStatement = sql;
+            }
+        }
+
+        public String getKind() {
+            return kind;
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        /**
+         * Name the operation once it is known, e.g. the matched route after dispatch.
+         */
+        public void setOperation(String operation) {
+            this.operation = operation;
+        }
+
+        public int getStatementCount() {
+            return statements;
+        }
+
+        public long getDbNanos() {
+            return dbNanos;
+        }
+
+        /**
+         * Time since {@link #begin}, or until {@link #close} once closed.
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos >= 0 ? elapsedNanos : System.nanoTime() - startedAt;
+        }
+
+        /**
+         * The SQL that ran most often in this scope, or null if none ran.
+         */
+        public String getMostRepeatedStatement() {
+            return mostRepeatedStatement;
+        }
+
+        public int getMostRepeatedCount() {
+            return mostRepeatedCount;
+        }
+
+        @Override
+        public void close() {
+            if (elapsedNanos >= 0) {
+                return;
+            }
+            elapsedNanos = System.nanoTime() - startedAt;
+            if (CURRENT.get() == this) {
+                if (parent != null) {
+                    CURRENT.set(parent);
+                } else {
+                    CURRENT.remove();
+                }
+            }
+        }
+    }
+}
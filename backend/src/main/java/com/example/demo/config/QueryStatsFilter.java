@@ -0,0 +1,50 @@
+package com.example.demo.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Opens a {@link QueryStats} scope around each HTTP request, names it after the matched
+ * route once dispatch is done, and hands it to {@link SlowOperationLog}. The scope is also
+ * left in the {@link #SCOPE_ATTRIBUTE} request attribute. Outermost, so statements run by
+ * the security filters count too.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class QueryStatsFilter extends OncePerRequestFilter {
+
+    public static final String SCOPE_ATTRIBUTE = QueryStatsFilter.class.getName() + ".scope";
+
+    private final SlowOperationLog slowOperationLog;
+
+    @Autowired
+    public QueryStatsFilter(SlowOperationLog slowOperationLog) {
+        this.slowOperationLog = slowOperationLog;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        QueryStats.Scope scope = QueryStats.begin("http", request.getMethod() + " UNMAPPED");
+        request.setAttribute(SCOPE_ATTRIBUTE, scope);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            if (pattern != null) {
+                scope.setOperation(request.getMethod() + " " + pattern);
+            }
+            slowOperationLog.completed(scope);
+        }
+    }
+}
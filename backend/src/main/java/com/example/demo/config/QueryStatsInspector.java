@@ -0,0 +1,16 @@
+package com.example.demo.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts every statement Hibernate prepares into the thread's {@link QueryStats} scope.
+ * Configured with hibernate.session_factory.statement_inspector; leaves the SQL as is.
+ */
+public class QueryStatsInspector implements StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        QueryStats.statementPrepared(sql);
+        return sql;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.demo.config;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * Adds JDBC execution time to the thread's {@link QueryStats} scope. Hibernate creates
+ * one per session (hibernate.session.events.auto), so the start times need no locking.
+ */
+public class QueryStatsSessionListener extends BaseSessionEventListener {
+
+    private long statementStartedAt;
+    private long batchStartedAt;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        statementStartedAt = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        QueryStats.statementExecuted(System.nanoTime() - statementStartedAt);
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        batchStartedAt = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        QueryStats.statementExecuted(System.nanoTime() - batchStartedAt);
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.demo.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Meters for the room WebSocket traffic, published as {@code realtime.*}: live rooms and
+ * sessions, frames and bytes per direction and message type, broadcast fan-out time and
+ * per-session send time.
+ * <p>
+ * Message types come from clients, so anything outside {@link #MESSAGE_TYPES} is counted
+ * as "other"; with a fixed set every meter is registered up front and the message path
+ * never looks one up. Room ids are only added as a tag when
+ * {@code realtime.metrics.per-room-tags} is set, since every room would add a series.
+ */
+@Component
+public class RealtimeMetrics {
+
+    static final Set<String> MESSAGE_TYPES = Set.of(
+            "CONNECTED", "JOIN", "USER_JOINED", "USER_LEFT", "DOCUMENT_UPDATE", "DOCUMENT_RENAME",
+            "PERMISSION_CHANGED", "ERROR", "THROTTLED", "RECONNECT");
+    static final String OTHER_TYPE = "other";
+
+    private static final String INBOUND = "inbound";
+    private static final String OUTBOUND = "outbound";
+
+    private final MeterRegistry meterRegistry;
+    private final boolean perRoomTags;
+
+    private final Map<String, FrameMeters> inbound = new HashMap<>();
+    private final Map<String, FrameMeters> outbound = new HashMap<>();
+    private final Map<String, Timer> broadcastTimers = new HashMap<>();
+    private final DistributionSummary broadcastRecipients;
+    private final Timer sendTimer;
+
+    @Autowired
+    public RealtimeMetrics(
+            MeterRegistry meterRegistry,
+            @Value("${realtime.metrics.per-room-tags:false}") boolean perRoomTags) {
+        this.meterRegistry = meterRegistry;
+        this.perRoomTags = perRoomTags;
+
+        // Prometheus wants one set of tag keys per name, so per-room meters are the only ones
+        if (!perRoomTags) {
+            for (String type : MESSAGE_TYPES) {
+                registerType(type);
+            }
+            registerType(OTHER_TYPE);
+        }
+
+        this.broadcastRecipients = DistributionSummary.builder("realtime.broadcast.recipients")
+                .description("Sessions a broadcast was delivered to")
+                .register(meterRegistry);
+        this.sendTimer = Timer.builder("realtime.session.send")
+                .description("Time to write one frame to one session")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Publish gauges over the handler's live session registry.
+     */
+    public <T> void bindSessionRegistry(T registry, ToDoubleFunction<T> activeRooms, ToDoubleFunction<T> activeSessions) {
+        Gauge.builder("realtime.rooms.active", registry, activeRooms)
+                .description("Rooms with at least one open WebSocket session")
+                .register(meterRegistry);
+        Gauge.builder("realtime.sessions.active", registry, activeSessions)
+                .description("Open room WebSocket sessions")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Bounded tag value for a message type taken from a client frame.
+     */
+    public String messageType(Object type) {
+        return type instanceof String && MESSAGE_TYPES.contains(type) ? (String) type : OTHER_TYPE;
+    }
+
+    public void frameReceived(String type, String roomId, long bytes) {
+        record(inbound, INBOUND, type, roomId, bytes);
+    }
+
+    public void frameSent(String type, String roomId, long bytes) {
+        record(outbound, OUTBOUND, type, roomId, bytes);
+    }
+
+    public void sendCompleted(long nanos) {
+        sendTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void broadcastCompleted(String type, String roomId, int recipients, long nanos) {
+        Timer timer = perRoomTags
+                ? broadcastTimer(type).tag("room", roomTag(roomId)).register(meterRegistry)
+                : broadcastTimers.get(type);
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+        broadcastRecipients.record(recipients);
+    }
+
+    /**
+     * UTF-8 length of a frame, counted without encoding it.
+     */
+    public static long utf8Length(String text) {
+        long bytes = text.length();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 0x800) {
+                // Three bytes, or four for a surrogate pair, which is two chars
+                bytes += Character.isSurrogate(c) ? 1 : 2;
+            } else if (c >= 0x80) {
+                bytes += 1;
+            }
+        }
+        return bytes;
+    }
+
+    private void registerType(String type) {
+        inbound.put(type, new FrameMeters(
+                frameCounter(INBOUND, type).register(meterRegistry),
+                frameBytes(INBOUND, type).register(meterRegistry)));
+        outbound.put(type, new FrameMeters(
+                frameCounter(OUTBOUND, type).register(meterRegistry),
+                frameBytes(OUTBOUND, type).register(meterRegistry)));
+        broadcastTimers.put(type, broadcastTimer(type).register(meterRegistry));
+    }
+
+    private void record(Map<String, FrameMeters> meters, String direction, String type, String roomId, long bytes) {
+        if (perRoomTags) {
+            frameCounter(direction, type).tag("room", roomTag(roomId)).register(meterRegistry).increment();
+            frameBytes(direction, type).tag("room", roomTag(roomId)).register(meterRegistry).record(bytes);
+            return;
+        }
+        FrameMeters frame = meters.get(type);
+        frame.frames.increment();
+        frame.bytes.record(bytes);
+    }
+
+    private static String roomTag(String roomId) {
+        return roomId != null ? roomId : "none";
+    }
+
+    private static Counter.Builder frameCounter(String direction, String type) {
+        return Counter.builder("realtime.frames")
+                .description("WebSocket frames by direction and message type")
+                .tag("direction", direction)
+                .tag("type", type);
+    }
+
+    private static DistributionSummary.Builder frameBytes(String direction, String type) {
+        return DistributionSummary.builder("realtime.frame.bytes")
+                .description("WebSocket frame size by direction and message type")
+                .baseUnit("bytes")
+                .tag("direction", direction)
+                .tag("type", type);
+    }
+
+    private static Timer.Builder broadcastTimer(String type) {
+        return Timer.builder("realtime.broadcast.duration")
+                .description("Time to fan one message out to a room")
+                .tag("type", type);
+    }
+
+    private static final class FrameMeters {
+
+        private final Counter frames;
+        private final DistributionSummary bytes;
+
+        FrameMeters(Counter frames, DistributionSummary bytes) {
+            this.frames = frames;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.demo.config;
+
+import com.example.demo.service.RoomService;
+import com.example.demo.util.JwtUtil;
+import com.example.demo.util.VerifiedJwt;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Authenticates room WebSocket handshakes. The JWT (Authorization header, or the
+ * {@code token} query parameter since browsers cannot set headers on WebSockets)
+ * is verified once and the room permission is resolved once; the result is kept
+ * in the session attributes as a {@link RoomSessionAccess}. Guests of password-protected
+ * rooms present the room ticket from their join as the {@code ticket} query parameter.
+ * While the node is draining every handshake is refused with 503.
+ */
+@Component
+public class RoomHandshakeInterceptor implements HandshakeInterceptor {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoomHandshakeInterceptor.class);
+
+    private final JwtUtil jwtUtil;
+    private final RoomService roomService;
+    private final DrainCoordinator drainCoordinator;
+
+    @Autowired
+    public RoomHandshakeInterceptor(JwtUtil jwtUtil, RoomService roomService, DrainCoordinator drainCoordinator) {
+        this.jwtUtil = jwtUtil;
+        this.roomService = roomService;
+        this.drainCoordinator = drainCoordinator;
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        if (drainCoordinator.isDraining()) {
+            // Clients retry and land on another node
+            response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            response.getHeaders().set(HttpHeaders.RETRY_AFTER, "1");
+            return false;
+        }
+
+        UUID roomId = extractRoomId(request.getURI());
+        if (roomId == null) {
+            response.setStatusCode(HttpStatus.NOT_FOUND);
+            return false;
+        }
+
+        VerifiedJwt jwt = null;
+        String token = extractToken(request);
+        if (token != null) {
+            Optional<VerifiedJwt> verified = jwtUtil.verify(token);
+            if (verified.isEmpty()) {
+                // A bad token is rejected rather than downgraded to a guest
+                response.setStatusCode(HttpStatus.UNAUTHORIZED);
+                return false;
+            }
+            jwt = verified.get();
+        }
+
+        UUID userId = jwt != null ? jwt.getUserId() : null;
+        String ticket = getQueryParam(request, "ticket");
+        Optional<String> permissionLevel = roomService.resolvePermissionLevel(roomId, userId, ticket);
+        if (permissionLevel.isEmpty()) {
+            logger.info("Rejected WebSocket handshake for room {} (user: {})", roomId, userId);
+            response.setStatusCode(HttpStatus.FORBIDDEN);
+            return false;
+        }
+
+        attributes.put(RoomSessionAccess.ATTRIBUTE, new RoomSessionAccess(
+                roomId, userId, jwt != null ? jwt.getUsername() : null, permissionLevel.get()));
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+
+    private String extractToken(ServerHttpRequest request) {
+        String bearerToken = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (bearerToken != null && bearerToken.startsWith("Bearer ")) {
+            return bearerToken.substring(7);
+        }
+        return getQueryParam(request, "token");
+    }
+
+    private String getQueryParam(ServerHttpRequest request, String name) {
+        String value = UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst(name);
+        return value != null && !value.isEmpty() ? value : null;
+    }
+
+    private UUID extractRoomId(URI uri) {
+        if (uri == null || uri.getPath() == null) {
+            return null;
+        }
+        // Expected format: /ws/room/{roomId}
+        String[] parts = uri.getPath().split("/");
+        if (parts.length < 4 || !"ws".equals(parts[1]) || !"room".equals(parts[2])) {
+            return null;
+        }
+        try {
+            return UUID.fromString(parts[3]);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.demo.config;
+
+import java.util.UUID;
+
+/**
+ * Who a room WebSocket session belongs to and what it may do, resolved once at handshake.
+ * Stored in the session attributes so per-message checks are a field read.
+ */
+public class RoomSessionAccess {
+
+    public static final String ATTRIBUTE = "roomSessionAccess";
+
+    private final UUID roomId;
+    // null for guests
+    private final UUID userId;
+    private final String username;
+    // Updated in place when the user's room permission changes
+    private volatile String permissionLevel;
+
+    public RoomSessionAccess(UUID roomId, UUID userId, String username, String permissionLevel) {
+        this.roomId = roomId;
+        this.userId = userId;
+        this.username = username;
+        this.permissionLevel = permissionLevel;
+    }
+
+    public UUID getRoomId() {
+        return roomId;
+    }
+
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public boolean isAuthenticated() {
+        return userId != null;
+    }
+
+    public String getPermissionLevel() {
+        return permissionLevel;
+    }
+
+    public void setPermissionLevel(String permissionLevel) {
+        this.permissionLevel = permissionLevel;
+    }
+
+    public boolean canWrite() {
+        String level = permissionLevel;
+        return "admin".equals(level) || "write".equals(level);
+    }
+}
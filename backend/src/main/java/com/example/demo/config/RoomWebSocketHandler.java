@@ -3,13 +3,18 @@ package com.example.demo.config;
 import com.example.demo.dto.DocumentUpdateMessage;
 import com.example.demo.dto.DocumentUpdateRequest;
 import com.example.demo.service.DocumentService;
+import com.example.demo.service.RoomPermissionChangedEvent;
+import com.example.demo.util.RealtimeEvents;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.event.TransactionalEventListener;
 import org.springframework.web.socket.*;
 
-import java.net.URI;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
@@ -19,6 +24,9 @@ public class RoomWebSocketHandler implements WebSocketHandler {
     
     private static final Logger logger = LoggerFactory.getLogger(RoomWebSocketHandler.class);
     
+    // How long a client should wait before resending a message answered with THROTTLED
+    private static final int THROTTLED_RETRY_AFTER_MS = 1000;
+    
     // Store sessions by room ID
     private final Map<String, CopyOnWriteArraySet<WebSocketSession>> roomSessions = new ConcurrentHashMap<>();
     
@@ -28,30 +36,70 @@ public class RoomWebSocketHandler implements WebSocketHandler {
     private final ObjectMapper objectMapper = new ObjectMapper();
     
     private DocumentService documentService;
+    
+    private RealtimeMetrics metrics;
+    
+    private HotspotTracker hotspots;
+    
+    private HotPathLogger hotPathLogger;
+    
+    private SlowOperationLog slowOperationLog;
+    
+    private AdmissionController admissionController;
 
     @Autowired
     public void setDocumentService(DocumentService documentService) {
         this.documentService = documentService;
     }
 
+    @Autowired
+    public void setRealtimeMetrics(RealtimeMetrics metrics) {
+        this.metrics = metrics;
+        metrics.bindSessionRegistry(this, handler -> handler.roomSessions.size(), handler -> handler.sessionToRoom.size());
+    }
+
+    @Autowired
+    public void setHotspotTracker(HotspotTracker hotspots) {
+        this.hotspots = hotspots;
+    }
+
+    @Autowired
+    public void setHotPathLogger(HotPathLogger hotPathLogger) {
+        this.hotPathLogger = hotPathLogger;
+    }
+
+    @Autowired
+    public void setSlowOperationLog(SlowOperationLog slowOperationLog) {
+        this.slowOperationLog = slowOperationLog;
+    }
+
+    @Autowired
+    public void setAdmissionController(AdmissionController admissionController) {
+        this.admissionController = admissionController;
+    }
+
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
-        String roomId = extractRoomIdFromPath(session.getUri());
-        if (roomId != null) {
+        // Resolved by RoomHandshakeInterceptor; the handshake is refused without it
+        RoomSessionAccess access = getAccess(session);
+        if (access != null) {
+            String roomId = access.getRoomId().toString();
             roomSessions.computeIfAbsent(roomId, k -> new CopyOnWriteArraySet<>()).add(session);
             sessionToRoom.put(session.getId(), roomId);
             
-            logger.info("WebSocket connection established for room {} (session: {})", roomId, session.getId());
+            logger.info("WebSocket connection established for room {} (session: {}, permission: {})", 
+                       roomId, session.getId(), access.getPermissionLevel());
             
             // Send welcome message
-            session.sendMessage(new TextMessage(objectMapper.writeValueAsString(Map.of(
+            send(session, roomId, "CONNECTED", objectMapper.writeValueAsString(Map.of(
                 "type", "CONNECTED",
                 "roomId", roomId,
+                "permission", access.getPermissionLevel(),
                 "message", "Connected to room " + roomId
-            ))));
+            )));
         } else {
-            logger.warn("Invalid room path, closing connection: {}", session.getUri());
-            session.close();
+            logger.warn("Session {} has no room access, closing connection", session.getId());
+            session.close(CloseStatus.POLICY_VIOLATION);
         }
     }
 
@@ -63,41 +111,98 @@ public class RoomWebSocketHandler implements WebSocketHandler {
             return;
         }
 
+        RealtimeEvents.MessageReceived received = new RealtimeEvents.MessageReceived();
+        received.begin();
+        QueryStats.Scope queries = QueryStats.begin("websocket", RealtimeMetrics.OTHER_TYPE);
+        String type = RealtimeMetrics.OTHER_TYPE;
+        long payloadBytes = 0;
+        long admittedAt = 0;
+        long fanOutNanos = 0;
+        boolean admitted = false;
         try {
             String payload = message.getPayload().toString();
-            logger.debug("Received message in room {}: {}", roomId, payload.substring(0, Math.min(100, payload.length())));
+            payloadBytes = RealtimeMetrics.utf8Length(payload);
+            hotPathLogger.record(HotPathLogger.Event.MESSAGE_RECEIVED, roomId, session.getId(), payloadBytes);
             
             // Parse the message
+            RealtimeEvents.MessageParsed parsed = new RealtimeEvents.MessageParsed();
+            parsed.begin();
             Map<String, Object> messageData = objectMapper.readValue(payload, Map.class);
+            parsed.finish(roomId, payloadBytes);
+            
+            boolean documentUpdate = messageData.containsKey("documentId") && messageData.containsKey("content");
+            type = documentUpdate ? "DOCUMENT_UPDATE" : metrics.messageType(messageData.get("type"));
+            metrics.frameReceived(type, roomId, payloadBytes);
+            hotspots.record(HotspotTracker.Direction.INBOUND, roomId, documentIdOf(messageData), userKey(session), 1, payloadBytes);
+            
+            // Clients do not resend edits, so a shed edit would be lost; they are only counted
+            if (documentUpdate) {
+                admissionController.websocket().acquire();
+                admitted = true;
+            } else {
+                admitted = admissionController.websocket().tryAcquire(admissionPriority(type));
+            }
+            if (!admitted) {
+                hotPathLogger.record(HotPathLogger.Event.MESSAGE_THROTTLED, roomId, session.getId(), payloadBytes);
+                send(session, roomId, "THROTTLED", objectMapper.writeValueAsString(Map.of(
+                    "type", "THROTTLED",
+                    "rejectedType", type,
+                    "retryAfterMs", THROTTLED_RETRY_AFTER_MS,
+                    "message", "Server is busy, please retry"
+                )));
+                return;
+            }
+            admittedAt = System.nanoTime();
             
-            if (messageData.containsKey("documentId") && messageData.containsKey("content")) {
-                handleDocumentUpdate(roomId, session, messageData);
+            if (documentUpdate) {
+                if (!getAccess(session).canWrite()) {
+                    send(session, roomId, "ERROR", objectMapper.writeValueAsString(Map.of(
+                        "type", "ERROR",
+                        "message", "You do not have write access to this room"
+                    )));
+                    return;
+                }
+                fanOutNanos = handleDocumentUpdate(roomId, session, messageData);
             } else if ("JOIN".equals(messageData.get("type"))) {
-                handleUserJoin(roomId, session, messageData);
+                fanOutNanos = handleUserJoin(roomId, session, messageData);
             } else {
                 // Broadcast other messages to all clients in the room
-                broadcastToRoom(roomId, payload, session);
+                fanOutNanos = broadcastToRoom(roomId, type, documentIdOf(messageData), payload, session);
             }
             
         } catch (Exception e) {
-            logger.error("Error handling message in room {}: {}", roomId, e.getMessage(), e);
-            session.sendMessage(new TextMessage(objectMapper.writeValueAsString(Map.of(
+            hotPathLogger.error(HotPathLogger.Event.MESSAGE_FAILED, roomId, session.getId(), e);
+            send(session, roomId, "ERROR", objectMapper.writeValueAsString(Map.of(
                 "type", "ERROR",
                 "message", "Error processing message: " + e.getMessage()
-            ))));
+            )));
+        } finally {
+            if (admitted) {
+                // Slow recipients say nothing about how much work the server can take, so the
+                // fan-out is left out of the latency sample
+                admissionController.websocket().release(admittedAt, System.nanoTime() - admittedAt - fanOutNanos);
+            }
+            received.finish(roomId, type, payloadBytes);
+            queries.setOperation(type);
+            slowOperationLog.completed(queries);
         }
     }
 
-    private void handleDocumentUpdate(String roomId, WebSocketSession session, Map<String, Object> messageData) throws Exception {
+    /**
+     * Persist an edit and relay it to the rest of the room; returns the time spent relaying.
+     */
+    private long handleDocumentUpdate(String roomId, WebSocketSession session, Map<String, Object> messageData) throws Exception {
         String documentIdStr = (String) messageData.get("documentId");
         String content = (String) messageData.get("content");
         String contentType = (String) messageData.get("contentType");
         
-        logger.info("Document update in room {} for document {}", roomId, documentIdStr);
+        hotPathLogger.record(HotPathLogger.Event.DOCUMENT_UPDATE, roomId, documentIdStr, content != null ? content.length() : 0);
         
-        // Try to save to database if it's a valid UUID
-        try {
-            UUID documentId = UUID.fromString(documentIdStr);
+        UUID documentId = parseDocumentId(documentIdStr);
+        if (documentId == null) {
+            // Not a UUID, probably a temporary document
+            logger.debug("Document {} not yet saved to database (temporary ID)", documentIdStr);
+        } else {
             DocumentUpdateRequest updateRequest = new DocumentUpdateRequest();
             
             if (contentType != null && contentType.startsWith("image/")) {
@@ -108,24 +213,43 @@ public class RoomWebSocketHandler implements WebSocketHandler {
                 updateRequest.setContent(content);
             }
             
-            // Update the document in the database
-            documentService.updateDocument(documentId, updateRequest);
-            logger.debug("Successfully updated document {} in database", documentId);
-            
-        } catch (IllegalArgumentException e) {
-            // Not a UUID, probably a temporary document
-            logger.debug("Document {} not yet saved to database (temporary ID)", documentIdStr);
-        } catch (Exception e) {
-            logger.error("Error updating document {} in database: {}", documentIdStr, e.getMessage());
+            // The document ID comes from the client, so the service only updates it if it is in this session's room
+            try {
+                if (documentService.updateDocument(getAccess(session).getRoomId(), documentId, updateRequest).isEmpty()) {
+                    logger.warn("Session {} in room {} sent an update for document {} outside the room",
+                               session.getId(), roomId, documentId);
+                    send(session, roomId, "ERROR", objectMapper.writeValueAsString(Map.of(
+                        "type", "ERROR",
+                        "message", "Document not found in this room"
+                    )));
+                    return 0;
+                }
+                logger.debug("Successfully updated document {} in database", documentId);
+            } catch (Exception e) {
+                hotPathLogger.error(HotPathLogger.Event.DOCUMENT_UPDATE_FAILED, roomId, documentIdStr, e);
+            }
         }
         
         // Broadcast the update to all other clients in the room
         String updateMessage = objectMapper.writeValueAsString(messageData);
-        broadcastToRoom(roomId, updateMessage, session);
+        return broadcastToRoom(roomId, "DOCUMENT_UPDATE", documentIdStr, updateMessage, session);
     }
     
-    private void handleUserJoin(String roomId, WebSocketSession session, Map<String, Object> messageData) throws Exception {
-        String username = (String) messageData.get("username");
+    private static UUID parseDocumentId(String documentId) {
+        if (documentId == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(documentId);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+    
+    private long handleUserJoin(String roomId, WebSocketSession session, Map<String, Object> messageData) throws Exception {
+        // Authenticated users are named by their token, not by what the client claims
+        RoomSessionAccess access = getAccess(session);
+        String username = access.isAuthenticated() ? access.getUsername() : (String) messageData.get("username");
         logger.info("User {} joined room {}", username, roomId);
         
         // Broadcast join message to all clients in the room
@@ -136,25 +260,110 @@ public class RoomWebSocketHandler implements WebSocketHandler {
             "timestamp", System.currentTimeMillis()
         );
         
-        broadcastToRoom(roomId, objectMapper.writeValueAsString(joinMessage), null);
+        return broadcastToRoom(roomId, "USER_JOINED", null, objectMapper.writeValueAsString(joinMessage), null);
     }
 
-    private void broadcastToRoom(String roomId, String message, WebSocketSession excludeSession) {
+    /**
+     * Send a message to every open session in the room but {@code excludeSession}; returns
+     * the time it took.
+     */
+    private long broadcastToRoom(String roomId, String type, String documentId, String message, WebSocketSession excludeSession) {
         CopyOnWriteArraySet<WebSocketSession> sessions = roomSessions.get(roomId);
         if (sessions != null) {
-            sessions.forEach(session -> {
+            RealtimeEvents.RoomBroadcast broadcast = new RealtimeEvents.RoomBroadcast();
+            broadcast.begin();
+            long started = System.nanoTime();
+            TextMessage frame = new TextMessage(message);
+            long bytes = RealtimeMetrics.utf8Length(message);
+            int recipients = 0;
+            for (WebSocketSession session : sessions) {
                 if (session != excludeSession && session.isOpen()) {
                     try {
-                        session.sendMessage(new TextMessage(message));
+                        RealtimeEvents.SessionSend send = new RealtimeEvents.SessionSend();
+                        send.begin();
+                        long sendStarted = System.nanoTime();
+                        session.sendMessage(frame);
+                        metrics.sendCompleted(System.nanoTime() - sendStarted);
+                        send.finish(roomId, session.getId(), bytes);
+                        metrics.frameSent(type, roomId, bytes);
+                        recipients++;
                     } catch (Exception e) {
-                        logger.error("Error sending message to session {} in room {}: {}", 
-                                   session.getId(), roomId, e.getMessage());
+                        hotPathLogger.error(HotPathLogger.Event.SEND_FAILED, roomId, session.getId(), e);
                         // Remove broken session
                         sessions.remove(session);
                         sessionToRoom.remove(session.getId());
                     }
                 }
-            });
+            }
+            metrics.broadcastCompleted(type, roomId, recipients, System.nanoTime() - started);
+            // Fan-out is charged to the sender, if the message had one
+            hotspots.record(HotspotTracker.Direction.OUTBOUND, roomId, documentId,
+                    excludeSession != null ? userKey(excludeSession) : null, recipients, bytes * recipients);
+            broadcast.finish(roomId, type, bytes, recipients);
+            return System.nanoTime() - started;
+        }
+        return 0;
+    }
+    
+    /**
+     * Joins are shed last; presence and other relayed messages first. Edits are never shed.
+     */
+    private static AdmissionController.Priority admissionPriority(String type) {
+        if ("JOIN".equals(type)) {
+            return AdmissionController.Priority.CRITICAL;
+        }
+        if ("DOCUMENT_RENAME".equals(type)) {
+            return AdmissionController.Priority.NORMAL;
+        }
+        return AdmissionController.Priority.LOW;
+    }
+
+    private void send(WebSocketSession session, String roomId, String type, String message) throws IOException {
+        long bytes = RealtimeMetrics.utf8Length(message);
+        RealtimeEvents.SessionSend send = new RealtimeEvents.SessionSend();
+        send.begin();
+        long started = System.nanoTime();
+        session.sendMessage(new TextMessage(message));
+        metrics.sendCompleted(System.nanoTime() - started);
+        send.finish(roomId, session.getId(), bytes);
+        metrics.frameSent(type, roomId, bytes);
+        hotspots.record(HotspotTracker.Direction.OUTBOUND, roomId, null, null, 1, bytes);
+    }
+
+    /**
+     * Push permission changes to the user's live sessions in the room. Runs after the
+     * granting transaction commits so sessions never see an uncommitted level.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRoomPermissionChanged(RoomPermissionChangedEvent event) {
+        CopyOnWriteArraySet<WebSocketSession> sessions = roomSessions.get(event.getRoomId().toString());
+        if (sessions == null) {
+            return;
+        }
+        
+        for (WebSocketSession session : sessions) {
+            RoomSessionAccess access = getAccess(session);
+            if (access == null || !event.getUserId().equals(access.getUserId())) {
+                continue;
+            }
+            
+            try {
+                if (event.isRevoked()) {
+                    logger.info("Permission revoked for user {} in room {}, closing session {}", 
+                               event.getUserId(), event.getRoomId(), session.getId());
+                    access.setPermissionLevel(null);
+                    session.close(CloseStatus.POLICY_VIOLATION.withReason("Room access revoked"));
+                } else {
+                    access.setPermissionLevel(event.getPermissionLevel());
+                    send(session, event.getRoomId().toString(), "PERMISSION_CHANGED", objectMapper.writeValueAsString(Map.of(
+                        "type", "PERMISSION_CHANGED",
+                        "roomId", event.getRoomId().toString(),
+                        "permission", event.getPermissionLevel()
+                    )));
+                }
+            } catch (Exception e) {
+                logger.error("Error applying permission change to session {}: {}", session.getId(), e.getMessage());
+            }
         }
     }
 
@@ -174,7 +383,8 @@ public class RoomWebSocketHandler implements WebSocketHandler {
         
         cleanupSession(session);
         
-        if (roomId != null) {
+        // A drained user is only moving to another node, not leaving the room
+        if (roomId != null && !CloseStatus.SERVICE_RESTARTED.equalsCode(closeStatus)) {
             // Notify other users about disconnection
             Map<String, Object> leaveMessage = Map.of(
                 "type", "USER_LEFT",
@@ -183,7 +393,7 @@ public class RoomWebSocketHandler implements WebSocketHandler {
                 "timestamp", System.currentTimeMillis()
             );
             
-            broadcastToRoom(roomId, objectMapper.writeValueAsString(leaveMessage), null);
+            broadcastToRoom(roomId, "USER_LEFT", null, objectMapper.writeValueAsString(leaveMessage), null);
         }
     }
 
@@ -192,6 +402,38 @@ public class RoomWebSocketHandler implements WebSocketHandler {
         return false;
     }
     
+    /**
+     * Sessions currently joined to a room on this node.
+     */
+    public List<WebSocketSession> openSessions() {
+        List<WebSocketSession> sessions = new ArrayList<>(sessionToRoom.size());
+        for (CopyOnWriteArraySet<WebSocketSession> room : roomSessions.values()) {
+            sessions.addAll(room);
+        }
+        return sessions;
+    }
+
+    /**
+     * Tell a client to reconnect after {@code reconnectAfterMs}, to whichever node the
+     * load balancer picks, and close its session with 1012 (service restart).
+     */
+    public void closeForRestart(WebSocketSession session, long reconnectAfterMs) {
+        String roomId = sessionToRoom.get(session.getId());
+        try {
+            if (roomId != null && session.isOpen()) {
+                send(session, roomId, "RECONNECT", objectMapper.writeValueAsString(Map.of(
+                    "type", "RECONNECT",
+                    "retryAfterMs", reconnectAfterMs,
+                    "message", "Server is restarting, reconnect"
+                )));
+            }
+            session.close(CloseStatus.SERVICE_RESTARTED.withReason("Reconnect in " + reconnectAfterMs + " ms"));
+        } catch (Exception e) {
+            logger.warn("Error closing session {} for restart: {}", session.getId(), e.getMessage());
+            cleanupSession(session);
+        }
+    }
+
     private void cleanupSession(WebSocketSession session) {
         String roomId = sessionToRoom.remove(session.getId());
         if (roomId != null) {
@@ -206,15 +448,17 @@ public class RoomWebSocketHandler implements WebSocketHandler {
         }
     }
     
-    private String extractRoomIdFromPath(URI uri) {
-        if (uri != null && uri.getPath() != null) {
-            String path = uri.getPath();
-            // Expected format: /ws/room/{roomId}
-            String[] parts = path.split("/");
-            if (parts.length >= 4 && "ws".equals(parts[1]) && "room".equals(parts[2])) {
-                return parts[3];
-            }
-        }
-        return null;
+    private RoomSessionAccess getAccess(WebSocketSession session) {
+        return (RoomSessionAccess) session.getAttributes().get(RoomSessionAccess.ATTRIBUTE);
+    }
+    
+    private String userKey(WebSocketSession session) {
+        RoomSessionAccess access = getAccess(session);
+        return access != null && access.getUserId() != null ? access.getUserId().toString() : "session:" + session.getId();
+    }
+    
+    private static String documentIdOf(Map<String, Object> messageData) {
+        Object documentId = messageData.get("documentId");
+        return documentId instanceof String ? (String) documentId : null;
     }
 } 
\ No newline at end of file
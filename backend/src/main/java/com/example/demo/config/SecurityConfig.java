@@ -1,13 +1,25 @@
 package com.example.demo.config;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
@@ -20,10 +32,65 @@ import java.util.Arrays;
 @EnableWebSecurity
 public class SecurityConfig {
 
+    private static final Logger logger = LoggerFactory.getLogger(SecurityConfig.class);
+
+    private static final String DEFAULT_ADMIN_PASSWORD = "admin";
+
+    // Profiles of deployed instances, where the actuator password must be set explicitly
+    private static final Profiles DEPLOYED_PROFILES = Profiles.of("prod", "docker");
+
     @Autowired
     private JwtAuthenticationFilter jwtAuthenticationFilter;
 
+    @Autowired
+    private Environment environment;
+
+    /**
+     * Actuator endpoints sit in front of the JWT chain. Health stays public for
+     * load balancers; everything else (metrics, cache statistics, drain) needs HTTP basic
+     * as the spring.security.user admin account. Under the prod or docker profile its
+     * password must come from the environment: startup fails while it is unset or still
+     * the old default. Local runs without ACTUATOR_PASSWORD get a generated password,
+     * logged at startup.
+     */
+    @Bean
+    @Order(1)
+    public SecurityFilterChain actuatorFilterChain(HttpSecurity http, SecurityProperties securityProperties) throws Exception {
+        SecurityProperties.User admin = securityProperties.getUser();
+        if (admin.isPasswordGenerated() || DEFAULT_ADMIN_PASSWORD.equals(admin.getPassword())) {
+            if (environment.acceptsProfiles(DEPLOYED_PROFILES)) {
+                throw new IllegalStateException("Set ACTUATOR_PASSWORD (spring.security.user.password) to protect the actuator endpoints");
+            }
+            logger.warn("Actuator admin password for this run is {}; set ACTUATOR_PASSWORD before deploying", admin.getPassword());
+        }
+        // The configured password is plain text, so it cannot go through the BCrypt encoder below
+        UserDetails adminUser = org.springframework.security.core.userdetails.User
+                .withUsername(admin.getName())
+                .password("{noop}" + admin.getPassword())
+                .roles(admin.getRoles().toArray(new String[0]))
+                .build();
+        DaoAuthenticationProvider adminProvider = new DaoAuthenticationProvider();
+        adminProvider.setUserDetailsService(new InMemoryUserDetailsManager(adminUser));
+        adminProvider.setPasswordEncoder(PasswordEncoderFactories.createDelegatingPasswordEncoder());
+        
+        http
+            .requestMatcher(EndpointRequest.toAnyEndpoint())
+            .csrf().disable()
+            .authenticationProvider(adminProvider)
+            .authorizeRequests()
+                .requestMatchers(EndpointRequest.to(HealthEndpoint.class)).permitAll()
+                .anyRequest().hasRole("ADMIN")
+            .and()
+            .httpBasic()
+            .and()
+            .sessionManagement()
+                .sessionCreationPolicy(SessionCreationPolicy.STATELESS);
+        
+        return http.build();
+    }
+
     @Bean
+    @Order(2)
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
         http
             .cors().and()
@@ -55,7 +122,7 @@ public class SecurityConfig {
         configuration.setAllowedOrigins(Arrays.asList("http://localhost:3000", "http://127.0.0.1:3000"));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS", "PATCH"));
         configuration.setAllowedHeaders(Arrays.asList("Authorization", "Cache-Control", "Content-Type", "X-Requested-With"));
-        configuration.setExposedHeaders(Arrays.asList("Authorization"));
+        configuration.setExposedHeaders(Arrays.asList("Authorization", "ETag", "Content-Range", "Accept-Ranges", "X-Next-Cursor"));
         configuration.setAllowCredentials(true);
         configuration.setMaxAge(3600L);
         
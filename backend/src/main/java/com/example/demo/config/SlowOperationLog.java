@@ -0,0 +1,144 @@
+package com.example.demo.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where finished {@link QueryStats} scopes go. Every scope feeds the {@code db.statements}
+ * and {@code db.time} meters, tagged by kind (http, websocket) and operation (route or
+ * message type). Scopes over a {@code slow-operations.*} threshold, or running one
+ * statement suspiciously often (N+1), are logged and kept in a bounded buffer that
+ * /actuator/slowoperations exposes.
+ */
+@Component
+public class SlowOperationLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(SlowOperationLog.class);
+
+    private final MeterRegistry meterRegistry;
+    private final int maxStatements;
+    private final long maxDbNanos;
+    private final long maxElapsedNanos;
+    private final int maxRepeats;
+    private final int capacity;
+
+    private final Map<String, Map<String, OperationMeters>> meters = new ConcurrentHashMap<>();
+    private final Deque<Map<String, Object>> recent = new ArrayDeque<>();
+
+    @Autowired
+    public SlowOperationLog(
+            MeterRegistry meterRegistry,
+            @Value("${slow-operations.max-statements:20}") int maxStatements,
+            @Value("${slow-operations.max-db-ms:200}") long maxDbMs,
+            @Value("${slow-operations.max-elapsed-ms:1000}") long maxElapsedMs,
+            @Value("${slow-operations.max-repeats:5}") int maxRepeats,
+            @Value("${slow-operations.capacity:100}") int capacity) {
+        this.meterRegistry = meterRegistry;
+        this.maxStatements = maxStatements;
+        this.maxDbNanos = TimeUnit.MILLISECONDS.toNanos(maxDbMs);
+        this.maxElapsedNanos = TimeUnit.MILLISECONDS.toNanos(maxElapsedMs);
+        this.maxRepeats = maxRepeats;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Record a scope once its operation is done; closes it if the caller has not.
+     */
+    public void completed(QueryStats.Scope scope) {
+        scope.close();
+        OperationMeters operationMeters = meters
+                .computeIfAbsent(scope.getKind(), kind -> new ConcurrentHashMap<>())
+                .computeIfAbsent(String.valueOf(scope.getOperation()), operation -> new OperationMeters(scope.getKind(), operation));
+        operationMeters.statements.record(scope.getStatementCount());
+        operationMeters.dbTime.record(scope.getDbNanos(), TimeUnit.NANOSECONDS);
+
+        List<String> reasons = new ArrayList<>(0);
+        if (scope.getStatementCount() > maxStatements) {
+            reasons.add("statements");
+        }
+        if (scope.getDbNanos() > maxDbNanos) {
+            reasons.add("db-time");
+        }
+        if (scope.getElapsedNanos() > maxElapsedNanos) {
+            reasons.add("elapsed");
+        }
+        if (scope.getMostRepeatedCount() >= maxRepeats) {
+            reasons.add("repeated-statement");
+        }
+        if (reasons.isEmpty()) {
+            return;
+        }
+
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("time", Instant.now().toString());
+        entry.put("kind", scope.getKind());
+        entry.put("operation", scope.getOperation());
+        entry.put("reasons", reasons);
+        entry.put("statements", scope.getStatementCount());
+        entry.put("dbMs", scope.getDbNanos() / 1_000_000.0);
+        entry.put("elapsedMs", scope.getElapsedNanos() / 1_000_000.0);
+        entry.put("mostRepeatedCount", scope.getMostRepeatedCount());
+        entry.put("mostRepeatedStatement", scope.getMostRepeatedStatement());
+        synchronized (recent) {
+            if (recent.size() >= capacity) {
+                recent.removeFirst();
+            }
+            recent.addLast(entry);
+        }
+        logger.warn("Slow {} operation {} ({}): {} statements, {} ms in the database, {} ms total; most repeated {}x: {}",
+                scope.getKind(), scope.getOperation(), reasons, scope.getStatementCount(), entry.get("dbMs"),
+                entry.get("elapsedMs"), scope.getMostRepeatedCount(), scope.getMostRepeatedStatement());
+    }
+
+    /**
+     * Flagged operations, newest first.
+     */
+    public List<Map<String, Object>> recent() {
+        List<Map<String, Object>> entries = new ArrayList<>();
+        synchronized (recent) {
+            recent.descendingIterator().forEachRemaining(entries::add);
+        }
+        return entries;
+    }
+
+    public void clear() {
+        synchronized (recent) {
+            recent.clear();
+        }
+    }
+
+    private final class OperationMeters {
+
+        private final DistributionSummary statements;
+        private final Timer dbTime;
+
+        OperationMeters(String kind, String operation) {
+            this.statements = DistributionSummary.builder("db.statements")
+                    .description("SQL statements per request or message")
+                    .tag("kind", kind)
+                    .tag("operation", operation)
+                    .register(meterRegistry);
+            this.dbTime = Timer.builder("db.time")
+                    .description("Time in JDBC execution per request or message")
+                    .tag("kind", kind)
+                    .tag("operation", operation)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.demo.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The operations {@link SlowOperationLog} flagged, newest first, at /actuator/slowoperations.
+ * DELETE clears the buffer.
+ */
+@Component
+@Endpoint(id = "slowoperations")
+public class SlowOperationsEndpoint {
+
+    private final SlowOperationLog slowOperationLog;
+
+    @Autowired
+    public SlowOperationsEndpoint(SlowOperationLog slowOperationLog) {
+        this.slowOperationLog = slowOperationLog;
+    }
+
+    @ReadOperation
+    public List<Map<String, Object>> slowOperations() {
+        return slowOperationLog.recent();
+    }
+
+    @DeleteOperation
+    public void clear() {
+        slowOperationLog.clear();
+    }
+}
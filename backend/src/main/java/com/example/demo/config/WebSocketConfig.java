@@ -1,25 +1,29 @@
 package com.example.demo.config;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
-import org.springframework.web.socket.WebSocketHandler;
 
 @Configuration
 @EnableWebSocket
 public class WebSocketConfig implements WebSocketConfigurer {
 
+    @Autowired
+    private RoomHandshakeInterceptor roomHandshakeInterceptor;
+
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
         // Register plain WebSocket handlers for room connections
         registry.addHandler(roomWebSocketHandler(), "/ws/room/*")
+                .addInterceptors(roomHandshakeInterceptor)
                 .setAllowedOrigins("*");
     }
     
     @Bean
-    public WebSocketHandler roomWebSocketHandler() {
+    public RoomWebSocketHandler roomWebSocketHandler() {
         return new RoomWebSocketHandler();
     }
 } 
\ No newline at end of file
@@ -5,11 +5,15 @@ import com.example.demo.dto.LoginRequest;
 import com.example.demo.dto.SignupRequest;
 import com.example.demo.dto.UserInfo;
 import com.example.demo.model.User;
+import com.example.demo.service.AuthThrottleService;
+import com.example.demo.service.PasswordHashingBusyException;
 import com.example.demo.service.UserService;
 import com.example.demo.util.JwtUtil;
+import com.example.demo.util.VerifiedJwt;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -32,17 +36,29 @@ public class AuthController {
 
     private final UserService userService;
     private final JwtUtil jwtUtil;
+    private final AuthThrottleService authThrottleService;
 
     @Autowired
-    public AuthController(UserService userService, JwtUtil jwtUtil) {
+    public AuthController(UserService userService, JwtUtil jwtUtil, AuthThrottleService authThrottleService) {
         this.userService = userService;
         this.jwtUtil = jwtUtil;
+        this.authThrottleService = authThrottleService;
     }
 
     @PostMapping("/login")
-    public ResponseEntity<?> login(@Valid @RequestBody LoginRequest loginRequest) {
+    public ResponseEntity<?> login(@Valid @RequestBody LoginRequest loginRequest, HttpServletRequest request) {
         logger.info("Login attempt for email: {}", loginRequest.getEmail());
 
+        // Throttle before any password hashing happens
+        long retryAfter = authThrottleService.acquireForIp(request.getRemoteAddr());
+        if (retryAfter == 0) {
+            retryAfter = authThrottleService.acquireForAccount(loginRequest.getEmail());
+        }
+        if (retryAfter > 0) {
+            logger.warn("Login throttled for email {} from {}", loginRequest.getEmail(), request.getRemoteAddr());
+            return tooManyRequests(retryAfter, "Too many login attempts, please retry later");
+        }
+
         try {
             // Find user by email
             Optional<User> userOpt = userService.findByEmail(loginRequest.getEmail());
@@ -76,6 +92,9 @@ public class AuthController {
             logger.info("User {} logged in successfully", user.getUsername());
             return ResponseEntity.ok(authResponse);
 
+        } catch (PasswordHashingBusyException e) {
+            logger.warn("Login for email {} shed: {}", loginRequest.getEmail(), e.getMessage());
+            return tooManyRequests(1, "Server is busy, please retry");
         } catch (Exception e) {
             logger.error("Error during login for email {}: {}", loginRequest.getEmail(), e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -84,10 +103,16 @@ public class AuthController {
     }
 
     @PostMapping("/signup")
-    public ResponseEntity<?> signup(@Valid @RequestBody SignupRequest signupRequest) {
+    public ResponseEntity<?> signup(@Valid @RequestBody SignupRequest signupRequest, HttpServletRequest request) {
         logger.info("Signup attempt for username: {}, email: {}", 
                    signupRequest.getUsername(), signupRequest.getEmail());
 
+        long retryAfter = authThrottleService.acquireForIp(request.getRemoteAddr());
+        if (retryAfter > 0) {
+            logger.warn("Signup throttled from {}", request.getRemoteAddr());
+            return tooManyRequests(retryAfter, "Too many signup attempts, please retry later");
+        }
+
         try {
             // Check if username already exists
             if (userService.existsByUsername(signupRequest.getUsername())) {
@@ -125,6 +150,9 @@ public class AuthController {
             logger.info("User {} registered and logged in successfully", newUser.getUsername());
             return ResponseEntity.status(HttpStatus.CREATED).body(authResponse);
 
+        } catch (PasswordHashingBusyException e) {
+            logger.warn("Signup for username {} shed: {}", signupRequest.getUsername(), e.getMessage());
+            return tooManyRequests(1, "Server is busy, please retry");
         } catch (Exception e) {
             logger.error("Error during signup for username {}: {}", signupRequest.getUsername(), e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -141,14 +169,14 @@ public class AuthController {
                         .body(createErrorResponse("Token not provided"));
             }
 
-            if (!jwtUtil.validateToken(token)) {
+            Optional<VerifiedJwt> verified = jwtUtil.verify(token);
+            if (verified.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                         .body(createErrorResponse("Invalid or expired token"));
             }
 
             // Extract user info from token
-            String userId = jwtUtil.getUserIdFromToken(token);
-            Optional<User> userOpt = userService.findById(java.util.UUID.fromString(userId));
+            Optional<User> userOpt = userService.findById(verified.get().getUserId());
             
             if (userOpt.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
@@ -191,6 +219,12 @@ public class AuthController {
         return null;
     }
 
+    private ResponseEntity<Map<String, String>> tooManyRequests(long retryAfterSeconds, String message) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(createErrorResponse(message));
+    }
+
     private Map<String, String> createErrorResponse(String message) {
         Map<String, String> errorResponse = new HashMap<>();
         errorResponse.put("error", message);
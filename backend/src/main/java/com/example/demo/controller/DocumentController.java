@@ -1,24 +1,42 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.CursorPage;
 import com.example.demo.dto.DocumentCreateRequest;
 import com.example.demo.dto.DocumentResponse;
+import com.example.demo.dto.DocumentSummary;
 import com.example.demo.dto.DocumentUpdateRequest;
 import com.example.demo.model.DocumentType;
+import com.example.demo.model.ImageVariant;
+import com.example.demo.repository.DocumentMetadata;
 import com.example.demo.service.DocumentService;
+import com.example.demo.service.ImageDerivativeService;
+import com.example.demo.util.Rope;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/rooms/{roomId}/documents")
@@ -27,26 +45,67 @@ public class DocumentController {
     private static final Logger logger = LoggerFactory.getLogger(DocumentController.class);
     
     private final DocumentService documentService;
+    private final ImageDerivativeService imageDerivativeService;
+    
+    @Value("${documents.http-cache.image-max-age-seconds:300}")
+    private long imageMaxAgeSeconds;
     
     @Autowired
-    public DocumentController(DocumentService documentService) {
+    public DocumentController(DocumentService documentService, ImageDerivativeService imageDerivativeService) {
         this.documentService = documentService;
+        this.imageDerivativeService = imageDerivativeService;
     }
     
     @GetMapping
-    public ResponseEntity<List<DocumentResponse>> getAllDocuments(@PathVariable UUID roomId) {
-        logger.info("Getting all documents for room: {}", roomId);
+    public ResponseEntity<List<DocumentSummary>> getAllDocuments(
+            @PathVariable UUID roomId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        logger.info("Getting documents for room: {}", roomId);
+        
+        CursorPage<DocumentSummary> page;
+        try {
+            page = documentService.getDocumentSummaries(roomId, cursor, limit);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejecting document listing with invalid cursor: {}", cursor);
+            return ResponseEntity.badRequest().build();
+        }
         
-        List<DocumentResponse> documents = documentService.getAllDocumentsInRoom(roomId);
-        return ResponseEntity.ok(documents);
+        // Listings carry no content; clients fetch /{documentId} for that
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(RoomController.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
     }
     
     @GetMapping("/{documentId}")
     public ResponseEntity<DocumentResponse> getDocumentById(
             @PathVariable UUID roomId, 
-            @PathVariable UUID documentId) {
+            @PathVariable UUID documentId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         logger.info("Getting document {} in room {}", documentId, roomId);
         
+        // Revalidation only needs the stored hash, so answer it before loading any content
+        Optional<DocumentMetadata> metadataOpt = documentService.getDocumentMetadata(documentId);
+        if (metadataOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        DocumentMetadata metadata = metadataOpt.get();
+        if (!metadata.getRoomId().equals(roomId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        
+        // Live edits change the op log head but not the stored row, so the head seq is part of the tag
+        String etag = documentEtag(metadata.getContentHash(), metadata.getUpdatedAt(), documentService.getHeadSeq(metadata));
+        if (etag != null && etagMatches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(cacheControlFor(null))
+                    .build();
+        }
+        
         Optional<DocumentResponse> documentOpt = documentService.getDocument(documentId);
         
         if (documentOpt.isEmpty()) {
@@ -54,9 +113,6 @@ public class DocumentController {
         }
         
         DocumentResponse document = documentOpt.get();
-        if (!document.getRoomId().equals(roomId)) {
-            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-        }
         
         // For binary content, don't include it in the response directly
         // Client should call the /image endpoint to get the actual binary data
@@ -67,7 +123,64 @@ public class DocumentController {
             logger.info("Document {} has binary content. Image data not included in response", documentId);
         }
         
-        return ResponseEntity.ok(document);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().cacheControl(cacheControlFor(null));
+        if (etag != null) {
+            response.eTag(etag);
+        }
+        return response.body(document);
+    }
+    
+    /**
+     * The raw text of a text document, streamed from an immutable snapshot instead of
+     * being built into one string and a JSON body first.
+     */
+    @GetMapping("/{documentId}/content")
+    public ResponseEntity<StreamingResponseBody> getDocumentContent(
+            @PathVariable UUID roomId,
+            @PathVariable UUID documentId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        logger.info("Getting content of document {} in room {}", documentId, roomId);
+        
+        Optional<DocumentMetadata> metadataOpt = documentService.getDocumentMetadata(documentId);
+        if (metadataOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        DocumentMetadata metadata = metadataOpt.get();
+        if (!metadata.getRoomId().equals(roomId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        if (metadata.isStoredAsBinary()) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        String etag = documentEtag(metadata.getContentHash(), metadata.getUpdatedAt(), documentService.getHeadSeq(metadata));
+        if (etag != null && etagMatches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(cacheControlFor(null))
+                    .build();
+        }
+        
+        Optional<Rope> textOpt = documentService.getDocumentText(documentId);
+        if (textOpt.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        Rope text = textOpt.get();
+        StreamingResponseBody body = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            text.writeTo(writer);
+            writer.flush();
+        };
+        
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .cacheControl(cacheControlFor(null))
+                .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8));
+        if (etag != null) {
+            response.eTag(etag);
+        }
+        return response.body(body);
     }
     
     @PostMapping
@@ -125,18 +238,14 @@ public class DocumentController {
             @Valid @RequestBody DocumentUpdateRequest request) {
         logger.info("Updating document {} in room {}", documentId, roomId);
         
-        Optional<DocumentResponse> documentOpt = documentService.updateDocument(documentId, request);
+        // Checked against the room before anything is written; another room's document is not found
+        Optional<DocumentResponse> documentOpt = documentService.updateDocument(roomId, documentId, request);
         
         if (documentOpt.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
         
-        DocumentResponse document = documentOpt.get();
-        if (!document.getRoomId().equals(roomId)) {
-            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-        }
-        
-        return ResponseEntity.ok(document);
+        return ResponseEntity.ok(documentOpt.get());
     }
     
     @PutMapping(value = "/{documentId}/upload-image", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
@@ -159,50 +268,127 @@ public class DocumentController {
                     .binaryContent(file.getBytes())
                     .build();
             
-            Optional<DocumentResponse> documentOpt = documentService.updateDocument(documentId, request);
+            Optional<DocumentResponse> documentOpt = documentService.updateDocument(roomId, documentId, request);
             
             if (documentOpt.isEmpty()) {
                 return ResponseEntity.notFound().build();
             }
             
-            DocumentResponse document = documentOpt.get();
-            if (!document.getRoomId().equals(roomId)) {
-                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-            }
-            
-            return ResponseEntity.ok(document);
+            return ResponseEntity.ok(documentOpt.get());
         } catch (IOException e) {
             logger.error("Error reading uploaded file", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
     
-    @GetMapping(value = "/{documentId}/image", produces = MediaType.IMAGE_JPEG_VALUE)
-    public ResponseEntity<byte[]> getDocumentImage(
+    @GetMapping("/{documentId}/image")
+    public ResponseEntity<?> getDocumentImage(
             @PathVariable UUID roomId,
-            @PathVariable UUID documentId) {
+            @PathVariable UUID documentId,
+            @RequestParam(value = "variant", required = false) ImageVariant variant,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String rangeHeader) {
         logger.info("Getting image for document {} in room {}", documentId, roomId);
         
-        Optional<DocumentResponse> documentOpt = documentService.getDocument(documentId);
+        Optional<DocumentMetadata> metadataOpt = documentService.getDocumentMetadata(documentId);
         
-        if (documentOpt.isEmpty()) {
+        if (metadataOpt.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
         
-        DocumentResponse document = documentOpt.get();
-        if (!document.getRoomId().equals(roomId)) {
+        DocumentMetadata metadata = metadataOpt.get();
+        if (!metadata.getRoomId().equals(roomId)) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
         
-        if (document.getBinaryContent() == null) {
+        if (!metadata.isStoredAsBinary()) {
             return ResponseEntity.notFound().build();
         }
         
-        return ResponseEntity
-            .ok()
-            .contentType(MediaType.parseMediaType(document.getContentType() != null ? 
-                document.getContentType() : MediaType.IMAGE_JPEG_VALUE))
-            .body(document.getBinaryContent());
+        MediaType mediaType = MediaType.parseMediaType(metadata.getContentType() != null ? 
+                metadata.getContentType() : MediaType.IMAGE_JPEG_VALUE);
+        CacheControl cacheControl = cacheControlFor(mediaType.toString());
+        String etag = metadata.getContentHash() != null ? "\"" + metadata.getContentHash() + "\"" : null;
+        
+        // Resized variants (e.g. ?variant=thumb for listings) come from the derivative cache
+        if (variant != null && metadata.getContentHash() != null) {
+            String variantEtag = "\"" + metadata.getContentHash() + "-" + variant.name() + "\"";
+            if (etagMatches(ifNoneMatch, variantEtag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(variantEtag)
+                        .cacheControl(cacheControl)
+                        .build();
+            }
+            
+            Optional<ImageDerivativeService.ImageDerivative> derivative = imageDerivativeService.getDerivative(
+                    documentId, metadata.getContentHash(), variant, () -> documentService.getBinaryContent(documentId));
+            if (derivative.isPresent()) {
+                return ResponseEntity.ok()
+                        .eTag(variantEtag)
+                        .cacheControl(cacheControl)
+                        .contentType(MediaType.parseMediaType(derivative.get().getContentType()))
+                        .body(new ByteArrayResource(derivative.get().getData()));
+            }
+            // Not rendered yet, or a format ImageIO cannot decode: serve the original, revalidated
+            // on every request so the client picks up the variant once it is ready
+            cacheControl = CacheControl.noCache().cachePrivate();
+        }
+        
+        if (etag != null && etagMatches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(cacheControl)
+                    .build();
+        }
+        
+        // Serve single ranges straight from the database; only the requested bytes are read.
+        // A stale If-Range validator means the client must get the whole (changed) image.
+        boolean rangeApplies = rangeHeader != null && etag != null && (ifRange == null || ifRange.equals(etag));
+        if (rangeApplies) {
+            long size = metadata.getContentSize();
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+                if (ranges.size() == 1) {
+                    long start = ranges.get(0).getRangeStart(size);
+                    long end = ranges.get(0).getRangeEnd(size);
+                    byte[] slice = documentService.getBinaryRange(documentId, start, end - start + 1);
+                    
+                    return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                            .eTag(etag)
+                            .cacheControl(cacheControl)
+                            .contentType(mediaType)
+                            .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                            .header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size)
+                            .body(new ByteArrayResource(slice));
+                }
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+                        .build();
+            }
+        }
+        
+        Optional<DocumentResponse> documentOpt = documentService.getDocument(documentId);
+        
+        if (documentOpt.isEmpty() || documentOpt.get().getBinaryContent() == null) {
+            return ResponseEntity.notFound().build();
+        }
+        
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .cacheControl(cacheControl)
+                .contentType(mediaType);
+        if (etag != null) {
+            response.eTag(etag);
+        }
+        byte[] content = documentOpt.get().getBinaryContent();
+        if (rangeHeader != null && !rangeApplies) {
+            // Spring slices any Resource body by the Range header without looking at If-Range,
+            // so a changed image goes out as plain bytes to make sure it is sent whole
+            return response.body(content);
+        }
+        // Returning a Resource lets Spring answer any multi-range request from the full image
+        return response.body(new ByteArrayResource(content));
     }
     
     @DeleteMapping("/{documentId}")
@@ -222,4 +408,38 @@ public class DocumentController {
                 ResponseEntity.noContent().build() : 
                 ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
     }
+    
+    /**
+     * Collaboratively edited documents change constantly and must always be revalidated;
+     * images are replaced rarely, so clients may reuse them for a short window first.
+     */
+    private CacheControl cacheControlFor(String contentType) {
+        if (contentType != null && contentType.startsWith("image/")) {
+            return CacheControl.maxAge(imageMaxAgeSeconds, TimeUnit.SECONDS).cachePrivate();
+        }
+        return CacheControl.noCache().cachePrivate();
+    }
+    
+    // The JSON view also carries the name and timestamps, so its tag covers the last update too
+    private static String documentEtag(String contentHash, ZonedDateTime updatedAt, long seq) {
+        if (contentHash == null || updatedAt == null) {
+            return null;
+        }
+        return "\"" + contentHash + "-" + Long.toHexString(updatedAt.toInstant().toEpochMilli())
+                + "-" + Long.toHexString(seq) + "\"";
+    }
+    
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        // If-None-Match uses weak comparison
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
 } 
\ No newline at end of file
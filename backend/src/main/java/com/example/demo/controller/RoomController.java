@@ -1,13 +1,16 @@
 package com.example.demo.controller;
 
 import com.example.demo.config.JwtAuthenticationFilter;
+import com.example.demo.dto.CursorPage;
 import com.example.demo.dto.RoomCreateRequest;
 import com.example.demo.dto.RoomJoinRequest;
 import com.example.demo.dto.RoomResponse;
+import com.example.demo.service.PasswordHashingBusyException;
 import com.example.demo.service.RoomService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -15,7 +18,9 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -26,6 +31,8 @@ public class RoomController {
     
     private static final Logger logger = LoggerFactory.getLogger(RoomController.class);
     
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    
     private final RoomService roomService;
     
     @Autowired
@@ -34,9 +41,23 @@ public class RoomController {
     }
     
     @GetMapping
-    public ResponseEntity<List<RoomResponse>> getAllRooms() {
-        List<RoomResponse> rooms = roomService.getAllRooms();
-        return ResponseEntity.ok(rooms);
+    public ResponseEntity<List<RoomResponse>> getAllRooms(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        CursorPage<RoomResponse> page;
+        try {
+            page = roomService.getRooms(cursor, limit);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejecting room listing with invalid cursor: {}", cursor);
+            return ResponseEntity.badRequest().build();
+        }
+        
+        // The body stays a plain array; the cursor for the next page travels in a header
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
     }
     
     @GetMapping("/{roomId}")
@@ -117,4 +138,14 @@ public class RoomController {
                     }});
         }
     }
+    
+    @ExceptionHandler(PasswordHashingBusyException.class)
+    public ResponseEntity<Map<String, String>> handlePasswordHashingBusy(PasswordHashingBusyException e) {
+        logger.warn("Room password check rejected: {}", e.getMessage());
+        Map<String, String> error = new HashMap<>();
+        error.put("error", "Server is busy, please retry");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(error);
+    }
 } 
\ No newline at end of file
@@ -31,7 +31,9 @@ public class UserController {
     }
 
     @GetMapping("/rooms")
-    public ResponseEntity<?> getUserRooms() {
+    public ResponseEntity<?> getUserRooms(
+            @RequestParam(value = "page", required = false) Integer page,
+            @RequestParam(value = "limit", required = false) Integer limit) {
         try {
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
             
@@ -45,7 +47,7 @@ public class UserController {
             UUID userId = userDetails.getUserId();
             logger.info("Getting rooms for user: {} ({})", userDetails.getUsername(), userId);
 
-            List<RoomResponse> userRooms = roomService.getUserRooms(userId);
+            List<RoomResponse> userRooms = roomService.getUserRooms(userId, page, limit);
             
             logger.info("Found {} rooms for user {}", userRooms.size(), userDetails.getUsername());
             return ResponseEntity.ok(userRooms);
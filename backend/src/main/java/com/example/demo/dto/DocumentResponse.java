@@ -28,5 +28,7 @@ public class DocumentResponse {
     private ZonedDateTime updatedAt;
     private int revisionCount;
     private String contentType;
+    private String contentHash;
+    private long seq;
     private byte[] binaryContent;
 } 
\ No newline at end of file
@@ -0,0 +1,29 @@
+package com.example.demo.dto;
+
+import com.example.demo.model.DocumentType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+/**
+ * DTO for document listings; carries no content (fetch a single document for that)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentSummary {
+    private UUID id;
+    private String name;
+    private DocumentType type;
+    private String contentType;
+    private String contentHash;
+    private long size;
+    private ZonedDateTime createdAt;
+    private ZonedDateTime updatedAt;
+    private int revisionCount;
+}
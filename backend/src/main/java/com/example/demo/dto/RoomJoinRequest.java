@@ -27,4 +27,6 @@ public class RoomJoinRequest {
     private String username; // Required for guest users
     
     private UUID userId; // Optional, for authenticated users
+    
+    private String ticket; // Optional, access ticket from an earlier join; replaces the password
 } 
\ No newline at end of file
@@ -25,4 +25,9 @@ public class RoomResponse {
     private ZonedDateTime createdAt;
     private int documentCount;
     private int userCount;
+    // Only set on the user's own room listing
+    private ZonedDateTime lastActivityAt;
+    private String permissionLevel;
+    // Only set after creating or joining a password-protected room
+    private String accessTicket;
 } 
\ No newline at end of file
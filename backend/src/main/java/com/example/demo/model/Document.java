@@ -52,6 +52,23 @@ public class Document {
     @Type(type = "org.hibernate.type.BinaryType")
     private byte[] contentBinary;
 
+    @Column(name = "content_type", length = 100)
+    private String contentType;
+
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Column(name = "content_size", nullable = false)
+    private long contentSize;
+
+    // Ops up to this sequence number are already part of content
+    @Column(name = "snapshot_seq", nullable = false)
+    private long snapshotSeq;
+
+    // Set instead of content for large documents, see DocumentChunkStore
+    @Column(name = "chunk_manifest", columnDefinition = "text")
+    private String chunkManifest;
+
     @CreationTimestamp
     @Column(name = "created_at", nullable = false)
     private ZonedDateTime createdAt;
@@ -0,0 +1,37 @@
+package com.example.demo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import javax.persistence.*;
+import java.time.ZonedDateTime;
+
+/**
+ * A content-addressed piece of a large document's text. Chunks are immutable and shared
+ * by every document and revision whose manifest lists their hash.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "document_chunks")
+public class DocumentChunk {
+
+    @Id
+    @Column(name = "hash", nullable = false, length = 64)
+    private String hash;
+
+    @Column(name = "content", nullable = false, columnDefinition = "text")
+    private String content;
+
+    @Column(name = "size", nullable = false)
+    private int size;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false)
+    private ZonedDateTime createdAt;
+} 
\ No newline at end of file
@@ -0,0 +1,34 @@
+package com.example.demo.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import javax.persistence.*;
+
+/**
+ * Marks a chunk as used by a document or one of its revisions; a chunk no row points at
+ * is garbage once the sweep's grace period has passed. Rows are only written through the
+ * native queries in {@link com.example.demo.repository.DocumentChunkRepository}, the
+ * mapping is here so the generated schema has the table.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "document_chunk_refs",
+        indexes = @Index(name = "idx_document_chunk_refs_hash", columnList = "hash"))
+@IdClass(DocumentChunkRefId.class)
+public class DocumentChunkRef {
+
+    @Id
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "document_id", nullable = false, columnDefinition = "uuid")
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Document document;
+
+    @Id
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "hash", nullable = false)
+    private DocumentChunk chunk;
+}
@@ -0,0 +1,20 @@
+package com.example.demo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * Composite key of {@link DocumentChunkRef}: the document and the hash of the chunk it uses.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentChunkRefId implements Serializable {
+
+    private UUID document;
+    private String chunk;
+}
@@ -0,0 +1,71 @@
+package com.example.demo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+/**
+ * One edit in a document's append-only operation log. Ops with a sequence number above
+ * the document's snapshot_seq have not been folded into documents.content yet.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "document_ops")
+@IdClass(DocumentOpId.class)
+public class DocumentOp implements Persistable<DocumentOpId> {
+
+    @Id
+    @Column(name = "document_id", nullable = false, columnDefinition = "uuid")
+    private UUID documentId;
+
+    @Id
+    @Column(name = "seq", nullable = false)
+    private long seq;
+
+    @Column(name = "position", nullable = false)
+    private int position;
+
+    @Column(name = "delete_count", nullable = false)
+    private int deleteCount;
+
+    @Column(name = "insert_text", nullable = false, columnDefinition = "text")
+    private String insertText;
+
+    @Column(name = "user_id", columnDefinition = "uuid")
+    private UUID userId;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false)
+    private ZonedDateTime createdAt;
+
+    // Ops are only ever inserted, so skip the select-before-insert merge() would do for assigned ids
+    @Transient
+    @Builder.Default
+    private boolean isNew = true;
+
+    @Override
+    public DocumentOpId getId() {
+        return new DocumentOpId(documentId, seq);
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        isNew = false;
+    }
+}
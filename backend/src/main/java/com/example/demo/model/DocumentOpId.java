@@ -0,0 +1,20 @@
+package com.example.demo.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * Composite key of {@link DocumentOp}: the document and the op's sequence number in it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DocumentOpId implements Serializable {
+
+    private UUID documentId;
+    private long seq;
+}
@@ -33,9 +33,12 @@ public class DocumentRevision {
     @JoinColumn(name = "user_id")
     private User user;
 
-    @Column(name = "content_diff", nullable = false, columnDefinition = "text")
+    @Column(name = "content_diff", columnDefinition = "text")
     private String contentDiff;
 
+    @Column(name = "chunk_manifest", columnDefinition = "text")
+    private String chunkManifest;
+
     @Column(name = "revision_number", nullable = false)
     private Integer revisionNumber;
 
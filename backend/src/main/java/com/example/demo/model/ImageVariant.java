@@ -0,0 +1,19 @@
+package com.example.demo.model;
+
+/**
+ * Enum representing the resized renditions that can be served for image documents.
+ */
+public enum ImageVariant {
+    thumb(128),
+    preview(512);
+
+    private final int maxDimension;
+
+    ImageVariant(int maxDimension) {
+        this.maxDimension = maxDimension;
+    }
+
+    public int getMaxDimension() {
+        return maxDimension;
+    }
+}
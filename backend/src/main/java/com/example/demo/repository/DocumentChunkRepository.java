@@ -0,0 +1,48 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.DocumentChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface DocumentChunkRepository extends JpaRepository<DocumentChunk, String> {
+    
+    @Query("SELECT c.hash FROM DocumentChunk c WHERE c.hash IN :hashes")
+    List<String> findExistingHashes(@Param("hashes") Collection<String> hashes);
+    
+    // Makes reused chunks young again so a concurrent sweep skips them; the row locks last until commit
+    @Modifying
+    @Query(value = "UPDATE document_chunks SET created_at = CURRENT_TIMESTAMP WHERE hash IN :hashes",
+           nativeQuery = true)
+    int touch(@Param("hashes") Collection<String> hashes);
+    
+    // Two documents can introduce the same chunk at once; the second insert is a no-op
+    @Modifying
+    @Query(value = "INSERT INTO document_chunks (hash, content, size, created_at) " +
+                   "VALUES (:hash, :content, :size, CURRENT_TIMESTAMP) ON CONFLICT DO NOTHING",
+           nativeQuery = true)
+    int insertIfAbsent(@Param("hash") String hash, @Param("content") String content, @Param("size") int size);
+    
+    // Flushes first so a document created in this transaction exists for the foreign key
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO document_chunk_refs (document_id, hash) " +
+                   "SELECT :documentId, c.hash FROM document_chunks c WHERE c.hash IN :hashes " +
+                   "ON CONFLICT DO NOTHING",
+           nativeQuery = true)
+    int addReferences(@Param("documentId") UUID documentId, @Param("hashes") Collection<String> hashes);
+    
+    // References are removed with their document, so an indexed lookup finds every unused chunk
+    @Modifying
+    @Query(value = "DELETE FROM document_chunks c WHERE c.created_at < :cutoff " +
+                   "AND NOT EXISTS (SELECT 1 FROM document_chunk_refs r WHERE r.hash = c.hash)",
+           nativeQuery = true)
+    int deleteUnreferencedBefore(@Param("cutoff") ZonedDateTime cutoff);
+} 
\ No newline at end of file
@@ -0,0 +1,31 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.DocumentType;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+/**
+ * Projection of a document row that never touches the content columns.
+ * Used to answer conditional and ranged requests before loading content.
+ */
+public interface DocumentMetadata {
+
+    UUID getId();
+
+    UUID getRoomId();
+
+    DocumentType getType();
+
+    String getContentType();
+
+    String getContentHash();
+
+    long getContentSize();
+
+    boolean isStoredAsBinary();
+
+    ZonedDateTime getUpdatedAt();
+
+    long getSnapshotSeq();
+}
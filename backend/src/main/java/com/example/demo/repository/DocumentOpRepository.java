@@ -0,0 +1,25 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.DocumentOp;
+import com.example.demo.model.DocumentOpId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface DocumentOpRepository extends JpaRepository<DocumentOp, DocumentOpId> {
+    
+    List<DocumentOp> findByDocumentIdAndSeqGreaterThanOrderBySeq(UUID documentId, long seq);
+    
+    @Query("SELECT MAX(o.seq) FROM DocumentOp o WHERE o.documentId = :documentId")
+    Long findMaxSeq(@Param("documentId") UUID documentId);
+    
+    @Modifying
+    @Query("DELETE FROM DocumentOp o WHERE o.documentId = :documentId AND o.seq <= :seq")
+    int deleteUpTo(@Param("documentId") UUID documentId, @Param("seq") long seq);
+} 
\ No newline at end of file
@@ -2,10 +2,18 @@ package com.example.demo.repository;
 
 import com.example.demo.model.Document;
 import com.example.demo.model.Room;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.LockModeType;
+import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
@@ -16,4 +24,45 @@ public interface DocumentRepository extends JpaRepository<Document, UUID> {
     List<Document> findByRoomId(UUID roomId);
     
     long countByRoomId(UUID roomId);
+    
+    // Serializes writers of the document's op log across nodes (SELECT ... FOR UPDATE)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT d FROM Document d WHERE d.id = :documentId")
+    Optional<Document> findByIdForUpdate(@Param("documentId") UUID documentId);
+    
+    @Query("SELECT d.id AS id, d.name AS name, d.type AS type, d.contentType AS contentType, " +
+           "d.contentHash AS contentHash, d.contentSize AS contentSize, d.createdAt AS createdAt, " +
+           "d.updatedAt AS updatedAt FROM Document d WHERE d.room.id = :roomId " +
+           "ORDER BY d.createdAt, d.id")
+    List<DocumentSummaryView> findSummariesByRoomId(@Param("roomId") UUID roomId, Pageable pageable);
+    
+    @Query("SELECT d.id AS id, d.name AS name, d.type AS type, d.contentType AS contentType, " +
+           "d.contentHash AS contentHash, d.contentSize AS contentSize, d.createdAt AS createdAt, " +
+           "d.updatedAt AS updatedAt FROM Document d WHERE d.room.id = :roomId " +
+           "AND (d.createdAt > :createdAt OR (d.createdAt = :createdAt AND d.id > :id)) " +
+           "ORDER BY d.createdAt, d.id")
+    List<DocumentSummaryView> findSummariesByRoomIdAfter(@Param("roomId") UUID roomId,
+                                                         @Param("createdAt") ZonedDateTime createdAt,
+                                                         @Param("id") UUID id,
+                                                         Pageable pageable);
+    
+    @Query("SELECT d.room.id AS id, COUNT(d) AS count FROM Document d " +
+           "WHERE d.room.id IN :roomIds GROUP BY d.room.id")
+    List<IdCount> countByRoomIds(@Param("roomIds") Collection<UUID> roomIds);
+    
+    @Query("SELECT d.id AS id, d.room.id AS roomId, d.type AS type, d.contentType AS contentType, " +
+           "d.contentHash AS contentHash, d.contentSize AS contentSize, " +
+           "CASE WHEN d.contentBinary IS NOT NULL THEN true ELSE false END AS storedAsBinary, " +
+           "d.updatedAt AS updatedAt, d.snapshotSeq AS snapshotSeq FROM Document d WHERE d.id = :documentId")
+    Optional<DocumentMetadata> findMetadataById(@Param("documentId") UUID documentId);
+    
+    @Query("SELECT d.contentBinary FROM Document d WHERE d.id = :documentId")
+    byte[] findContentBinaryById(@Param("documentId") UUID documentId);
+    
+    // Offsets are 1-based, as in SQL substring()
+    @Query(value = "SELECT substring(content_binary FROM :offset FOR :length) FROM documents WHERE id = :documentId",
+           nativeQuery = true)
+    byte[] findBinaryRange(@Param("documentId") UUID documentId,
+                           @Param("offset") long offset,
+                           @Param("length") long length);
 } 
\ No newline at end of file
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -19,6 +20,10 @@ public interface DocumentRevisionRepository extends JpaRepository<DocumentRevisi
     
     long countByDocumentId(UUID documentId);
     
+    @Query("SELECT dr.document.id AS id, COUNT(dr) AS count FROM DocumentRevision dr " +
+           "WHERE dr.document.id IN :documentIds GROUP BY dr.document.id")
+    List<IdCount> countByDocumentIds(@Param("documentIds") Collection<UUID> documentIds);
+    
     @Query("SELECT MAX(dr.revisionNumber) FROM DocumentRevision dr WHERE dr.document.id = :documentId")
     Optional<Integer> findMaxRevisionNumberByDocumentId(@Param("documentId") UUID documentId);
     
@@ -0,0 +1,28 @@
+package com.example.demo.repository;
+
+import com.example.demo.model.DocumentType;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+/**
+ * Projection of the listing columns of a document; never touches the content columns.
+ */
+public interface DocumentSummaryView {
+
+    UUID getId();
+
+    String getName();
+
+    DocumentType getType();
+
+    String getContentType();
+
+    String getContentHash();
+
+    long getContentSize();
+
+    ZonedDateTime getCreatedAt();
+
+    ZonedDateTime getUpdatedAt();
+}
@@ -0,0 +1,24 @@
+package com.example.demo.repository;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Projection for grouped count queries (one row per owning entity id).
+ */
+public interface IdCount {
+
+    UUID getId();
+
+    long getCount();
+
+    static Map<UUID, Long> toMap(List<IdCount> counts) {
+        Map<UUID, Long> map = new HashMap<>();
+        for (IdCount count : counts) {
+            map.put(count.getId(), count.getCount());
+        }
+        return map;
+    }
+}
@@ -2,8 +2,10 @@ package com.example.demo.repository;
 
 import com.example.demo.model.RoomPermission;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -15,6 +17,7 @@ public interface RoomPermissionRepository extends JpaRepository<RoomPermission,
     
     List<RoomPermission> findByUserId(UUID userId);
     
+    @QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.CACHEABLE, value = "true"))
     Optional<RoomPermission> findByRoomIdAndUserId(UUID roomId, UUID userId);
     
     void deleteByRoomId(UUID roomId);
@@ -1,11 +1,15 @@
 package com.example.demo.repository;
 
 import com.example.demo.model.Room;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import javax.persistence.QueryHint;
+import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -13,12 +17,48 @@ import java.util.UUID;
 @Repository
 public interface RoomRepository extends JpaRepository<Room, UUID> {
     
+    @QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.CACHEABLE, value = "true"))
     Optional<Room> findByRoomKey(String roomKey);
     
     boolean existsByRoomKey(String roomKey);
     
+    @Query("SELECT r.roomKey FROM Room r")
+    List<String> findAllRoomKeys();
+    
+    @Query("SELECT r.roomKey FROM Room r WHERE r.createdBy.id = :userId")
+    List<String> findRoomKeysByCreatedById(@Param("userId") UUID userId);
+    
     List<Room> findByCreatedById(UUID userId);
     
+    @Query("SELECT r FROM Room r LEFT JOIN FETCH r.createdBy ORDER BY r.createdAt, r.id")
+    List<Room> findPageWithCreator(Pageable pageable);
+    
+    @Query("SELECT r FROM Room r LEFT JOIN FETCH r.createdBy " +
+           "WHERE r.createdAt > :createdAt OR (r.createdAt = :createdAt AND r.id > :id) " +
+           "ORDER BY r.createdAt, r.id")
+    List<Room> findPageWithCreatorAfter(@Param("createdAt") ZonedDateTime createdAt,
+                                        @Param("id") UUID id,
+                                        Pageable pageable);
+    
+    // Aliases are quoted so Postgres keeps their case for the projection. Ids are cast to text:
+    // drivers disagree on how a native uuid column comes back (H2 gives byte[]), while a string
+    // converts to the projection's UUID on every database.
+    @Query(value = "SELECT CAST(r.id AS VARCHAR) AS \"id\", r.room_key AS \"roomKey\", r.name AS \"name\", " +
+                   "r.is_password_protected AS \"passwordProtected\", " +
+                   "CAST(r.created_by AS VARCHAR) AS \"createdById\", " +
+                   "u.username AS \"createdByUsername\", r.created_at AS \"createdAt\", " +
+                   "(SELECT COUNT(*) FROM documents d WHERE d.room_id = r.id) AS \"documentCount\", " +
+                   "GREATEST(r.updated_at, COALESCE((SELECT MAX(d.updated_at) FROM documents d " +
+                   "WHERE d.room_id = r.id), r.updated_at)) AS \"lastActivityAt\", " +
+                   "COALESCE(p.permission_level, 'admin') AS \"permissionLevel\" " +
+                   "FROM rooms r " +
+                   "LEFT JOIN users u ON u.id = r.created_by " +
+                   "LEFT JOIN room_permissions p ON p.room_id = r.id AND p.user_id = :userId " +
+                   "WHERE r.created_by = :userId OR p.user_id IS NOT NULL " +
+                   "ORDER BY \"lastActivityAt\" DESC, r.id",
+           nativeQuery = true)
+    List<UserRoomView> findUserRooms(@Param("userId") UUID userId, Pageable pageable);
+    
     @Query("SELECT DISTINCT r FROM Room r JOIN r.permissions p WHERE p.user.id = :userId")
     List<Room> findRoomsByUserPermissions(@Param("userId") UUID userId);
 } 
\ No newline at end of file
@@ -0,0 +1,31 @@
+package com.example.demo.repository;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Projection of one row of a user's room dashboard: a room they created or hold a
+ * permission for, with its document count and latest activity.
+ */
+public interface UserRoomView {
+
+    UUID getId();
+
+    String getRoomKey();
+
+    String getName();
+
+    Boolean getPasswordProtected();
+
+    UUID getCreatedById();
+
+    String getCreatedByUsername();
+
+    Instant getCreatedAt();
+
+    long getDocumentCount();
+
+    Instant getLastActivityAt();
+
+    String getPermissionLevel();
+}
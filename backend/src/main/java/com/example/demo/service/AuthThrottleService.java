@@ -0,0 +1,93 @@
+package com.example.demo.service;
+
+import com.example.demo.util.TokenBucket;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Per-client-IP and per-account token buckets in front of the password-hashing auth
+ * endpoints. Buckets live in bounded caches, so a spray of addresses or account names
+ * cannot grow memory without limit; an evicted bucket simply starts full again.
+ */
+@Service
+public class AuthThrottleService {
+
+    private final Cache<String, TokenBucket> ipBuckets;
+    private final Cache<String, TokenBucket> accountBuckets;
+
+    private final int ipCapacity;
+    private final double ipTokensPerSecond;
+    private final int accountCapacity;
+    private final double accountTokensPerSecond;
+
+    private final Counter ipRejections;
+    private final Counter accountRejections;
+
+    @Autowired
+    public AuthThrottleService(
+            MeterRegistry meterRegistry,
+            @Value("${auth.throttle.ip.capacity:20}") int ipCapacity,
+            @Value("${auth.throttle.ip.refill-per-minute:20}") int ipRefillPerMinute,
+            @Value("${auth.throttle.account.capacity:5}") int accountCapacity,
+            @Value("${auth.throttle.account.refill-per-minute:5}") int accountRefillPerMinute,
+            @Value("${auth.throttle.max-tracked-keys:100000}") long maxTrackedKeys) {
+        this.ipCapacity = ipCapacity;
+        this.ipTokensPerSecond = ipRefillPerMinute / 60d;
+        this.accountCapacity = accountCapacity;
+        this.accountTokensPerSecond = accountRefillPerMinute / 60d;
+
+        // Once idle long enough to have refilled completely a bucket carries no state worth keeping
+        this.ipBuckets = Caffeine.newBuilder()
+                .maximumSize(maxTrackedKeys)
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .build();
+        this.accountBuckets = Caffeine.newBuilder()
+                .maximumSize(maxTrackedKeys)
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .build();
+
+        this.ipRejections = Counter.builder("auth.throttled")
+                .description("Auth requests rejected by the token-bucket throttle")
+                .tag("scope", "ip")
+                .register(meterRegistry);
+        this.accountRejections = Counter.builder("auth.throttled")
+                .description("Auth requests rejected by the token-bucket throttle")
+                .tag("scope", "account")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Take a token for the client address.
+     * @return 0 if allowed, otherwise the number of seconds to wait before retrying
+     */
+    public long acquireForIp(String ipAddress) {
+        TokenBucket bucket = ipBuckets.get(ipAddress, k -> new TokenBucket(ipCapacity, ipTokensPerSecond));
+        return acquire(bucket, ipRejections);
+    }
+
+    /**
+     * Take a token for the account (email), whichever address the attempt comes from.
+     * @return 0 if allowed, otherwise the number of seconds to wait before retrying
+     */
+    public long acquireForAccount(String email) {
+        String key = email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+        TokenBucket bucket = accountBuckets.get(key, k -> new TokenBucket(accountCapacity, accountTokensPerSecond));
+        return acquire(bucket, accountRejections);
+    }
+
+    private long acquire(TokenBucket bucket, Counter rejections) {
+        if (bucket.tryConsume()) {
+            return 0;
+        }
+        rejections.increment();
+        return Math.max(1, bucket.secondsUntilNextToken());
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Document;
+import com.example.demo.model.DocumentChunk;
+import com.example.demo.model.DocumentRevision;
+import com.example.demo.repository.DocumentChunkRepository;
+import com.example.demo.repository.DocumentRepository;
+import com.example.demo.util.ContentDefinedChunker;
+import com.example.demo.util.ContentHash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.transaction.Transactional;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Where a text document's content lives. Small documents keep it in documents.content;
+ * large ones are split into content-defined chunks stored once per hash in
+ * document_chunks, and the document only holds the ordered manifest of chunk hashes.
+ * Rewriting a large document then inserts just the chunks that changed plus a new
+ * manifest, and revisions point at the same chunks instead of copying the text.
+ * <p>
+ * document_chunk_refs records every chunk a document or its revisions has used. Rows
+ * are only added, and go when the document is deleted, since revisions keep old chunks
+ * in use for as long as the document exists.
+ */
+@Service
+public class DocumentChunkStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentChunkStore.class);
+    private static final String MANIFEST_SEPARATOR = ",";
+
+    private final DocumentChunkRepository chunkRepository;
+    private final DocumentRepository documentRepository;
+
+    @Value("${document-chunks.enabled:true}")
+    private boolean enabled;
+
+    @Value("${document-chunks.min-document-chars:262144}")
+    private int minDocumentChars;
+
+    @Value("${document-chunks.min-chunk-chars:2048}")
+    private int minChunkChars;
+
+    @Value("${document-chunks.avg-chunk-chars:8192}")
+    private int avgChunkChars;
+
+    @Value("${document-chunks.max-chunk-chars:65536}")
+    private int maxChunkChars;
+
+    @Value("${document-chunks.sweep-grace-minutes:60}")
+    private long sweepGraceMinutes;
+
+    private ContentDefinedChunker chunker;
+
+    @Autowired
+    public DocumentChunkStore(DocumentChunkRepository chunkRepository, DocumentRepository documentRepository) {
+        this.chunkRepository = chunkRepository;
+        this.documentRepository = documentRepository;
+    }
+
+    @PostConstruct
+    public void init() {
+        chunker = new ContentDefinedChunker(minChunkChars, avgChunkChars, maxChunkChars);
+    }
+
+    /**
+     * Replace a document's content with text, chunked if it is large enough. Hash and size
+     * always describe the whole text. Must run inside the caller's transaction. A new
+     * document that needs chunking is persisted first, so its chunk references can point
+     * at it.
+     */
+    public void writeText(Document document, String content) {
+        if (enabled && content != null && content.length() >= minDocumentChars) {
+            if (document.getId() == null) {
+                documentRepository.save(document);
+            }
+            document.setChunkManifest(storeChunks(document, content));
+            document.setContent(null);
+        } else {
+            document.setContent(content);
+            document.setChunkManifest(null);
+        }
+        document.setContentBinary(null); // Clear binary content when setting text
+        document.setContentType(null);
+        document.setContentHash(ContentHash.of(content));
+        document.setContentSize(content != null ? content.getBytes(StandardCharsets.UTF_8).length : 0);
+    }
+
+    /**
+     * A text document's stored content, reassembled from its chunks if it has a manifest.
+     */
+    public String readText(Document document) {
+        if (document.getChunkManifest() == null) {
+            return document.getContent();
+        }
+        return loadChunks(document.getChunkManifest());
+    }
+
+    /**
+     * Keep the document's current stored text in a revision: chunked documents share
+     * their manifest, small ones copy the text as before.
+     */
+    public void copyIntoRevision(Document document, DocumentRevision revision) {
+        if (document.getChunkManifest() != null) {
+            revision.setChunkManifest(document.getChunkManifest());
+        } else {
+            revision.setContentDiff(document.getContent());
+        }
+    }
+
+    /**
+     * Delete chunks no document or revision refers to any more. Young chunks are left
+     * alone so a write that is about to reference one does not lose it; writes that reuse
+     * a chunk make it young again.
+     */
+    @Scheduled(fixedDelayString = "${document-chunks.sweep-interval-ms:3600000}")
+    @Transactional
+    public void sweepUnreferencedChunks() {
+        int deleted = chunkRepository.deleteUnreferencedBefore(ZonedDateTime.now().minusMinutes(sweepGraceMinutes));
+        if (deleted > 0) {
+            logger.info("Deleted {} unreferenced document chunks", deleted);
+        }
+    }
+
+    private String storeChunks(Document document, String content) {
+        List<String> hashes = new ArrayList<>();
+        Map<String, String> chunksByHash = new LinkedHashMap<>();
+        for (String chunk : chunker.split(content)) {
+            String hash = ContentHash.of(chunk);
+            hashes.add(hash);
+            chunksByHash.putIfAbsent(hash, chunk);
+        }
+
+        // Touched before looking, so a chunk found here cannot be swept before this transaction commits
+        chunkRepository.touch(chunksByHash.keySet());
+        Set<String> existing = new HashSet<>(chunkRepository.findExistingHashes(chunksByHash.keySet()));
+        int inserted = 0;
+        for (Map.Entry<String, String> entry : chunksByHash.entrySet()) {
+            if (!existing.contains(entry.getKey())) {
+                chunkRepository.insertIfAbsent(entry.getKey(), entry.getValue(), entry.getValue().length());
+                inserted++;
+            }
+        }
+        chunkRepository.addReferences(document.getId(), chunksByHash.keySet());
+        logger.debug("Stored {} chars as {} chunks, {} new", content.length(), hashes.size(), inserted);
+        return String.join(MANIFEST_SEPARATOR, hashes);
+    }
+
+    private String loadChunks(String manifest) {
+        String[] hashes = manifest.isEmpty() ? new String[0] : manifest.split(MANIFEST_SEPARATOR);
+        Map<String, String> chunksByHash = new HashMap<>();
+        for (DocumentChunk chunk : chunkRepository.findAllById(new HashSet<>(List.of(hashes)))) {
+            chunksByHash.put(chunk.getHash(), chunk.getContent());
+        }
+
+        StringBuilder text = new StringBuilder();
+        for (String hash : hashes) {
+            String chunk = chunksByHash.get(hash);
+            if (chunk == null) {
+                throw new IllegalStateException("Document chunk " + hash + " is missing");
+            }
+            text.append(chunk);
+        }
+        return text.toString();
+    }
+}
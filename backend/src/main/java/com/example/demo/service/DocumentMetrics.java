@@ -0,0 +1,61 @@
+package com.example.demo.service;
+
+import com.example.demo.model.DocumentType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Meters for document writes, tagged by {@link DocumentType}: {@code documents.update}
+ * times {@link DocumentService#updateDocument} and {@code documents.revisions.created}
+ * counts revision rows, whether written directly or by an op-log snapshot. Document
+ * types are a fixed set, so every meter is registered up front and writes never look
+ * one up in the registry.
+ */
+@Component
+public class DocumentMetrics {
+
+    private static final String UNKNOWN_TYPE = "unknown";
+
+    private final Map<DocumentType, Timer> updateTimers = new EnumMap<>(DocumentType.class);
+    private final Map<DocumentType, Counter> revisionCounters = new EnumMap<>(DocumentType.class);
+    private final Timer unknownUpdateTimer;
+    private final Counter unknownRevisionCounter;
+
+    @Autowired
+    public DocumentMetrics(MeterRegistry meterRegistry) {
+        for (DocumentType type : DocumentType.values()) {
+            updateTimers.put(type, updateTimer(meterRegistry, type.name()));
+            revisionCounters.put(type, revisionCounter(meterRegistry, type.name()));
+        }
+        this.unknownUpdateTimer = updateTimer(meterRegistry, UNKNOWN_TYPE);
+        this.unknownRevisionCounter = revisionCounter(meterRegistry, UNKNOWN_TYPE);
+    }
+
+    public Timer updateTimer(DocumentType type) {
+        return type != null ? updateTimers.get(type) : unknownUpdateTimer;
+    }
+
+    public void revisionCreated(DocumentType type) {
+        (type != null ? revisionCounters.get(type) : unknownRevisionCounter).increment();
+    }
+
+    private static Timer updateTimer(MeterRegistry meterRegistry, String type) {
+        return Timer.builder("documents.update")
+                .description("Time to apply a document update, excluding the commit")
+                .tag("type", type)
+                .register(meterRegistry);
+    }
+
+    private static Counter revisionCounter(MeterRegistry meterRegistry, String type) {
+        return Counter.builder("documents.revisions.created")
+                .description("Document revisions written")
+                .tag("type", type)
+                .register(meterRegistry);
+    }
+}
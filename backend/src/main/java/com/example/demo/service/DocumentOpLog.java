@@ -0,0 +1,689 @@
+package com.example.demo.service;
+
+import com.example.demo.model.Document;
+import com.example.demo.model.DocumentOp;
+import com.example.demo.model.DocumentRevision;
+import com.example.demo.repository.DocumentOpRepository;
+import com.example.demo.repository.DocumentRepository;
+import com.example.demo.repository.DocumentRevisionRepository;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.util.ContentHash;
+import com.example.demo.util.Rope;
+import com.example.demo.util.TextEdit;
+import com.example.demo.util.WriteAheadLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Event-sourced storage for text documents. Each edit becomes a small splice op with a
+ * per-document sequence number instead of a rewrite of documents.content:
+ * <ul>
+ *   <li>the current text of recently edited documents is kept in memory;</li>
+ *   <li>new ops are appended to document_ops in batches every flush interval;</li>
+ *   <li>every snapshot interval, documents with new ops get their text folded into
+ *       documents.content (keeping the previous text as a revision), snapshot_seq
+ *       advanced and the folded ops deleted.</li>
+ * </ul>
+ * A document that is not in memory reads as its snapshot plus the ops after it. Ops at
+ * or below snapshot_seq are ignored wherever they are found, so a flush and a snapshot
+ * racing each other can leave at most some redundant rows for the next snapshot to prune.
+ * <p>
+ * Live text is held as a {@link Rope}, so applying an op costs O(log n) rather than a copy
+ * of the document, and readers get an immutable version they can use without the lock.
+ * <p>
+ * Live state is per process, like the room WebSocket sessions it serves. So that a crash
+ * does not lose the edits still waiting for a flush, every op is first appended to a
+ * local {@link WriteAheadLog}; an edit is acknowledged once that append is as durable as
+ * the configured fsync policy says. The log is rolled and truncated at checkpoints, i.e.
+ * after a flush has written everything in the older segments, and anything left over
+ * is replayed into document_ops on startup.
+ * <p>
+ * Several nodes may hold the same document live, each numbering its own ops. Flushes and
+ * snapshots therefore lock the document row and check that the log still ends where this
+ * node last left it. If another node has written since, this node's pending edits are
+ * rebased: its live text, which is what its clients last sent, is written as one op on
+ * top of the other node's, so the last writer wins as with whole-content saves. A node
+ * with no pending edits drops its stale copy instead.
+ */
+@Service
+public class DocumentOpLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentOpLog.class);
+
+    private final DocumentRepository documentRepository;
+    private final DocumentOpRepository opRepository;
+    private final DocumentRevisionRepository revisionRepository;
+    private final UserRepository userRepository;
+    private final DocumentChunkStore chunkStore;
+    private final DocumentMetrics documentMetrics;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Map<UUID, LiveDocument> live = new ConcurrentHashMap<>();
+
+    @Value("${document-ops.idle-eviction-ms:300000}")
+    private long idleEvictionMs;
+
+    @Value("${document-ops.wal.enabled:true}")
+    private boolean walEnabled;
+
+    @Value("${document-ops.wal.dir:data/wal}")
+    private String walDir;
+
+    @Value("${document-ops.wal.fsync:always}")
+    private String walFsync;
+
+    @Value("${document-ops.wal.fsync-interval-ms:50}")
+    private long walFsyncIntervalMs;
+
+    @Value("${document-ops.wal.checkpoint-interval-ms:5000}")
+    private long walCheckpointIntervalMs;
+
+    @Value("${document-ops.wal.max-record-bytes:16777216}")
+    private int walMaxRecordBytes;
+
+    private WriteAheadLog wal;
+    private long nextCheckpointAt;
+
+    @Autowired
+    public DocumentOpLog(
+            DocumentRepository documentRepository,
+            DocumentOpRepository opRepository,
+            DocumentRevisionRepository revisionRepository,
+            UserRepository userRepository,
+            DocumentChunkStore chunkStore,
+            DocumentMetrics documentMetrics,
+            PlatformTransactionManager transactionManager) {
+        this.documentRepository = documentRepository;
+        this.opRepository = opRepository;
+        this.revisionRepository = revisionRepository;
+        this.userRepository = userRepository;
+        this.chunkStore = chunkStore;
+        this.documentMetrics = documentMetrics;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!walEnabled) {
+            return;
+        }
+        WriteAheadLog.FsyncPolicy policy = WriteAheadLog.FsyncPolicy.valueOf(walFsync.toUpperCase(Locale.ROOT));
+        wal = new WriteAheadLog(Paths.get(walDir), policy, walFsyncIntervalMs, walMaxRecordBytes);
+        replay();
+    }
+
+    /**
+     * Record an edit that turns the document's current text into {@code newContent}.
+     * @return the document's sequence number after the edit, or empty if there is no such text document
+     */
+    public Optional<Long> apply(UUID documentId, String newContent, UUID userId) {
+        while (true) {
+            LiveDocument doc = live.computeIfAbsent(documentId, this::load);
+            if (doc == null) {
+                return Optional.empty();
+            }
+            synchronized (doc) {
+                if (doc.evicted) {
+                    // Lost a race with eviction; load it again
+                    continue;
+                }
+                doc.lastTouched = System.currentTimeMillis();
+
+                TextEdit edit = TextEdit.between(doc.text, newContent);
+                if (edit == null) {
+                    return Optional.of(doc.seq);
+                }
+                DocumentOp op = DocumentOp.builder()
+                        .documentId(documentId)
+                        .seq(doc.seq + 1)
+                        .position(edit.getPosition())
+                        .deleteCount(edit.getDeleteCount())
+                        .insertText(edit.getInsertText())
+                        .userId(userId)
+                        .build();
+                // Log and sync first, so a failed append or fsync leaves the document as it was.
+                // Edits to other documents still share the fsync; only this document's edits wait for it.
+                syncWal(appendToWal(op));
+                doc.text = edit.applyTo(doc.text);
+                doc.seq = op.getSeq();
+                doc.lastUserId = userId;
+                doc.unflushed.add(op);
+                return Optional.of(doc.seq);
+            }
+        }
+    }
+
+    /**
+     * The document's current text and sequence number, from memory when it is being
+     * edited, otherwise folded from its snapshot and trailing ops.
+     */
+    public DocumentState current(Document document) {
+        LiveDocument doc = live.get(document.getId());
+        if (doc != null) {
+            synchronized (doc) {
+                if (!doc.evicted) {
+                    return new DocumentState(doc.text, doc.seq);
+                }
+            }
+        }
+        return fold(document);
+    }
+
+    /**
+     * The document's current state if it is being edited on this node.
+     */
+    public Optional<DocumentState> live(UUID documentId) {
+        LiveDocument doc = live.get(documentId);
+        if (doc != null) {
+            synchronized (doc) {
+                if (!doc.evicted) {
+                    return Optional.of(new DocumentState(doc.text, doc.seq));
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Sequence number of the latest edit, for cache validators.
+     */
+    public long headSeq(UUID documentId, long snapshotSeq) {
+        LiveDocument doc = live.get(documentId);
+        if (doc != null) {
+            synchronized (doc) {
+                if (!doc.evicted) {
+                    return doc.seq;
+                }
+            }
+        }
+        Long maxSeq = opRepository.findMaxSeq(documentId);
+        return maxSeq != null ? Math.max(maxSeq, snapshotSeq) : snapshotSeq;
+    }
+
+    /**
+     * Drop the document's op history, e.g. because its content is being replaced wholesale
+     * or it is being deleted. Must run inside the caller's transaction. Takes the row lock before
+     * the document lock, the order every writer here uses.
+     * @return the sequence number the replacement content should be stored with
+     */
+    public long discard(UUID documentId, long snapshotSeq) {
+        documentRepository.findByIdForUpdate(documentId);
+        long seq = snapshotSeq;
+        LiveDocument doc = live.remove(documentId);
+        if (doc != null) {
+            synchronized (doc) {
+                doc.evicted = true;
+                seq = Math.max(seq, doc.seq);
+            }
+        }
+        Long maxSeq = opRepository.findMaxSeq(documentId);
+        if (maxSeq != null) {
+            seq = Math.max(seq, maxSeq);
+        }
+        opRepository.deleteUpTo(documentId, seq);
+        return seq;
+    }
+
+    @Scheduled(fixedDelayString = "${document-ops.flush-interval-ms:200}")
+    public synchronized void flush() {
+        // Everything appended before the roll is drained below; if all of it is saved, the old segments can go
+        long checkpoint = -1;
+        if (wal != null && System.currentTimeMillis() >= nextCheckpointAt) {
+            try {
+                checkpoint = wal.roll();
+                nextCheckpointAt = System.currentTimeMillis() + walCheckpointIntervalMs;
+            } catch (IOException e) {
+                logger.error("Could not roll the document op WAL: {}", e.getMessage());
+            }
+        }
+        boolean allFlushed = true;
+        
+        for (LiveDocument doc : live.values()) {
+            List<DocumentOp> batch;
+            long expectedHead;
+            synchronized (doc) {
+                if (doc.unflushed.isEmpty()) {
+                    continue;
+                }
+                expectedHead = doc.flushedSeq;
+                batch = new ArrayList<>(doc.unflushed.size());
+                for (DocumentOp op : doc.unflushed) {
+                    if (op.getSeq() > doc.snapshotSeq) {
+                        batch.add(op);
+                    }
+                }
+                doc.unflushed.clear();
+            }
+            if (batch.isEmpty()) {
+                continue;
+            }
+
+            try {
+                boolean appended = Boolean.TRUE.equals(
+                        transactionTemplate.execute(status -> appendOps(doc.id, batch, expectedHead)));
+                if (appended) {
+                    synchronized (doc) {
+                        doc.flushedSeq = Math.max(doc.flushedSeq, batch.get(batch.size() - 1).getSeq());
+                    }
+                } else {
+                    logger.info("Document {} was edited on another node; rebasing {} ops", doc.id, batch.size());
+                    rebase(doc);
+                }
+            } catch (RuntimeException e) {
+                logger.error("Could not flush {} ops of document {}: {}", batch.size(), doc.id, e.getMessage());
+                allFlushed = false;
+                synchronized (doc) {
+                    // Put them back in front of anything appended meanwhile, unless the document is gone
+                    if (!doc.evicted) {
+                        doc.unflushed.addAll(0, batch);
+                    }
+                }
+            }
+        }
+        
+        if (checkpoint >= 0 && allFlushed) {
+            try {
+                wal.deleteSegmentsBefore(checkpoint);
+            } catch (IOException e) {
+                logger.warn("Could not truncate the document op WAL: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${document-ops.snapshot-interval-ms:30000}")
+    public synchronized void snapshot() {
+        long now = System.currentTimeMillis();
+        for (LiveDocument doc : live.values()) {
+            Rope text;
+            long seq;
+            long expectedHead;
+            UUID userId;
+            synchronized (doc) {
+                if (doc.evicted) {
+                    continue;
+                }
+                if (doc.seq == doc.snapshotSeq) {
+                    if (doc.unflushed.isEmpty() && now - doc.lastTouched > idleEvictionMs) {
+                        doc.evicted = true;
+                        live.remove(doc.id, doc);
+                    }
+                    continue;
+                }
+                text = doc.text;
+                seq = doc.seq;
+                expectedHead = doc.flushedSeq;
+                userId = doc.lastUserId;
+            }
+
+            try {
+                SnapshotResult result = transactionTemplate.execute(
+                        status -> storeSnapshot(doc.id, text, seq, expectedHead, userId));
+                synchronized (doc) {
+                    if (result == SnapshotResult.DELETED) {
+                        // The document was deleted under us
+                        doc.evicted = true;
+                        live.remove(doc.id, doc);
+                        continue;
+                    }
+                    if (result == SnapshotResult.CONFLICT) {
+                        // Edited on another node: pending edits are rebased by the next flush, a stale copy is dropped
+                        if (doc.unflushed.isEmpty()) {
+                            doc.evicted = true;
+                            live.remove(doc.id, doc);
+                        }
+                        continue;
+                    }
+                    doc.snapshotSeq = seq;
+                    doc.flushedSeq = Math.max(doc.flushedSeq, seq);
+                    doc.unflushed.removeIf(op -> op.getSeq() <= seq);
+                }
+            } catch (RuntimeException e) {
+                logger.error("Could not snapshot document {} at seq {}: {}", doc.id, seq, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Save buffered ops and snapshot changed documents now instead of on the next tick,
+     * e.g. when the node starts draining. Unlike {@link #flushAll} the log stays open.
+     */
+    public void flushNow() {
+        flush();
+        snapshot();
+    }
+
+    /**
+     * Persist everything still in memory; called on shutdown.
+     */
+    @PreDestroy
+    public synchronized void flushAll() {
+        nextCheckpointAt = 0;
+        flush();
+        snapshot();
+        if (wal != null) {
+            try {
+                wal.close();
+            } catch (IOException e) {
+                logger.warn("Could not close the document op WAL: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Write ops that earlier runs logged but never flushed. Ops that did reach the table,
+     * or that a snapshot or discard has since superseded, are skipped.
+     */
+    private void replay() throws IOException {
+        List<byte[]> records = wal.recover();
+        if (records.isEmpty()) {
+            wal.deleteSegmentsBefore(wal.currentSegment());
+            return;
+        }
+        
+        // A later record replaces an earlier one with the same seq: the earlier edit's sync
+        // failed, so it was never applied and the next edit was logged under its seq
+        Map<UUID, TreeMap<Long, DocumentOp>> byDocument = new LinkedHashMap<>();
+        for (byte[] record : records) {
+            DocumentOp op = decode(record);
+            byDocument.computeIfAbsent(op.getDocumentId(), id -> new TreeMap<>()).put(op.getSeq(), op);
+        }
+        
+        int replayed = 0;
+        for (Map.Entry<UUID, TreeMap<Long, DocumentOp>> entry : byDocument.entrySet()) {
+            UUID documentId = entry.getKey();
+            Collection<DocumentOp> ops = entry.getValue().values();
+            Integer count = transactionTemplate.execute(status -> {
+                Optional<Document> documentOpt = documentRepository.findByIdForUpdate(documentId);
+                if (documentOpt.isEmpty() || documentOpt.get().getContentBinary() != null) {
+                    return 0;
+                }
+                long head = head(documentOpt.get());
+                long floor = head;
+                List<DocumentOp> missing = new ArrayList<>();
+                for (DocumentOp op : ops) {
+                    if (op.getSeq() > floor) {
+                        missing.add(op);
+                        floor = op.getSeq();
+                    }
+                }
+                if (!missing.isEmpty() && missing.get(0).getSeq() != head + 1) {
+                    // Another node has moved the log on; these ops were made against text it no longer has
+                    logger.warn("Skipping {} logged ops of document {}: the stored log no longer ends where they start",
+                            missing.size(), documentId);
+                    return 0;
+                }
+                opRepository.saveAll(missing);
+                return missing.size();
+            });
+            replayed += count != null ? count : 0;
+        }
+        
+        // Only truncate once everything is in the table; a failure above leaves the segments for the next start
+        wal.deleteSegmentsBefore(wal.currentSegment());
+        logger.info("Replayed {} of {} logged document ops across {} documents",
+                replayed, records.size(), byDocument.size());
+    }
+
+    private long appendToWal(DocumentOp op) {
+        if (wal == null) {
+            return 0;
+        }
+        try {
+            return wal.append(encode(op));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not log edit to document " + op.getDocumentId(), e);
+        }
+    }
+
+    private void syncWal(long position) {
+        if (wal == null) {
+            return;
+        }
+        try {
+            wal.sync(position);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not sync the document op WAL", e);
+        }
+    }
+
+    private static byte[] encode(DocumentOp op) {
+        byte[] text = op.getInsertText().getBytes(StandardCharsets.UTF_8);
+        int userBytes = op.getUserId() != null ? 16 : 0;
+        ByteBuffer buffer = ByteBuffer.allocate(16 + 8 + 4 + 4 + 1 + userBytes + 4 + text.length);
+        buffer.putLong(op.getDocumentId().getMostSignificantBits());
+        buffer.putLong(op.getDocumentId().getLeastSignificantBits());
+        buffer.putLong(op.getSeq());
+        buffer.putInt(op.getPosition());
+        buffer.putInt(op.getDeleteCount());
+        if (op.getUserId() != null) {
+            buffer.put((byte) 1);
+            buffer.putLong(op.getUserId().getMostSignificantBits());
+            buffer.putLong(op.getUserId().getLeastSignificantBits());
+        } else {
+            buffer.put((byte) 0);
+        }
+        buffer.putInt(text.length);
+        buffer.put(text);
+        return buffer.array();
+    }
+
+    private static DocumentOp decode(byte[] record) {
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        UUID documentId = new UUID(buffer.getLong(), buffer.getLong());
+        long seq = buffer.getLong();
+        int position = buffer.getInt();
+        int deleteCount = buffer.getInt();
+        UUID userId = buffer.get() == 1 ? new UUID(buffer.getLong(), buffer.getLong()) : null;
+        byte[] text = new byte[buffer.getInt()];
+        buffer.get(text);
+        return DocumentOp.builder()
+                .documentId(documentId)
+                .seq(seq)
+                .position(position)
+                .deleteCount(deleteCount)
+                .insertText(new String(text, StandardCharsets.UTF_8))
+                .userId(userId)
+                .build();
+    }
+
+    /**
+     * Append a flushed batch, unless another node has written to the document since
+     * {@code expectedHead}, the last seq this node flushed or loaded.
+     * @return false if the batch has to be rebased
+     */
+    private boolean appendOps(UUID documentId, List<DocumentOp> batch, long expectedHead) {
+        Optional<Document> documentOpt = documentRepository.findByIdForUpdate(documentId);
+        if (documentOpt.isEmpty()) {
+            // Deleted; the next snapshot drops the live copy
+            return true;
+        }
+        if (head(documentOpt.get()) != expectedHead) {
+            return false;
+        }
+        opRepository.saveAll(batch);
+        return true;
+    }
+
+    /**
+     * Write the document's live text as one op on top of what other nodes have written,
+     * and renumber the live copy after it. Takes the row lock before the document lock,
+     * the same order as {@link #discard}, and holds the document lock while the op is
+     * written so no edit is applied in between; this only happens on a conflict. Should the
+     * commit fail, the next flush finds the head moved again and rebases once more.
+     */
+    private void rebase(LiveDocument doc) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Optional<Document> documentOpt = documentRepository.findByIdForUpdate(doc.id);
+            synchronized (doc) {
+                if (doc.evicted) {
+                    return;
+                }
+                if (documentOpt.isEmpty()) {
+                    doc.evicted = true;
+                    live.remove(doc.id, doc);
+                    return;
+                }
+                long seq = storeRebased(documentOpt.get(), doc.text, doc.seq, doc.lastUserId);
+                // Superseded by the rebased op; their WAL records sit at or below it, so replay skips them
+                doc.unflushed.clear();
+                doc.seq = seq;
+                doc.flushedSeq = seq;
+            }
+        });
+    }
+
+    // Caller holds the document's row lock
+    private long storeRebased(Document document, Rope text, long localSeq, UUID userId) {
+        DocumentState stored = fold(document);
+        TextEdit edit = TextEdit.between(stored.getText(), text.toString());
+        // Above both numberings, so neither node's ops can be mistaken for this one
+        DocumentOp op = DocumentOp.builder()
+                .documentId(document.getId())
+                .seq(Math.max(localSeq, stored.getSeq()) + 1)
+                .position(edit != null ? edit.getPosition() : 0)
+                .deleteCount(edit != null ? edit.getDeleteCount() : 0)
+                .insertText(edit != null ? edit.getInsertText() : "")
+                .userId(userId)
+                .build();
+        opRepository.save(op);
+        return op.getSeq();
+    }
+
+    // Last seq written to the database for the document, by any node
+    private long head(Document document) {
+        Long maxSeq = opRepository.findMaxSeq(document.getId());
+        return maxSeq != null ? Math.max(maxSeq, document.getSnapshotSeq()) : document.getSnapshotSeq();
+    }
+
+    private SnapshotResult storeSnapshot(UUID documentId, Rope text, long seq, long expectedHead, UUID userId) {
+        Optional<Document> documentOpt = documentRepository.findByIdForUpdate(documentId);
+        if (documentOpt.isEmpty()) {
+            return SnapshotResult.DELETED;
+        }
+        Document document = documentOpt.get();
+        if (head(document) != expectedHead) {
+            return SnapshotResult.CONFLICT;
+        }
+        if (document.getSnapshotSeq() >= seq) {
+            return SnapshotResult.STORED;
+        }
+
+        String content = text.toString();
+
+        // Keep the text this snapshot replaces as a revision, as full-content updates used to
+        if (document.getContentHash() != null && !document.getContentHash().equals(ContentHash.of(content))) {
+            DocumentRevision revision = new DocumentRevision();
+            revision.setDocument(document);
+            chunkStore.copyIntoRevision(document, revision);
+            revision.setRevisionNumber(revisionRepository.findMaxRevisionNumberByDocumentId(documentId)
+                    .orElse(0) + 1);
+            if (userId != null) {
+                userRepository.findById(userId).ifPresent(revision::setUser);
+            }
+            revisionRepository.save(revision);
+            documentMetrics.revisionCreated(document.getType());
+        }
+
+        chunkStore.writeText(document, content);
+        document.setSnapshotSeq(seq);
+        documentRepository.save(document);
+        opRepository.deleteUpTo(documentId, seq);
+        logger.debug("Snapshotted document {} at seq {}", documentId, seq);
+        return SnapshotResult.STORED;
+    }
+
+    private LiveDocument load(UUID documentId) {
+        return documentRepository.findById(documentId)
+                .filter(document -> document.getContentBinary() == null)
+                .map(document -> {
+                    DocumentState state = fold(document);
+                    return new LiveDocument(documentId, state.getText(), state.getSeq(), document.getSnapshotSeq());
+                })
+                .orElse(null);
+    }
+
+    private DocumentState fold(Document document) {
+        Rope text = Rope.of(chunkStore.readText(document));
+        long seq = document.getSnapshotSeq();
+        for (DocumentOp op : opRepository.findByDocumentIdAndSeqGreaterThanOrderBySeq(document.getId(), seq)) {
+            text = new TextEdit(op.getPosition(), op.getDeleteCount(), op.getInsertText()).applyTo(text);
+            seq = op.getSeq();
+        }
+        return new DocumentState(text, seq);
+    }
+
+    /**
+     * A document's text together with the sequence number it reflects.
+     */
+    public static final class DocumentState {
+
+        private final Rope text;
+        private final long seq;
+
+        DocumentState(Rope text, long seq) {
+            this.text = text;
+            this.seq = seq;
+        }
+
+        public Rope getText() {
+            return text;
+        }
+
+        public String getContent() {
+            return text.toString();
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+    }
+
+    private enum SnapshotResult { STORED, DELETED, CONFLICT }
+
+    // Guarded by its own monitor
+    private static final class LiveDocument {
+
+        private final UUID id;
+        private Rope text;
+        private long seq;
+        private long snapshotSeq;
+        // Last seq this node saw in the database: loaded, flushed or snapshotted
+        private long flushedSeq;
+        private UUID lastUserId;
+        private long lastTouched = System.currentTimeMillis();
+        private boolean evicted;
+        private final List<DocumentOp> unflushed = new ArrayList<>();
+
+        LiveDocument(UUID id, Rope text, long seq, long snapshotSeq) {
+            this.id = id;
+            this.text = text;
+            this.seq = seq;
+            this.snapshotSeq = snapshotSeq;
+            this.flushedSeq = seq;
+        }
+    }
+}
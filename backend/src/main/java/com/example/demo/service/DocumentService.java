@@ -1,21 +1,36 @@
 package com.example.demo.service;
 
+import com.example.demo.dto.CursorPage;
 import com.example.demo.dto.DocumentCreateRequest;
 import com.example.demo.dto.DocumentResponse;
+import com.example.demo.dto.DocumentSummary;
 import com.example.demo.dto.DocumentUpdateRequest;
 import com.example.demo.model.Document;
 import com.example.demo.model.DocumentRevision;
 import com.example.demo.model.Room;
 import com.example.demo.model.User;
+import com.example.demo.repository.DocumentMetadata;
 import com.example.demo.repository.DocumentRepository;
 import com.example.demo.repository.DocumentRevisionRepository;
+import com.example.demo.repository.DocumentSummaryView;
+import com.example.demo.repository.IdCount;
 import com.example.demo.repository.RoomRepository;
 import com.example.demo.repository.UserRepository;
+import com.example.demo.util.ContentHash;
+import com.example.demo.util.KeysetCursor;
+import com.example.demo.util.RealtimeEvents;
+import com.example.demo.util.Rope;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import javax.transaction.Transactional;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -27,24 +42,83 @@ public class DocumentService {
     private final RoomRepository roomRepository;
     private final UserRepository userRepository;
     private final DocumentRevisionRepository revisionRepository;
+    private final ImageDerivativeService imageDerivativeService;
+    private final DocumentOpLog opLog;
+    private final DocumentChunkStore chunkStore;
+    private final DocumentMetrics documentMetrics;
+    
+    @Value("${pagination.default-page-size:50}")
+    private int defaultPageSize;
+    
+    @Value("${pagination.max-page-size:200}")
+    private int maxPageSize;
     
     @Autowired
     public DocumentService(
             DocumentRepository documentRepository,
             RoomRepository roomRepository,
             UserRepository userRepository,
-            DocumentRevisionRepository revisionRepository) {
+            DocumentRevisionRepository revisionRepository,
+            ImageDerivativeService imageDerivativeService,
+            DocumentOpLog opLog,
+            DocumentChunkStore chunkStore,
+            DocumentMetrics documentMetrics) {
         this.documentRepository = documentRepository;
         this.roomRepository = roomRepository;
         this.userRepository = userRepository;
         this.revisionRepository = revisionRepository;
+        this.imageDerivativeService = imageDerivativeService;
+        this.opLog = opLog;
+        this.chunkStore = chunkStore;
+        this.documentMetrics = documentMetrics;
     }
     
-    public List<DocumentResponse> getAllDocumentsInRoom(UUID roomId) {
-        List<Document> documents = documentRepository.findByRoomId(roomId);
-        return documents.stream()
-                .map(this::mapToDto)
+    /**
+     * List a room's documents in creation order without loading their content.
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public CursorPage<DocumentSummary> getDocumentSummaries(UUID roomId, String cursor, Integer limit) {
+        int pageSize = KeysetCursor.pageSize(limit, defaultPageSize, maxPageSize);
+        // Fetch one extra row to learn whether another page follows
+        Pageable pageable = PageRequest.of(0, pageSize + 1);
+        
+        List<DocumentSummaryView> rows;
+        if (cursor == null || cursor.isEmpty()) {
+            rows = documentRepository.findSummariesByRoomId(roomId, pageable);
+        } else {
+            KeysetCursor after = KeysetCursor.decode(cursor);
+            rows = documentRepository.findSummariesByRoomIdAfter(roomId, after.getCreatedAt(), after.getId(), pageable);
+        }
+        
+        boolean hasMore = rows.size() > pageSize;
+        if (hasMore) {
+            rows = rows.subList(0, pageSize);
+        }
+        if (rows.isEmpty()) {
+            return new CursorPage<>(new ArrayList<>(), null);
+        }
+        
+        // One grouped count for the whole page instead of one count per document
+        List<UUID> documentIds = rows.stream().map(DocumentSummaryView::getId).collect(Collectors.toList());
+        Map<UUID, Long> revisionCounts = IdCount.toMap(revisionRepository.countByDocumentIds(documentIds));
+        
+        List<DocumentSummary> items = rows.stream()
+                .map(row -> DocumentSummary.builder()
+                        .id(row.getId())
+                        .name(row.getName())
+                        .type(row.getType())
+                        .contentType(row.getContentType())
+                        .contentHash(row.getContentHash())
+                        .size(row.getContentSize())
+                        .createdAt(row.getCreatedAt())
+                        .updatedAt(row.getUpdatedAt())
+                        .revisionCount(revisionCounts.getOrDefault(row.getId(), 0L).intValue())
+                        .build())
                 .collect(Collectors.toList());
+        
+        DocumentSummaryView last = rows.get(rows.size() - 1);
+        String nextCursor = hasMore ? KeysetCursor.encode(last.getCreatedAt(), last.getId()) : null;
+        return new CursorPage<>(items, nextCursor);
     }
     
     public Optional<DocumentResponse> getDocument(UUID documentId) {
@@ -64,11 +138,9 @@ public class DocumentService {
             
             // Handle content based on content type
             if (request.getContentType() != null && request.getContentType().startsWith("image/")) {
-                document.setContentBinary(request.getBinaryContent());
-                document.setContent(null); // No text content for image documents
+                applyBinaryContent(document, request.getBinaryContent(), request.getContentType());
             } else {
-                document.setContent(request.getContent());
-                document.setContentBinary(null);
+                chunkStore.writeText(document, request.getContent());
             }
             
             // Set creator if available
@@ -78,49 +150,120 @@ public class DocumentService {
             }
             
             Document savedDocument = documentRepository.save(document);
+            scheduleImageDerivatives(savedDocument);
             return Optional.of(mapToDto(savedDocument));
         }
         
         return Optional.empty();
     }
     
+    /**
+     * Update a document of the given room. A document of any other room is treated as
+     * missing, so a caller authorized for one room cannot write elsewhere by document ID.
+     */
     @Transactional
-    public Optional<DocumentResponse> updateDocument(UUID documentId, DocumentUpdateRequest request) {
-        Optional<Document> documentOpt = documentRepository.findById(documentId);
+    public Optional<DocumentResponse> updateDocument(UUID roomId, UUID documentId, DocumentUpdateRequest request) {
+        RealtimeEvents.DocumentPersisted persisted = new RealtimeEvents.DocumentPersisted();
+        persisted.begin();
+        Timer.Sample sample = Timer.start();
+        Optional<Document> documentOpt = documentRepository.findById(documentId)
+                .filter(document -> document.getRoom().getId().equals(roomId));
         
         if (documentOpt.isPresent()) {
             Document document = documentOpt.get();
-            
-            // Store the current content as a revision if text content is being updated
-            if (document.getContent() != null && request.getContent() != null && 
+            DocumentResponse response = applyUpdate(document, request);
+            sample.stop(documentMetrics.updateTimer(document.getType()));
+            persisted.finish(documentId, document.getType(), request.getContent() != null ? request.getContent().length() : 0);
+            return Optional.of(response);
+        }
+        
+        return Optional.empty();
+    }
+    
+    private DocumentResponse applyUpdate(Document document, DocumentUpdateRequest request) {
+        UUID documentId = document.getId();
+        
+        // Update document
+        if (request.getName() != null) {
+            document.setName(request.getName());
+        }
+        
+        // Text edits to a text document go through the op log; revisions are taken when it snapshots
+        boolean binaryUpdate = request.getContentType() != null && request.getContentType().startsWith("image/");
+        if (!binaryUpdate && request.getContent() != null && document.getContentBinary() == null) {
+            Document savedDocument = request.getName() != null ? documentRepository.save(document) : document;
+            opLog.apply(documentId, request.getContent(), request.getUpdatedById());
+            return mapToDto(savedDocument);
+        }
+        
+        // Anything else replaces the content wholesale, so pending ops no longer apply
+        if (binaryUpdate || request.getContent() != null) {
+            if (document.getContent() != null && request.getContent() != null &&
                 !document.getContent().equals(request.getContent())) {
                 createRevision(document, request);
             }
-            
-            // Update document
-            if (request.getName() != null) {
-                document.setName(request.getName());
-            }
-            
-            // Handle content update based on content type
-            if (request.getContentType() != null && request.getContentType().startsWith("image/")) {
-                document.setContentBinary(request.getBinaryContent());
-                document.setContent(null); // Clear text content when setting an image
-            } else if (request.getContent() != null) {
-                document.setContent(request.getContent());
-                document.setContentBinary(null); // Clear binary content when setting text
-            }
-            
-            Document savedDocument = documentRepository.save(document);
-            return Optional.of(mapToDto(savedDocument));
+            document.setSnapshotSeq(opLog.discard(documentId, document.getSnapshotSeq()));
         }
         
-        return Optional.empty();
+        // Handle content update based on content type
+        if (binaryUpdate) {
+            applyBinaryContent(document, request.getBinaryContent(), request.getContentType());
+        } else if (request.getContent() != null) {
+            chunkStore.writeText(document, request.getContent());
+        }
+        
+        Document savedDocument = documentRepository.save(document);
+        scheduleImageDerivatives(savedDocument);
+        return mapToDto(savedDocument);
+    }
+    
+    /**
+     * Sequence number of the document's latest edit; binary documents never have pending ops.
+     */
+    public long getHeadSeq(DocumentMetadata metadata) {
+        if (metadata.isStoredAsBinary()) {
+            return metadata.getSnapshotSeq();
+        }
+        return opLog.headSeq(metadata.getId(), metadata.getSnapshotSeq());
+    }
+    
+    /**
+     * The current text of a text document as an immutable snapshot, e.g. for streaming.
+     * Documents being edited are answered from memory without touching the database.
+     */
+    public Optional<Rope> getDocumentText(UUID documentId) {
+        Optional<DocumentOpLog.DocumentState> live = opLog.live(documentId);
+        if (live.isPresent()) {
+            return Optional.of(live.get().getText());
+        }
+        return documentRepository.findById(documentId)
+                .filter(document -> document.getContentBinary() == null)
+                .map(document -> opLog.current(document).getText());
+    }
+    
+    /**
+     * Look up a document's metadata without loading its content columns.
+     */
+    public Optional<DocumentMetadata> getDocumentMetadata(UUID documentId) {
+        return documentRepository.findMetadataById(documentId);
+    }
+    
+    /**
+     * Read a slice of a document's binary content.
+     * @param offset zero-based offset of the first byte
+     */
+    public byte[] getBinaryRange(UUID documentId, long offset, long length) {
+        return documentRepository.findBinaryRange(documentId, offset + 1, length);
+    }
+    
+    public byte[] getBinaryContent(UUID documentId) {
+        return documentRepository.findContentBinaryById(documentId);
     }
     
     @Transactional
     public boolean deleteDocument(UUID documentId) {
         if (documentRepository.existsById(documentId)) {
+            opLog.discard(documentId, 0);
             documentRepository.deleteById(documentId);
             return true;
         }
@@ -128,17 +271,35 @@ public class DocumentService {
     }
     
     private DocumentResponse mapToDto(Document document) {
-        long revisionCount = revisionRepository.countByDocumentId(document.getId());
+        return mapToDto(document, revisionRepository.countByDocumentId(document.getId()));
+    }
+    
+    private DocumentResponse mapToDto(Document document, long revisionCount) {
+        // Text documents may be chunked and may have edits newer than the stored snapshot
+        String content = document.getContent();
+        String contentHash = document.getContentHash();
+        long seq = document.getSnapshotSeq();
+        if (document.getContentBinary() == null) {
+            DocumentOpLog.DocumentState state = opLog.current(document);
+            content = state.getContent();
+            if (state.getSeq() > seq) {
+                contentHash = ContentHash.of(content);
+                seq = state.getSeq();
+            }
+        }
         
         DocumentResponse dto = DocumentResponse.builder()
                 .id(document.getId())
                 .roomId(document.getRoom().getId())
                 .name(document.getName())
                 .type(document.getType())
-                .content(document.getContent())
+                .content(content)
                 .createdAt(document.getCreatedAt())
                 .updatedAt(document.getUpdatedAt())
                 .revisionCount((int) revisionCount)
+                .contentType(document.getContentType())
+                .contentHash(contentHash)
+                .seq(seq)
                 .binaryContent(document.getContentBinary())
                 .build();
                 
@@ -152,6 +313,23 @@ public class DocumentService {
         return dto;
     }
     
+    private void applyBinaryContent(Document document, byte[] binaryContent, String contentType) {
+        document.setContentBinary(binaryContent);
+        document.setContent(null); // Clear text content when setting an image
+        document.setChunkManifest(null);
+        document.setContentType(contentType);
+        document.setContentHash(ContentHash.of(binaryContent));
+        document.setContentSize(binaryContent != null ? binaryContent.length : 0);
+    }
+    
+    private void scheduleImageDerivatives(Document document) {
+        if (document.getContentBinary() != null && document.getContentType() != null
+                && document.getContentType().startsWith("image/")) {
+            imageDerivativeService.scheduleDerivatives(
+                    document.getId(), document.getContentHash(), document.getContentBinary());
+        }
+    }
+    
     private void createRevision(Document document, DocumentUpdateRequest request) {
         // Simple approach: store the full content as the diff
         // In a real app, we'd compute an actual JSON diff or use a library for this
@@ -171,5 +349,6 @@ public class DocumentService {
         }
         
         revisionRepository.save(revision);
+        documentMetrics.revisionCreated(document.getType());
     }
 } 
\ No newline at end of file
@@ -0,0 +1,426 @@
+package com.example.demo.service;
+
+import com.example.demo.model.ImageVariant;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Renders resized image variants (thumbnails, previews) and keeps them in a
+ * byte-bounded LRU cache on local disk.
+ *
+ * Variants are rendered on a small bounded executor as soon as an image is uploaded;
+ * a request that finds nothing cached (queue was full, cache evicted, older upload)
+ * queues the render there and is served the original meanwhile, so request threads
+ * never decode or scale images. Cache keys include the content hash, so a replaced
+ * image never serves a stale variant.
+ *
+ * Content that cannot be rendered (no ImageIO reader, undecodable, or more pixels than
+ * {@code images.derivatives.max-pixels}) is remembered by content hash, so requests for
+ * it go straight to the original instead of queueing the same failed render again.
+ */
+@Service
+public class ImageDerivativeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageDerivativeService.class);
+
+    private static final float JPEG_QUALITY = 0.8f;
+
+    private final Path cacheDir;
+    private final long maxCacheBytes;
+    private final long maxPixels;
+    private final ThreadPoolExecutor executor;
+
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, CacheEntry> index = new LinkedHashMap<>(64, 0.75f, true);
+    private long cachedBytes;
+
+    // Keys queued or being rendered, so each is rendered once however many requests miss it
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    // Content hashes that cannot be rendered, whichever document or variant asks
+    private final Cache<String, Boolean> unrenderable;
+
+    @Autowired
+    public ImageDerivativeService(
+            @Value("${images.derivatives.cache-dir:${java.io.tmpdir}/collabedge-derivatives}") String cacheDir,
+            @Value("${images.derivatives.cache-max-bytes:268435456}") long maxCacheBytes,
+            @Value("${images.derivatives.threads:2}") int threads,
+            @Value("${images.derivatives.queue-capacity:64}") int queueCapacity,
+            @Value("${images.derivatives.max-pixels:40000000}") long maxPixels,
+            @Value("${images.derivatives.unrenderable-cache-size:10000}") long unrenderableCacheSize) throws IOException {
+        this.cacheDir = Paths.get(cacheDir);
+        this.maxCacheBytes = maxCacheBytes;
+        this.maxPixels = maxPixels;
+        this.unrenderable = Caffeine.newBuilder()
+                .maximumSize(unrenderableCacheSize)
+                .build();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-derivatives-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        Files.createDirectories(this.cacheDir);
+        loadIndex();
+    }
+
+    /**
+     * Queue rendering of every variant of a freshly stored image. Never blocks; when the
+     * queue is full the variants are queued again when first requested.
+     */
+    public void scheduleDerivatives(UUID documentId, String contentHash, byte[] original) {
+        if (contentHash == null || original == null || isUnrenderable(contentHash)) {
+            return;
+        }
+
+        for (ImageVariant variant : ImageVariant.values()) {
+            String key = cacheKey(documentId, contentHash, variant);
+            if (!isCached(key)) {
+                enqueue(documentId, contentHash, key, variant, () -> original);
+            }
+        }
+    }
+
+    /**
+     * Get a variant of an image if it is cached. On a miss the variant is queued for
+     * rendering and this returns empty; callers serve the original until it is ready.
+     * Also empty, without queueing anything, for content already found unrenderable.
+     */
+    public Optional<ImageDerivative> getDerivative(UUID documentId, String contentHash, ImageVariant variant,
+                                                   Supplier<byte[]> original) {
+        String key = cacheKey(documentId, contentHash, variant);
+
+        ImageDerivative cached = lookup(key);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        if (isUnrenderable(contentHash)) {
+            return Optional.empty();
+        }
+
+        enqueue(documentId, contentHash, key, variant, original);
+        return Optional.empty();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void enqueue(UUID documentId, String contentHash, String key, ImageVariant variant,
+                         Supplier<byte[]> original) {
+        if (!inFlight.add(key)) {
+            return;
+        }
+
+        try {
+            executor.execute(() -> render(documentId, contentHash, key, variant, original));
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key);
+            logger.debug("Derivative queue full, {} of document {} will be queued on a later request", variant, documentId);
+        }
+    }
+
+    private void render(UUID documentId, String contentHash, String key, ImageVariant variant,
+                        Supplier<byte[]> original) {
+        try {
+            byte[] bytes = original.get();
+            if (bytes == null) {
+                return;
+            }
+            BufferedImage source = decode(bytes, documentId);
+            if (source == null) {
+                unrenderable.put(contentHash, Boolean.TRUE);
+                return;
+            }
+            renderAndStore(key, variant, source);
+        } catch (Exception e) {
+            logger.warn("Could not render {} of document {}: {}", variant, documentId, e.getMessage());
+        } finally {
+            inFlight.remove(key);
+        }
+    }
+
+    /**
+     * Decode an image, or null if it cannot be rendered. The dimensions are read from the
+     * header first, so an image that would decode to more than maxPixels (a decompression
+     * bomb, or just a huge scan) is refused before any pixel memory is allocated.
+     */
+    private BufferedImage decode(byte[] original, UUID documentId) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(original))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                // No ImageIO reader for this format (e.g. SVG, WebP)
+                return null;
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxPixels) {
+                    logger.info("Not rendering variants of document {}: {} pixels is over the limit of {}",
+                            documentId, pixels, maxPixels);
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            // The bytes are in memory, so this is a corrupt or truncated image, not a transient failure
+            logger.info("Not rendering variants of document {}: {}", documentId, e.getMessage());
+            return null;
+        }
+    }
+
+    private void renderAndStore(String key, ImageVariant variant, BufferedImage source) throws IOException {
+        boolean hasAlpha = source.getColorModel().hasAlpha();
+        String format = hasAlpha ? "png" : "jpg";
+        byte[] encoded = encode(scale(source, variant.getMaxDimension(), hasAlpha), format);
+
+        store(key, key + "." + format, encoded);
+    }
+
+    private static BufferedImage scale(BufferedImage source, int maxDimension, boolean hasAlpha) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        double ratio = Math.min(1.0, (double) maxDimension / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(height * ratio));
+        int imageType = hasAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        // Halve in steps: a single bilinear pass from a large original aliases badly.
+        // Always draws at least once, which also normalises indexed/CMYK sources for the encoder.
+        BufferedImage current = source;
+        int w = width;
+        int h = height;
+        do {
+            w = Math.max(targetWidth, w / 2);
+            h = Math.max(targetHeight, h / 2);
+            BufferedImage next = new BufferedImage(w, h, imageType);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.drawImage(current, 0, 0, w, h, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (w != targetWidth || h != targetHeight);
+
+        return current;
+    }
+
+    private static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!"jpg".equals(format)) {
+            ImageIO.write(image, format, out);
+            return out.toByteArray();
+        }
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream imageOut = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(imageOut);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private void store(String key, String fileName, byte[] data) throws IOException {
+        Path temp = Files.createTempFile(cacheDir, key, ".tmp");
+        try {
+            Files.write(temp, data);
+            Files.move(temp, cacheDir.resolve(fileName),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        synchronized (index) {
+            CacheEntry previous = index.put(key, new CacheEntry(fileName, data.length));
+            if (previous != null) {
+                cachedBytes -= previous.size;
+            }
+            cachedBytes += data.length;
+            evictOverBudget();
+        }
+    }
+
+    private ImageDerivative lookup(String key) {
+        CacheEntry entry;
+        synchronized (index) {
+            entry = index.get(key); // refreshes the entry's LRU position
+        }
+        if (entry == null) {
+            return null;
+        }
+
+        try {
+            return new ImageDerivative(Files.readAllBytes(cacheDir.resolve(entry.fileName)), contentTypeFor(entry.fileName));
+        } catch (IOException e) {
+            // Deleted behind our back; forget it and render again
+            synchronized (index) {
+                if (index.remove(key, entry)) {
+                    cachedBytes -= entry.size;
+                }
+            }
+            return null;
+        }
+    }
+
+    private boolean isUnrenderable(String contentHash) {
+        return unrenderable.getIfPresent(contentHash) != null;
+    }
+
+    private boolean isCached(String key) {
+        synchronized (index) {
+            return index.containsKey(key);
+        }
+    }
+
+    // Must hold the index lock
+    private void evictOverBudget() {
+        Iterator<Map.Entry<String, CacheEntry>> eldest = index.entrySet().iterator();
+        while (cachedBytes > maxCacheBytes && eldest.hasNext()) {
+            CacheEntry entry = eldest.next().getValue();
+            eldest.remove();
+            cachedBytes -= entry.size;
+            try {
+                Files.deleteIfExists(cacheDir.resolve(entry.fileName));
+            } catch (IOException e) {
+                logger.warn("Could not delete evicted derivative {}: {}", entry.fileName, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Rebuild the index from a previous run's files, oldest first so they are evicted first.
+     */
+    private void loadIndex() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir)) {
+            for (Path file : stream) {
+                if (file.getFileName().toString().endsWith(".tmp")) {
+                    Files.deleteIfExists(file); // left over from a crash mid-write
+                } else if (Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+        }
+
+        files.sort(Comparator.comparing(file -> {
+            try {
+                return Files.getLastModifiedTime(file).toMillis();
+            } catch (IOException e) {
+                return 0L;
+            }
+        }));
+
+        synchronized (index) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                int dot = fileName.lastIndexOf('.');
+                if (dot <= 0) {
+                    continue;
+                }
+                long size = Files.size(file);
+                index.put(fileName.substring(0, dot), new CacheEntry(fileName, size));
+                cachedBytes += size;
+            }
+            evictOverBudget();
+        }
+
+        logger.info("Image derivative cache at {} holds {} files ({} bytes)", cacheDir, index.size(), cachedBytes);
+    }
+
+    private static String cacheKey(UUID documentId, String contentHash, ImageVariant variant) {
+        return documentId + "_" + contentHash + "_" + variant.name();
+    }
+
+    private static String contentTypeFor(String fileNameOrFormat) {
+        return fileNameOrFormat.endsWith("png") ? "image/png" : "image/jpeg";
+    }
+
+    private static final class CacheEntry {
+        private final String fileName;
+        private final long size;
+
+        private CacheEntry(String fileName, long size) {
+            this.fileName = fileName;
+            this.size = size;
+        }
+    }
+
+    /**
+     * An encoded image variant ready to be sent to a client.
+     */
+    public static final class ImageDerivative {
+        private final byte[] data;
+        private final String contentType;
+
+        public ImageDerivative(byte[] data, String contentType) {
+            this.data = data;
+            this.contentType = contentType;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.demo.service;
+
+/**
+ * Thrown when a password hash cannot be computed because the hashing executor is saturated.
+ * Callers should answer with a retryable status rather than an authentication failure.
+ */
+public class PasswordHashingBusyException extends RuntimeException {
+
+    public PasswordHashingBusyException(String message) {
+        super(message);
+    }
+}
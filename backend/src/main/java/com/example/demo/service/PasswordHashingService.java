@@ -0,0 +1,175 @@
+package com.example.demo.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs BCrypt on small dedicated pools so a burst of joins or logins queues here
+ * instead of pinning request threads. Logins and signups ({@link #auth()}) and room
+ * passwords ({@link #rooms()}) have separate pools, so a burst of room joins cannot
+ * lock users out of signing in and vice versa. When a pool's queue is full callers
+ * fail fast with {@link PasswordHashingBusyException}. Hash latency, queue wait, queue
+ * depth and rejections are published per pool as {@code password.hashing.*} metrics.
+ */
+@Service
+public class PasswordHashingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHashingService.class);
+
+    private final Pool auth;
+    private final Pool rooms;
+
+    @Autowired
+    public PasswordHashingService(
+            PasswordEncoder passwordEncoder,
+            MeterRegistry meterRegistry,
+            @Value("${password-hashing.auth.threads:2}") int authThreads,
+            @Value("${password-hashing.auth.queue-capacity:32}") int authQueueCapacity,
+            @Value("${password-hashing.rooms.threads:1}") int roomThreads,
+            @Value("${password-hashing.rooms.queue-capacity:16}") int roomQueueCapacity,
+            @Value("${password-hashing.timeout-ms:5000}") long timeoutMs) {
+        this.auth = new Pool(passwordEncoder, meterRegistry, "auth", authThreads, authQueueCapacity, timeoutMs);
+        this.rooms = new Pool(passwordEncoder, meterRegistry, "rooms", roomThreads, roomQueueCapacity, timeoutMs);
+    }
+
+    /**
+     * The pool for account passwords: signup, login and password changes.
+     */
+    public Pool auth() {
+        return auth;
+    }
+
+    /**
+     * The pool for room passwords: creating and joining protected rooms.
+     */
+    public Pool rooms() {
+        return rooms;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        auth.executor.shutdownNow();
+        rooms.executor.shutdownNow();
+    }
+
+    public static final class Pool {
+
+        private final PasswordEncoder passwordEncoder;
+        private final String name;
+        private final long timeoutMs;
+        private final ThreadPoolExecutor executor;
+
+        private final Timer encodeTimer;
+        private final Timer matchTimer;
+        private final Timer queueWaitTimer;
+        private final Counter rejections;
+
+        private Pool(PasswordEncoder passwordEncoder, MeterRegistry meterRegistry, String name,
+                     int threads, int queueCapacity, long timeoutMs) {
+            this.passwordEncoder = passwordEncoder;
+            this.name = name;
+            this.timeoutMs = timeoutMs;
+
+            AtomicInteger threadCount = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "password-hashing-" + name + "-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+
+            this.encodeTimer = Timer.builder("password.hashing.latency")
+                    .description("Time spent computing a password hash")
+                    .tag("pool", name)
+                    .tag("operation", "encode")
+                    .register(meterRegistry);
+            this.matchTimer = Timer.builder("password.hashing.latency")
+                    .description("Time spent computing a password hash")
+                    .tag("pool", name)
+                    .tag("operation", "match")
+                    .register(meterRegistry);
+            this.queueWaitTimer = Timer.builder("password.hashing.queue.wait")
+                    .description("Time a hashing task waited for a thread")
+                    .tag("pool", name)
+                    .register(meterRegistry);
+            this.rejections = Counter.builder("password.hashing.rejected")
+                    .description("Hashing requests refused because the pool was saturated")
+                    .tag("pool", name)
+                    .register(meterRegistry);
+            Gauge.builder("password.hashing.queue.depth", this, Pool::getQueueDepth)
+                    .description("Hashing tasks waiting for a thread")
+                    .tag("pool", name)
+                    .register(meterRegistry);
+        }
+
+        public String encode(String rawPassword) {
+            return run(encodeTimer, () -> passwordEncoder.encode(rawPassword));
+        }
+
+        public boolean matches(String rawPassword, String encodedPassword) {
+            return run(matchTimer, () -> passwordEncoder.matches(rawPassword, encodedPassword));
+        }
+
+        /**
+         * Number of hashing tasks waiting for a thread.
+         */
+        public int getQueueDepth() {
+            return executor.getQueue().size();
+        }
+
+        private <T> T run(Timer latency, Callable<T> hash) {
+            long submittedAt = System.nanoTime();
+            Callable<T> task = () -> {
+                queueWaitTimer.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+                return latency.recordCallable(hash);
+            };
+
+            Future<T> future;
+            try {
+                future = executor.submit(task);
+            } catch (RejectedExecutionException e) {
+                rejections.increment();
+                logger.warn("Password hashing queue for {} is full ({} waiting)", name, executor.getQueue().size());
+                throw new PasswordHashingBusyException("Password hashing capacity exceeded");
+            }
+
+            try {
+                return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                rejections.increment();
+                throw new PasswordHashingBusyException("Password hashing timed out");
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new PasswordHashingBusyException("Interrupted while waiting for password hashing");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IllegalStateException("Password hashing failed", cause);
+            }
+        }
+    }
+}
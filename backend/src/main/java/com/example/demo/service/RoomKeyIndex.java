@@ -0,0 +1,233 @@
+package com.example.demo.service;
+
+import com.example.demo.repository.RoomRepository;
+import com.example.demo.util.LongHashSet;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index of every room key, so collision checks during key generation never
+ * reach Postgres, plus a short-lived negative cache so repeated lookups of keys that do
+ * not exist (typos, random probing) are answered without a query.
+ * <p>
+ * Keys of up to 10 characters from {@code [0-9A-Z]} (all generated keys) are packed
+ * into a long and kept in a {@link LongHashSet}; anything else goes to a plain set.
+ * The index is loaded when the application is ready, updated by {@link RoomService}
+ * and {@link UserService} on create and delete, and rebuilt periodically to pick up
+ * rows written outside this process. Lookups do not trust a miss in the index, since
+ * another node may have created the room since the last rebuild: only the database can
+ * put a key in the negative cache.
+ */
+@Service
+public class RoomKeyIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoomKeyIndex.class);
+
+    private static final int MAX_PACKED_LENGTH = 10;
+
+    private final RoomRepository roomRepository;
+    private final Cache<String, Boolean> recentMisses;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private LongHashSet packedKeys = new LongHashSet(16);
+    private Set<String> otherKeys = new HashSet<>();
+    private volatile boolean ready;
+
+    // Keys added while a rebuild is reading the table, replayed once it swaps in
+    private List<String> addedDuringRebuild;
+
+    @Autowired
+    public RoomKeyIndex(
+            RoomRepository roomRepository,
+            @Value("${room-key-index.negative-cache-ttl-seconds:30}") long negativeTtlSeconds,
+            @Value("${room-key-index.negative-cache-size:10000}") long negativeCacheSize) {
+        this.roomRepository = roomRepository;
+        this.recentMisses = Caffeine.newBuilder()
+                .maximumSize(negativeCacheSize)
+                .expireAfterWrite(Duration.ofSeconds(negativeTtlSeconds))
+                .build();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        rebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${room-key-index.resync-interval-ms:300000}",
+               initialDelayString = "${room-key-index.resync-interval-ms:300000}")
+    public void resync() {
+        rebuild();
+    }
+
+    /**
+     * False when the key is empty or the database recently had no room for it. True means
+     * "ask the database".
+     */
+    public boolean mightExist(String roomKey) {
+        if (roomKey == null || roomKey.isEmpty()) {
+            return false;
+        }
+        return recentMisses.getIfPresent(roomKey) == null;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Whether the key is taken, for local collision checks. Only meaningful once {@link #isReady()}.
+     */
+    public boolean isTaken(String roomKey) {
+        return contains(roomKey);
+    }
+
+    /**
+     * Remember that the database had no room for this key.
+     */
+    public void recordMiss(String roomKey) {
+        if (roomKey != null) {
+            recentMisses.put(roomKey, Boolean.TRUE);
+        }
+    }
+
+    public void add(String roomKey) {
+        lock.writeLock().lock();
+        try {
+            insert(roomKey);
+            if (addedDuringRebuild != null) {
+                addedDuringRebuild.add(roomKey);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        recentMisses.invalidate(roomKey);
+    }
+
+    public void remove(String roomKey) {
+        lock.writeLock().lock();
+        try {
+            long packed = pack(roomKey);
+            if (packed != 0) {
+                packedKeys.remove(packed);
+            } else {
+                otherKeys.remove(roomKey);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return packedKeys.size() + otherKeys.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean contains(String roomKey) {
+        long packed = pack(roomKey);
+        lock.readLock().lock();
+        try {
+            return packed != 0 ? packedKeys.contains(packed) : otherKeys.contains(roomKey);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            addedDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        try {
+            List<String> keys = roomRepository.findAllRoomKeys();
+            LongHashSet newPacked = new LongHashSet(keys.size());
+            Set<String> newOther = new HashSet<>();
+            for (String key : keys) {
+                long packed = pack(key);
+                if (packed != 0) {
+                    newPacked.add(packed);
+                } else {
+                    newOther.add(key);
+                }
+            }
+
+            lock.writeLock().lock();
+            try {
+                packedKeys = newPacked;
+                otherKeys = newOther;
+                for (String key : addedDuringRebuild) {
+                    insert(key);
+                }
+                ready = true;
+            } finally {
+                addedDuringRebuild = null;
+                lock.writeLock().unlock();
+            }
+            logger.debug("Room key index loaded with {} keys", keys.size());
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                addedDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            logger.error("Could not load room key index: {}", e.getMessage());
+        }
+    }
+
+    // Caller holds the write lock
+    private void insert(String roomKey) {
+        long packed = pack(roomKey);
+        if (packed != 0) {
+            packedKeys.add(packed);
+        } else {
+            otherKeys.add(roomKey);
+        }
+    }
+
+    /**
+     * Base-37 packing of short upper-case alphanumeric keys (digit values 1..36, so the
+     * result is never 0). Returns 0 for keys that do not fit.
+     */
+    static long pack(String key) {
+        if (key == null || key.isEmpty() || key.length() > MAX_PACKED_LENGTH) {
+            return 0;
+        }
+        long packed = 0;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0' + 1;
+            } else if (c >= 'A' && c <= 'Z') {
+                digit = c - 'A' + 11;
+            } else {
+                return 0;
+            }
+            packed = packed * 37 + digit;
+        }
+        return packed;
+    }
+}
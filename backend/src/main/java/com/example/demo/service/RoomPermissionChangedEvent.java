@@ -0,0 +1,37 @@
+package com.example.demo.service;
+
+import java.util.UUID;
+
+/**
+ * Published when a user's permission level in a room is granted, changed or revoked,
+ * so live WebSocket sessions can update their cached permission.
+ */
+public class RoomPermissionChangedEvent {
+
+    private final UUID roomId;
+    private final UUID userId;
+    // null when the permission was revoked
+    private final String permissionLevel;
+
+    public RoomPermissionChangedEvent(UUID roomId, UUID userId, String permissionLevel) {
+        this.roomId = roomId;
+        this.userId = userId;
+        this.permissionLevel = permissionLevel;
+    }
+
+    public UUID getRoomId() {
+        return roomId;
+    }
+
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public String getPermissionLevel() {
+        return permissionLevel;
+    }
+
+    public boolean isRevoked() {
+        return permissionLevel == null;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.demo.service;
 
+import com.example.demo.dto.CursorPage;
 import com.example.demo.dto.RoomCreateRequest;
 import com.example.demo.dto.RoomJoinRequest;
 import com.example.demo.dto.RoomResponse;
@@ -7,20 +8,42 @@ import com.example.demo.model.Room;
 import com.example.demo.model.RoomPermission;
 import com.example.demo.model.User;
 import com.example.demo.repository.DocumentRepository;
+import com.example.demo.repository.IdCount;
 import com.example.demo.repository.RoomPermissionRepository;
 import com.example.demo.repository.RoomRepository;
 import com.example.demo.repository.UserRepository;
+import com.example.demo.repository.UserRoomView;
+import com.example.demo.util.KeysetCursor;
+import com.example.demo.util.RoomTicketUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PostConstruct;
 import javax.transaction.Transactional;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,7 +57,31 @@ public class RoomService {
     private final UserRepository userRepository;
     private final DocumentRepository documentRepository;
     private final RoomPermissionRepository roomPermissionRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
+    private final RoomTicketUtil roomTicketUtil;
+    private final RoomKeyIndex roomKeyIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    
+    private final Counter roomsCreated;
+    private final Counter joinsSucceeded;
+    private final Counter joinsDenied;
+    private final Counter joinsNotFound;
+    
+    @Value("${pagination.default-page-size:50}")
+    private int defaultPageSize;
+    
+    @Value("${pagination.max-page-size:200}")
+    private int maxPageSize;
+    
+    @Value("${user-rooms.cache-ttl-seconds:60}")
+    private long userRoomsCacheTtlSeconds;
+    
+    @Value("${user-rooms.cache-max-users:10000}")
+    private long userRoomsCacheMaxUsers;
+    
+    // userId -> (page, size) -> rooms; the TTL bounds how stale document counts get
+    private Cache<UUID, Map<Long, List<RoomResponse>>> userRoomsCache;
     
     @Autowired
     public RoomService(
@@ -42,18 +89,73 @@ public class RoomService {
             UserRepository userRepository,
             DocumentRepository documentRepository,
             RoomPermissionRepository roomPermissionRepository,
-            PasswordEncoder passwordEncoder) {
+            PasswordHashingService passwordHashingService,
+            RoomTicketUtil roomTicketUtil,
+            RoomKeyIndex roomKeyIndex,
+            ApplicationEventPublisher eventPublisher,
+            MeterRegistry meterRegistry,
+            PlatformTransactionManager transactionManager) {
         this.roomRepository = roomRepository;
         this.userRepository = userRepository;
         this.documentRepository = documentRepository;
         this.roomPermissionRepository = roomPermissionRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingService = passwordHashingService;
+        this.roomTicketUtil = roomTicketUtil;
+        this.roomKeyIndex = roomKeyIndex;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        
+        this.roomsCreated = Counter.builder("rooms.created")
+                .description("Rooms created")
+                .register(meterRegistry);
+        this.joinsSucceeded = joinCounter(meterRegistry, "joined");
+        this.joinsDenied = joinCounter(meterRegistry, "denied");
+        this.joinsNotFound = joinCounter(meterRegistry, "not_found");
     }
     
-    public List<RoomResponse> getAllRooms() {
-        return roomRepository.findAll().stream()
-                .map(this::mapToDto)
-                .collect(Collectors.toList());
+    private static Counter joinCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("rooms.joins")
+                .description("Room join attempts by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+    
+    @PostConstruct
+    void initUserRoomsCache() {
+        userRoomsCache = Caffeine.newBuilder()
+                .maximumSize(userRoomsCacheMaxUsers)
+                .expireAfterWrite(Duration.ofSeconds(userRoomsCacheTtlSeconds))
+                .build();
+    }
+    
+    /**
+     * List rooms in creation order, one page at a time.
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public CursorPage<RoomResponse> getRooms(String cursor, Integer limit) {
+        int pageSize = KeysetCursor.pageSize(limit, defaultPageSize, maxPageSize);
+        // Fetch one extra row to learn whether another page follows
+        Pageable pageable = PageRequest.of(0, pageSize + 1);
+        
+        List<Room> rooms;
+        if (cursor == null || cursor.isEmpty()) {
+            rooms = roomRepository.findPageWithCreator(pageable);
+        } else {
+            KeysetCursor after = KeysetCursor.decode(cursor);
+            rooms = roomRepository.findPageWithCreatorAfter(after.getCreatedAt(), after.getId(), pageable);
+        }
+        
+        boolean hasMore = rooms.size() > pageSize;
+        if (hasMore) {
+            rooms = rooms.subList(0, pageSize);
+        }
+        
+        String nextCursor = null;
+        if (hasMore) {
+            Room last = rooms.get(rooms.size() - 1);
+            nextCursor = KeysetCursor.encode(last.getCreatedAt(), last.getId());
+        }
+        return new CursorPage<>(mapToDtos(rooms), nextCursor);
     }
     
     public Optional<RoomResponse> getRoomById(UUID roomId) {
@@ -62,7 +164,7 @@ public class RoomService {
     }
     
     public Optional<RoomResponse> getRoomByKey(String roomKey) {
-        return roomRepository.findByRoomKey(roomKey)
+        return findRoomByKey(roomKey)
                 .map(this::mapToDto);
     }
     
@@ -81,7 +183,7 @@ public class RoomService {
         // Set password if provided
         if (request.isPasswordProtected() && request.getPassword() != null && !request.getPassword().isEmpty()) {
             room.setIsPasswordProtected(true);
-            room.setPasswordHash(passwordEncoder.encode(request.getPassword()));
+            room.setPasswordHash(passwordHashingService.rooms().encode(request.getPassword()));
         } else {
             room.setIsPasswordProtected(false);
         }
@@ -93,6 +195,7 @@ public class RoomService {
         }
         
         Room savedRoom = roomRepository.save(room);
+        roomKeyIndex.add(savedRoom.getRoomKey());
         
         // Grant admin permission to the creator
         if (savedRoom.getCreatedBy() != null) {
@@ -101,71 +204,132 @@ public class RoomService {
             permission.setUser(savedRoom.getCreatedBy());
             permission.setPermissionLevel("admin");
             roomPermissionRepository.save(permission);
+            eventPublisher.publishEvent(new RoomPermissionChangedEvent(
+                    savedRoom.getId(), savedRoom.getCreatedBy().getId(), "admin"));
         }
         
-        return mapToDto(savedRoom);
+        roomsCreated.increment();
+        RoomResponse response = mapToDto(savedRoom);
+        if (savedRoom.getIsPasswordProtected()) {
+            // The creator already knows the password; let them straight into the editor
+            response.setAccessTicket(roomTicketUtil.issue(savedRoom.getId(), request.getCreatedById()));
+        }
+        return response;
     }
     
-    @Transactional
+    /**
+     * Join a room by key. The password or ticket is checked before the transaction that
+     * grants the permission opens, so a slow BCrypt check never holds a connection.
+     */
     public Optional<RoomResponse> joinRoom(RoomJoinRequest request) {
         logger.info("Attempting to join room with key: {}", request.getRoomKey());
-        Optional<Room> roomOpt = roomRepository.findByRoomKey(request.getRoomKey());
+        Optional<Room> roomOpt = findRoomByKey(request.getRoomKey());
+        
+        if (roomOpt.isEmpty()) {
+            logger.warn("Room not found with key: {}", request.getRoomKey());
+            joinsNotFound.increment();
+            return Optional.empty();
+        }
         
-        if (roomOpt.isPresent()) {
-            Room room = roomOpt.get();
-            logger.info("Found room {} ({}), password protected: {}", room.getName(), room.getId(), room.getIsPasswordProtected());
+        Room room = roomOpt.get();
+        logger.info("Found room {} ({}), password protected: {}", room.getName(), room.getId(), room.getIsPasswordProtected());
+        
+        // Check password if required. A valid ticket from an earlier join skips BCrypt.
+        if (room.getIsPasswordProtected()
+                && roomTicketUtil.verify(request.getTicket(), room.getId(), request.getUserId())) {
+            logger.info("Room ticket accepted for room {}", request.getRoomKey());
+        } else if (room.getIsPasswordProtected()) {
+            if (request.getPassword() == null || request.getPassword().isEmpty()) {
+                logger.warn("Password required for room {} but none provided", request.getRoomKey());
+                joinsDenied.increment();
+                return Optional.empty();
+            }
             
-            // Check password if required
-            if (room.getIsPasswordProtected()) {
-                if (request.getPassword() == null || request.getPassword().isEmpty()) {
-                    logger.warn("Password required for room {} but none provided", request.getRoomKey());
-                    return Optional.empty();
-                }
-                
-                if (!validatePassword(request.getPassword(), room)) {
-                    logger.warn("Invalid password provided for room {}", request.getRoomKey());
-                    return Optional.empty();
-                }
-                
-                logger.info("Password validation successful for room {}", request.getRoomKey());
+            if (!validatePassword(request.getPassword(), room)) {
+                logger.warn("Invalid password provided for room {}", request.getRoomKey());
+                joinsDenied.increment();
+                return Optional.empty();
             }
             
-            // Grant write permission to the joining user if they are authenticated
-            if (request.getUserId() != null) {
-                Optional<User> userOpt = userRepository.findById(request.getUserId());
-                if (userOpt.isPresent()) {
-                    User user = userOpt.get();
-                    logger.info("Granting permissions to authenticated user {} for room {}", user.getUsername(), request.getRoomKey());
-                    
-                    // Check if user already has permission
-                    Optional<RoomPermission> existingPermission = 
-                        roomPermissionRepository.findByRoomIdAndUserId(room.getId(), user.getId());
-                    
-                    if (existingPermission.isEmpty()) {
-                        // Grant write permission to the new user
-                        RoomPermission permission = new RoomPermission();
-                        permission.setRoom(room);
-                        permission.setUser(user);
-                        permission.setPermissionLevel("write");
-                        roomPermissionRepository.save(permission);
-                        logger.info("Granted write permission to user {} for room {}", user.getUsername(), request.getRoomKey());
-                    } else {
-                        logger.info("User {} already has {} permission for room {}", user.getUsername(), existingPermission.get().getPermissionLevel(), request.getRoomKey());
-                    }
+            logger.info("Password validation successful for room {}", request.getRoomKey());
+        }
+        
+        Optional<RoomResponse> joined = transactionTemplate.execute(status -> grantJoin(room.getId(), request));
+        if (joined.isEmpty()) {
+            logger.warn("Room {} was deleted while joining", request.getRoomKey());
+            joinsNotFound.increment();
+            return joined;
+        }
+        
+        logger.info("Successfully joined room {}", request.getRoomKey());
+        joinsSucceeded.increment();
+        if (room.getIsPasswordProtected()) {
+            joined.get().setAccessTicket(roomTicketUtil.issue(room.getId(), request.getUserId()));
+        }
+        return joined;
+    }
+    
+    /**
+     * Grant write permission to an authenticated joining user; runs in the join transaction.
+     */
+    private Optional<RoomResponse> grantJoin(UUID roomId, RoomJoinRequest request) {
+        // Usually served from the second-level cache, and attached to this transaction
+        Optional<Room> roomOpt = roomRepository.findById(roomId);
+        if (roomOpt.isEmpty()) {
+            return Optional.empty();
+        }
+        Room room = roomOpt.get();
+        
+        if (request.getUserId() != null) {
+            Optional<User> userOpt = userRepository.findById(request.getUserId());
+            if (userOpt.isPresent()) {
+                User user = userOpt.get();
+                logger.info("Granting permissions to authenticated user {} for room {}", user.getUsername(), request.getRoomKey());
+                
+                // Check if user already has permission
+                Optional<RoomPermission> existingPermission = 
+                    roomPermissionRepository.findByRoomIdAndUserId(room.getId(), user.getId());
+                
+                if (existingPermission.isEmpty()) {
+                    // Grant write permission to the new user
+                    RoomPermission permission = new RoomPermission();
+                    permission.setRoom(room);
+                    permission.setUser(user);
+                    permission.setPermissionLevel("write");
+                    roomPermissionRepository.save(permission);
+                    eventPublisher.publishEvent(new RoomPermissionChangedEvent(room.getId(), user.getId(), "write"));
+                    logger.info("Granted write permission to user {} for room {}", user.getUsername(), request.getRoomKey());
+                } else {
+                    logger.info("User {} already has {} permission for room {}", user.getUsername(), existingPermission.get().getPermissionLevel(), request.getRoomKey());
                 }
             }
-            
-            logger.info("Successfully joined room {}", request.getRoomKey());
-            return Optional.of(mapToDto(room));
         }
         
-        logger.warn("Room not found with key: {}", request.getRoomKey());
-        return Optional.empty();
+        return Optional.of(mapToDto(room));
     }
     
     private RoomResponse mapToDto(Room room) {
-        long documentCount = documentRepository.countByRoomId(room.getId());
+        return mapToDto(room, documentRepository.countByRoomId(room.getId()));
+    }
+    
+    /**
+     * Map a list of rooms with one grouped count query instead of one count per room.
+     * Callers should fetch-join createdBy to avoid lazy loads per room.
+     */
+    private List<RoomResponse> mapToDtos(List<Room> rooms) {
+        if (rooms.isEmpty()) {
+            return new ArrayList<>();
+        }
         
+        List<UUID> roomIds = rooms.stream().map(Room::getId).collect(Collectors.toList());
+        Map<UUID, Long> documentCounts = IdCount.toMap(documentRepository.countByRoomIds(roomIds));
+        
+        return rooms.stream()
+                .map(room -> mapToDto(room, documentCounts.getOrDefault(room.getId(), 0L)))
+                .collect(Collectors.toList());
+    }
+    
+    private RoomResponse mapToDto(Room room, long documentCount) {
         RoomResponse dto = RoomResponse.builder()
                 .id(room.getId())
                 .name(room.getName())
@@ -199,42 +363,109 @@ public class RoomService {
                 sb.append(chars.charAt(index));
             }
             roomKey = sb.toString();
-        } while (roomRepository.existsByRoomKey(roomKey));
+        } while (isRoomKeyTaken(roomKey));
         
         return roomKey;
     }
     
+    private boolean isRoomKeyTaken(String roomKey) {
+        // The unique constraint on room_key still catches a key taken elsewhere since the last resync
+        return roomKeyIndex.isReady() ? roomKeyIndex.isTaken(roomKey) : roomRepository.existsByRoomKey(roomKey);
+    }
+    
+    /**
+     * Look up a room by key, answering keys the database recently did not have without a
+     * query. A key missing from this node's index still goes to the database, since another
+     * node may have created the room since the index was last rebuilt.
+     */
+    private Optional<Room> findRoomByKey(String roomKey) {
+        if (!roomKeyIndex.mightExist(roomKey)) {
+            return Optional.empty();
+        }
+        
+        Optional<Room> room = roomRepository.findByRoomKey(roomKey);
+        if (room.isEmpty()) {
+            roomKeyIndex.recordMiss(roomKey);
+        } else if (roomKeyIndex.isReady() && !roomKeyIndex.isTaken(roomKey)) {
+            // Created elsewhere; learn it now rather than at the next rebuild
+            roomKeyIndex.add(roomKey);
+        }
+        return room;
+    }
+    
     private boolean validatePassword(String password, Room room) {
-        return passwordEncoder.matches(password, room.getPasswordHash());
+        return passwordHashingService.rooms().matches(password, room.getPasswordHash());
     }
     
     /**
-     * Get all rooms accessible to a specific user
-     * This includes rooms they created and rooms they have permissions for
+     * Get all rooms accessible to a specific user, most recently active first.
+     * This includes rooms they created and rooms they have permissions for, loaded
+     * with one query per page and cached per user until their rooms change.
      */
-    public List<RoomResponse> getUserRooms(UUID userId) {
-        try {
-            // Get rooms created by the user
-            List<Room> createdRooms = roomRepository.findByCreatedById(userId);
-            
-            // For now, just return created rooms to avoid the Hibernate lazy loading issue
-            // TODO: Fix the query to properly fetch rooms with permissions
-            return createdRooms.stream()
-                    .map(this::mapToDto)
-                    .sorted((r1, r2) -> r2.getCreatedAt().compareTo(r1.getCreatedAt())) // Most recent first
-                    .collect(Collectors.toList());
-        } catch (Exception e) {
-            logger.error("Error fetching user rooms for user {}: {}", userId, e.getMessage());
-            return new ArrayList<>();
+    public List<RoomResponse> getUserRooms(UUID userId, Integer page, Integer limit) {
+        int pageSize = KeysetCursor.pageSize(limit, defaultPageSize, maxPageSize);
+        int pageNumber = page == null || page < 0 ? 0 : page;
+        long pageKey = ((long) pageNumber << 32) | pageSize;
+        
+        // Fetch the user's page map first: an eviction racing with the query below
+        // detaches this map, so a stale result can never be put back into the cache
+        Map<Long, List<RoomResponse>> pages = userRoomsCache.get(userId, id -> new ConcurrentHashMap<>());
+        List<RoomResponse> cached = pages.get(pageKey);
+        if (cached != null) {
+            return cached;
         }
+        
+        // Only a page that loaded completely is cached; a failed load reaches the caller
+        List<RoomResponse> rooms = roomRepository.findUserRooms(userId, PageRequest.of(pageNumber, pageSize))
+                .stream()
+                .map(this::mapToDto)
+                .collect(Collectors.toList());
+        pages.put(pageKey, Collections.unmodifiableList(rooms));
+        return rooms;
     }
 
+    public void evictUserRooms(UUID userId) {
+        userRoomsCache.invalidate(userId);
+    }
+    
+    /**
+     * Deleted rooms can appear on any member's dashboard, so deletes drop every user's entry.
+     */
+    public void evictAllUserRooms() {
+        userRoomsCache.invalidateAll();
+    }
+    
+    // Create and join both publish this, after their transaction commits
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRoomPermissionChanged(RoomPermissionChangedEvent event) {
+        evictUserRooms(event.getUserId());
+    }
+    
+    private RoomResponse mapToDto(UserRoomView view) {
+        return RoomResponse.builder()
+                .id(view.getId())
+                .name(view.getName())
+                .roomKey(view.getRoomKey())
+                .isPasswordProtected(Boolean.TRUE.equals(view.getPasswordProtected()))
+                .createdById(view.getCreatedById())
+                .createdByUsername(view.getCreatedByUsername())
+                .createdAt(toZoned(view.getCreatedAt()))
+                .documentCount((int) view.getDocumentCount())
+                .lastActivityAt(toZoned(view.getLastActivityAt()))
+                .permissionLevel(view.getPermissionLevel())
+                .build();
+    }
+    
+    private static ZonedDateTime toZoned(Instant instant) {
+        return instant != null ? instant.atZone(ZoneId.systemDefault()) : null;
+    }
+    
     /**
      * Check if an authenticated user has access to a room
      * This bypasses password protection for users who created the room or have permissions
      */
     public Optional<RoomResponse> getAccessibleRoom(String roomKey, UUID userId) {
-        Optional<Room> roomOpt = roomRepository.findByRoomKey(roomKey);
+        Optional<Room> roomOpt = findRoomByKey(roomKey);
         
         if (roomOpt.isEmpty()) {
             return Optional.empty();
@@ -259,4 +490,36 @@ public class RoomService {
         logger.info("User {} does not have direct access to room {}, must join through normal flow", userId, roomKey);
         return Optional.empty();
     }
+    
+    /**
+     * Resolve the permission level a WebSocket session gets in a room, or empty if it may not connect.
+     * Creators are admins, granted users get their stored level, and anyone else (including guests)
+     * gets write access to rooms that are not password protected, or that they hold a valid
+     * ticket for, matching the join flow.
+     * Room and permission lookups are served from the second-level cache once warm.
+     */
+    public Optional<String> resolvePermissionLevel(UUID roomId, UUID userId, String ticket) {
+        Optional<Room> roomOpt = roomRepository.findById(roomId);
+        if (roomOpt.isEmpty()) {
+            return Optional.empty();
+        }
+        
+        Room room = roomOpt.get();
+        if (userId != null) {
+            if (room.getCreatedBy() != null && room.getCreatedBy().getId().equals(userId)) {
+                return Optional.of("admin");
+            }
+            
+            Optional<RoomPermission> permission = roomPermissionRepository.findByRoomIdAndUserId(roomId, userId);
+            if (permission.isPresent()) {
+                return Optional.of(permission.get().getPermissionLevel());
+            }
+        }
+        
+        if (!Boolean.TRUE.equals(room.getIsPasswordProtected())
+                || roomTicketUtil.verify(ticket, roomId, userId)) {
+            return Optional.of("write");
+        }
+        return Optional.empty();
+    }
 } 
\ No newline at end of file
@@ -1,11 +1,12 @@
 package com.example.demo.service;
 
 import com.example.demo.model.User;
+import com.example.demo.repository.RoomRepository;
 import com.example.demo.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -13,12 +14,23 @@ import java.util.UUID;
 public class UserService {
     
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
+    private final RoomRepository roomRepository;
+    private final RoomKeyIndex roomKeyIndex;
+    private final RoomService roomService;
     
     @Autowired
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserService(
+            UserRepository userRepository,
+            PasswordHashingService passwordHashingService,
+            RoomRepository roomRepository,
+            RoomKeyIndex roomKeyIndex,
+            RoomService roomService) {
         this.userRepository = userRepository;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingService = passwordHashingService;
+        this.roomRepository = roomRepository;
+        this.roomKeyIndex = roomKeyIndex;
+        this.roomService = roomService;
     }
     
     public Optional<User> findById(UUID id) {
@@ -41,15 +53,21 @@ public class UserService {
         return userRepository.existsByEmail(email);
     }
     
+    /**
+     * @throws PasswordHashingBusyException if the password cannot be hashed right now
+     */
     public User createUser(String username, String email, String password) {
         User user = new User();
         user.setUsername(username);
         user.setEmail(email);
-        user.setPasswordHash(passwordEncoder.encode(password));
+        user.setPasswordHash(passwordHashingService.auth().encode(password));
         
         return userRepository.save(user);
     }
     
+    /**
+     * @throws PasswordHashingBusyException if the password cannot be hashed right now
+     */
     public Optional<User> updateUser(UUID id, String username, String email, String password) {
         Optional<User> existingUser = userRepository.findById(id);
         
@@ -65,7 +83,7 @@ public class UserService {
             }
             
             if (password != null && !password.isEmpty()) {
-                user.setPasswordHash(passwordEncoder.encode(password));
+                user.setPasswordHash(passwordHashingService.auth().encode(password));
             }
             
             return Optional.of(userRepository.save(user));
@@ -76,13 +94,20 @@ public class UserService {
     
     public boolean deleteUser(UUID id) {
         if (userRepository.existsById(id)) {
+            // The user's rooms are deleted with them (cascade), so drop their keys from the index
+            List<String> roomKeys = roomRepository.findRoomKeysByCreatedById(id);
             userRepository.deleteById(id);
+            roomKeys.forEach(roomKeyIndex::remove);
+            roomService.evictAllUserRooms();
             return true;
         }
         return false;
     }
     
+    /**
+     * @throws PasswordHashingBusyException if the password cannot be checked right now
+     */
     public boolean validatePassword(String rawPassword, User user) {
-        return passwordEncoder.matches(rawPassword, user.getPasswordHash());
+        return passwordHashingService.auth().matches(rawPassword, user.getPasswordHash());
     }
 } 
\ No newline at end of file
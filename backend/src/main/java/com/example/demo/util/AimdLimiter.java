@@ -0,0 +1,90 @@
+package com.example.demo.util;
+
+/**
+ * Adaptive concurrency limit, additive increase / multiplicative decrease as in TCP
+ * congestion control. Every completed call is a latency sample: one slower than the SLO
+ * cuts the limit by {@code backoffRatio}, at most once per round trip (only calls started
+ * after the previous cut can cut it again); calls within the SLO while the limit is in
+ * use raise it by one per limit's worth of calls. Thread-safe.
+ * <p>
+ * Callers ask for a share of the limit, so lower-priority work is refused while there is
+ * still headroom for more important work.
+ */
+public final class AimdLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencySloNanos;
+    private double limit;
+    private int inFlight;
+    private long lastDecreaseNanos;
+
+    public AimdLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio, long latencySloNanos) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= min <= max");
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Backoff ratio must be between 0 and 1");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencySloNanos = latencySloNanos;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.lastDecreaseNanos = System.nanoTime();
+    }
+
+    /**
+     * Admit a call if fewer than {@code share} of the limit (at least one) are in flight.
+     * An admitted call must be passed to {@link #release} when it completes.
+     */
+    public synchronized boolean tryAcquire(double share) {
+        if (inFlight >= Math.max(1, (int) (limit * share))) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Admit a call that must not be refused. It still counts as in flight, so other work
+     * is refused sooner while it runs.
+     */
+    public synchronized void acquire() {
+        inFlight++;
+    }
+
+    /**
+     * Complete an admitted call that started at {@code startNanos} ({@link System#nanoTime}).
+     */
+    public void release(long startNanos) {
+        release(startNanos, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Complete an admitted call that started at {@code startNanos}, with {@code latencyNanos}
+     * as its sample instead of the whole time since it started.
+     */
+    public synchronized void release(long startNanos, long latencyNanos) {
+        long now = System.nanoTime();
+        if (latencyNanos > latencySloNanos) {
+            if (startNanos - lastDecreaseNanos > 0) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+                lastDecreaseNanos = now;
+            }
+        } else if (inFlight * 2 >= limit) {
+            // Only grow while the limit is actually the constraint
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+        inFlight--;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.demo.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Splits text into content-defined chunks (FastCDC): a rolling gear hash over the
+ * characters picks cut points, so an edit only changes the chunks it touches and the
+ * cuts after it fall back into place. Cuts never split a surrogate pair, so every
+ * chunk is a valid string on its own.
+ * <p>
+ * Within a chunk the first {@code minSize} characters are skipped, a stricter mask is
+ * used up to {@code avgSize} and a looser one after it (normalized chunking), which keeps
+ * chunk sizes close to the average; {@code maxSize} is a hard limit.
+ */
+public final class ContentDefinedChunker {
+
+    // Fixed seed: chunk boundaries, and so chunk hashes, must be the same on every node and release
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random random = new Random(0x5EEDC0DEL);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final int minSize;
+    private final int avgSize;
+    private final int maxSize;
+    private final long strictMask;
+    private final long looseMask;
+
+    public ContentDefinedChunker(int minSize, int avgSize, int maxSize) {
+        if (minSize <= 0 || minSize >= avgSize || avgSize >= maxSize) {
+            throw new IllegalArgumentException("Chunk sizes must satisfy 0 < min < avg < max");
+        }
+        this.minSize = minSize;
+        this.avgSize = avgSize;
+        this.maxSize = maxSize;
+        int bits = 31 - Integer.numberOfLeadingZeros(avgSize);
+        this.strictMask = highBits(bits + 1);
+        this.looseMask = highBits(bits - 1);
+    }
+
+    public List<String> split(String text) {
+        List<String> chunks = new ArrayList<>(text.length() / avgSize + 1);
+        int start = 0;
+        while (start < text.length()) {
+            int end = nextCut(text, start);
+            chunks.add(text.substring(start, end));
+            start = end;
+        }
+        return chunks;
+    }
+
+    private int nextCut(String text, int start) {
+        int remaining = text.length() - start;
+        if (remaining <= minSize) {
+            return text.length();
+        }
+        int normal = start + Math.min(remaining, avgSize);
+        int end = start + Math.min(remaining, maxSize);
+
+        long hash = 0;
+        int i = start + minSize;
+        for (; i < normal; i++) {
+            hash = (hash << 1) + GEAR[gearIndex(text.charAt(i))];
+            if ((hash & strictMask) == 0) {
+                return align(text, i + 1);
+            }
+        }
+        for (; i < end; i++) {
+            hash = (hash << 1) + GEAR[gearIndex(text.charAt(i))];
+            if ((hash & looseMask) == 0) {
+                return align(text, i + 1);
+            }
+        }
+        return align(text, end);
+    }
+
+    private static int align(String text, int cut) {
+        if (cut < text.length() && Character.isHighSurrogate(text.charAt(cut - 1))) {
+            return cut + 1;
+        }
+        return cut;
+    }
+
+    private static int gearIndex(char c) {
+        return (c ^ (c >>> 8)) & 0xFF;
+    }
+
+    // The gear hash shifts left, so its high bits mix the last 64 characters while the low bits see only the last few
+    private static long highBits(int count) {
+        return ((1L << count) - 1) << (64 - count);
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.demo.util;
+
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size, lock-free trace of hot-path events. Every event is counted and written to
+ * a ring of preallocated slots that keeps the latest {@code capacity} of them, with no
+ * allocation or formatting on the way in: fields are plain references and longs. Reading
+ * the ring copies out whatever slots are not being written at that moment.
+ * <p>
+ * Writers claim a sequence number, then the slot it maps to by CAS; a writer that finds
+ * its slot busy, or already holding a newer event (the ring lapped it), drops its event
+ * and counts the drop rather than wait.
+ */
+public final class HotPathLog<E extends Enum<E>> {
+
+    private static final long WRITING = -1;
+
+    private final Slot<E>[] slots;
+    private final int mask;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final AtomicLong[] counts;
+    private final LongAdder dropped = new LongAdder();
+    private final Class<E> eventType;
+
+    @SuppressWarnings("unchecked")
+    public HotPathLog(Class<E> eventType, int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two");
+        }
+        this.eventType = eventType;
+        this.slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot<>();
+        }
+        this.mask = capacity - 1;
+        this.counts = new AtomicLong[eventType.getEnumConstants().length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new AtomicLong();
+        }
+    }
+
+    /**
+     * Count an event and keep it in the ring.
+     * @return how many events of this kind have been recorded, including this one, for sampling
+     */
+    public long record(E event, String roomId, String subject, long value, String detail) {
+        long count = counts[event.ordinal()].incrementAndGet();
+        long sequence = nextSequence.getAndIncrement();
+        Slot<E> slot = slots[(int) (sequence & mask)];
+
+        long previous = slot.sequence.get();
+        if (previous == WRITING || previous > sequence || !slot.sequence.compareAndSet(previous, WRITING)) {
+            dropped.increment();
+            return count;
+        }
+        slot.timeMillis = System.currentTimeMillis();
+        slot.event = event;
+        slot.roomId = roomId;
+        slot.subject = subject;
+        slot.value = value;
+        slot.detail = detail;
+        slot.sequence.set(sequence);
+        return count;
+    }
+
+    /**
+     * The most recent events still in the ring, newest first.
+     */
+    public List<Entry<E>> snapshot(int limit) {
+        List<Entry<E>> entries = new ArrayList<>(slots.length);
+        for (Slot<E> slot : slots) {
+            long before = slot.sequence.get();
+            if (before < 0 || slot.event == null) {
+                continue;
+            }
+            Entry<E> entry = new Entry<>(before, slot.timeMillis, slot.event, slot.roomId, slot.subject,
+                    slot.value, slot.detail);
+            // Seqlock read: keep the copy only if no writer touched the slot meanwhile
+            VarHandle.loadLoadFence();
+            if (slot.sequence.get() == before) {
+                entries.add(entry);
+            }
+        }
+        entries.sort(Comparator.comparingLong((Entry<E> entry) -> entry.sequence).reversed());
+        return entries.size() > limit ? new ArrayList<>(entries.subList(0, limit)) : entries;
+    }
+
+    public Map<E, Long> counts() {
+        Map<E, Long> result = new EnumMap<>(eventType);
+        for (E event : eventType.getEnumConstants()) {
+            result.put(event, counts[event.ordinal()].get());
+        }
+        return result;
+    }
+
+    /**
+     * Events counted but not kept because their slot was contended.
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    private static final class Slot<E> {
+
+        // The sequence number of the event in the slot, or WRITING while one is being written
+        private final AtomicLong sequence = new AtomicLong(Long.MIN_VALUE);
+        private long timeMillis;
+        private E event;
+        private String roomId;
+        private String subject;
+        private long value;
+        private String detail;
+    }
+
+    public static final class Entry<E> {
+
+        private final long sequence;
+        private final long timeMillis;
+        private final E event;
+        private final String roomId;
+        private final String subject;
+        private final long value;
+        private final String detail;
+
+        Entry(long sequence, long timeMillis, E event, String roomId, String subject, long value, String detail) {
+            this.sequence = sequence;
+            this.timeMillis = timeMillis;
+            this.event = event;
+            this.roomId = roomId;
+            this.subject = subject;
+            this.value = value;
+            this.detail = detail;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        public E getEvent() {
+            return event;
+        }
+
+        public String getRoomId() {
+            return roomId;
+        }
+
+        public String getSubject() {
+            return subject;
+        }
+
+        public long getValue() {
+            return value;
+        }
+
+        public String getDetail() {
+            return detail;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.demo.util;
+
+/**
+ * Open-addressing hash set of non-zero longs backed by a single {@code long[]}:
+ * 8 bytes per slot instead of a boxed entry per element. Not thread-safe.
+ */
+public final class LongHashSet {
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    // 0 marks an empty slot, which is why 0 cannot be stored
+    private long[] slots;
+    private int size;
+    private int resizeAt;
+
+    public LongHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    public boolean add(long value) {
+        checkValue(value);
+        int index = indexOf(slots, value);
+        if (slots[index] == value) {
+            return false;
+        }
+        slots[index] = value;
+        if (++size >= resizeAt) {
+            rehash(slots.length << 1);
+        }
+        return true;
+    }
+
+    public boolean contains(long value) {
+        checkValue(value);
+        return slots[indexOf(slots, value)] == value;
+    }
+
+    public boolean remove(long value) {
+        checkValue(value);
+        int index = indexOf(slots, value);
+        if (slots[index] != value) {
+            return false;
+        }
+        slots[index] = 0;
+        size--;
+
+        // Backward-shift the rest of the probe run so lookups never stop at the hole early
+        int mask = slots.length - 1;
+        int hole = index;
+        int next = (index + 1) & mask;
+        while (slots[next] != 0) {
+            int home = mix(slots[next]) & mask;
+            boolean canMove = hole <= next ? (home <= hole || home > next) : (home <= hole && home > next);
+            if (canMove) {
+                slots[hole] = slots[next];
+                slots[next] = 0;
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void allocate(int capacity) {
+        slots = new long[capacity];
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void rehash(int capacity) {
+        long[] old = slots;
+        allocate(capacity);
+        for (long value : old) {
+            if (value != 0) {
+                slots[indexOf(slots, value)] = value;
+            }
+        }
+    }
+
+    // Slot holding the value, or the empty slot where it would go
+    private static int indexOf(long[] table, long value) {
+        int mask = table.length - 1;
+        int index = mix(value) & mask;
+        while (table[index] != 0 && table[index] != value) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private static int mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static void checkValue(long value) {
+        if (value == 0) {
+            throw new IllegalArgumentException("0 cannot be stored in a LongHashSet");
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.demo.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Java Flight Recorder events for the room message path, so a recording shows where a
+ * slow message spent its time: parsing, persisting or fanning out. Each event is timed
+ * between {@code begin()} and its {@code finish} method, which only fills in the fields
+ * when the event is going to be recorded. Without a recording in progress an event is
+ * a disabled no-op.
+ */
+public final class RealtimeEvents {
+
+    private static final String CATEGORY = "CollabEdge";
+
+    /** Every event type here, for enabling them on a recording. */
+    public static final List<Class<? extends Event>> TYPES = List.of(
+            MessageReceived.class, MessageParsed.class, DocumentPersisted.class, RoomBroadcast.class, SessionSend.class);
+
+    private RealtimeEvents() {
+    }
+
+    @Name("collabedge.MessageReceived")
+    @Label("Message Received")
+    @Description("A WebSocket frame handled from arrival to the end of its fan-out")
+    @Category({CATEGORY, "WebSocket"})
+    @StackTrace(false)
+    public static final class MessageReceived extends Event {
+
+        @Label("Room")
+        String roomId;
+
+        @Label("Message Type")
+        String messageType;
+
+        @Label("Payload Size")
+        @DataAmount
+        long payloadBytes;
+
+        public void finish(String roomId, String messageType, long payloadBytes) {
+            end();
+            if (shouldCommit()) {
+                this.roomId = roomId;
+                this.messageType = messageType;
+                this.payloadBytes = payloadBytes;
+                commit();
+            }
+        }
+    }
+
+    @Name("collabedge.MessageParsed")
+    @Label("Message Parsed")
+    @Description("JSON parsing of an inbound WebSocket frame")
+    @Category({CATEGORY, "WebSocket"})
+    @StackTrace(false)
+    public static final class MessageParsed extends Event {
+
+        @Label("Room")
+        String roomId;
+
+        @Label("Payload Size")
+        @DataAmount
+        long payloadBytes;
+
+        public void finish(String roomId, long payloadBytes) {
+            end();
+            if (shouldCommit()) {
+                this.roomId = roomId;
+                this.payloadBytes = payloadBytes;
+                commit();
+            }
+        }
+    }
+
+    @Name("collabedge.DocumentPersisted")
+    @Label("Document Persisted")
+    @Description("A document update applied through DocumentService, excluding the commit")
+    @Category({CATEGORY, "Documents"})
+    @StackTrace(false)
+    public static final class DocumentPersisted extends Event {
+
+        @Label("Document")
+        String documentId;
+
+        @Label("Document Type")
+        String documentType;
+
+        @Label("Content Length")
+        @Description("Chars of text content in the update, 0 for binary or rename-only updates")
+        long contentChars;
+
+        public void finish(UUID documentId, Enum<?> documentType, long contentChars) {
+            end();
+            if (shouldCommit()) {
+                this.documentId = documentId.toString();
+                this.documentType = documentType != null ? documentType.name() : null;
+                this.contentChars = contentChars;
+                commit();
+            }
+        }
+    }
+
+    @Name("collabedge.RoomBroadcast")
+    @Label("Room Broadcast")
+    @Description("Fan-out of one message to the sessions of a room")
+    @Category({CATEGORY, "WebSocket"})
+    @StackTrace(false)
+    public static final class RoomBroadcast extends Event {
+
+        @Label("Room")
+        String roomId;
+
+        @Label("Message Type")
+        String messageType;
+
+        @Label("Payload Size")
+        @DataAmount
+        long payloadBytes;
+
+        @Label("Recipients")
+        int recipients;
+
+        public void finish(String roomId, String messageType, long payloadBytes, int recipients) {
+            end();
+            if (shouldCommit()) {
+                this.roomId = roomId;
+                this.messageType = messageType;
+                this.payloadBytes = payloadBytes;
+                this.recipients = recipients;
+                commit();
+            }
+        }
+    }
+
+    // Thresholded: a recording would otherwise hold one event per recipient of every broadcast
+    @Name("collabedge.SessionSend")
+    @Label("Slow Session Send")
+    @Description("A write to one WebSocket session that blocked for longer than the threshold")
+    @Category({CATEGORY, "WebSocket"})
+    @Threshold("5 ms")
+    public static final class SessionSend extends Event {
+
+        @Label("Room")
+        String roomId;
+
+        @Label("Session")
+        String sessionId;
+
+        @Label("Payload Size")
+        @DataAmount
+        long payloadBytes;
+
+        public void finish(String roomId, String sessionId, long payloadBytes) {
+            end();
+            if (shouldCommit()) {
+                this.roomId = roomId;
+                this.sessionId = sessionId;
+                this.payloadBytes = payloadBytes;
+                commit();
+            }
+        }
+    }
+}
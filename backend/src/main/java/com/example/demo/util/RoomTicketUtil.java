@@ -0,0 +1,109 @@
+package com.example.demo.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Short-lived HMAC-signed tickets proving a password-protected room was already joined.
+ * A ticket is {@code base64url(roomId|subject|expiry) "." base64url(hmac)}, where the
+ * subject is the user id or {@code guest}. Checking one costs a single HMAC, so repeat
+ * joins and WebSocket handshakes skip BCrypt.
+ */
+@Component
+public class RoomTicketUtil {
+
+    private static final String GUEST_SUBJECT = "guest";
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    @Value("${room-tickets.secret:${jwt.secret}}")
+    private String ticketSecret;
+
+    @Value("${room-tickets.ttl-seconds:3600}")
+    private long ttlSeconds;
+
+    private SecretKeySpec signingKey;
+
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::newMac);
+
+    @PostConstruct
+    void init() {
+        // Derive a dedicated key so tickets can never be confused with JWT signatures
+        try {
+            Mac derive = Mac.getInstance(HMAC_ALGORITHM);
+            derive.init(new SecretKeySpec(ticketSecret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM));
+            signingKey = new SecretKeySpec(derive.doFinal("room-ticket-v1".getBytes(StandardCharsets.UTF_8)),
+                    HMAC_ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialise room ticket key", e);
+        }
+    }
+
+    public String issue(UUID roomId, UUID userId) {
+        long expiresAt = Instant.now().getEpochSecond() + ttlSeconds;
+        String subject = userId != null ? userId.toString() : GUEST_SUBJECT;
+        byte[] payload = (roomId + "|" + subject + "|" + expiresAt).getBytes(StandardCharsets.UTF_8);
+
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(payload) + "." + encoder.encodeToString(macs.get().doFinal(payload));
+    }
+
+    /**
+     * Whether the ticket was issued by us for this room, has not expired, and belongs to
+     * this user. Guest tickets are accepted from anyone who holds them, like the password.
+     */
+    public boolean verify(String ticket, UUID roomId, UUID userId) {
+        if (ticket == null || roomId == null) {
+            return false;
+        }
+        int dot = ticket.indexOf('.');
+        if (dot <= 0) {
+            return false;
+        }
+
+        byte[] payload;
+        byte[] signature;
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            payload = decoder.decode(ticket.substring(0, dot));
+            signature = decoder.decode(ticket.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        if (!MessageDigest.isEqual(macs.get().doFinal(payload), signature)) {
+            return false;
+        }
+
+        String[] parts = new String(payload, StandardCharsets.UTF_8).split("\\|");
+        if (parts.length != 3 || !roomId.toString().equals(parts[0])) {
+            return false;
+        }
+        if (!GUEST_SUBJECT.equals(parts[1]) && (userId == null || !userId.toString().equals(parts[1]))) {
+            return false;
+        }
+        try {
+            return Instant.now().getEpochSecond() < Long.parseLong(parts[2]);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(signingKey);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialise room ticket MAC", e);
+        }
+    }
+}
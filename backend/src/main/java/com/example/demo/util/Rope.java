@@ -0,0 +1,361 @@
+package com.example.demo.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Immutable text buffer for server-side document state: a height-balanced (AVL) binary
+ * tree whose leaves hold runs of at most {@value #MAX_LEAF} chars. Edits return a new
+ * rope sharing every untouched subtree with the old one, so inserts and deletes cost
+ * O(log n) instead of copying the text, and any version can be handed to another
+ * thread (a snapshot, a broadcast, a streamed response) without copying or locking.
+ * <p>
+ * Each node also counts the newlines below it, which gives O(log n) conversion between
+ * line numbers and offsets. Offsets are UTF-16 indices, as in {@link String}.
+ */
+public final class Rope {
+
+    static final int MAX_LEAF = 1024;
+
+    private static final Node EMPTY_LEAF = new Node("");
+    private static final Rope EMPTY = new Rope(EMPTY_LEAF);
+
+    private final Node root;
+
+    private Rope(Node root) {
+        this.root = root;
+    }
+
+    public static Rope empty() {
+        return EMPTY;
+    }
+
+    public static Rope of(String text) {
+        if (text == null || text.isEmpty()) {
+            return EMPTY;
+        }
+        int leaves = (text.length() + MAX_LEAF - 1) / MAX_LEAF;
+        return new Rope(build(text, 0, leaves));
+    }
+
+    public int length() {
+        return root.length;
+    }
+
+    public boolean isEmpty() {
+        return root.length == 0;
+    }
+
+    public int lineCount() {
+        return root.newlines + 1;
+    }
+
+    public char charAt(int index) {
+        checkIndex(index, root.length);
+        Node node = root;
+        while (node.text == null) {
+            if (index < node.left.length) {
+                node = node.left;
+            } else {
+                index -= node.left.length;
+                node = node.right;
+            }
+        }
+        return node.text.charAt(index);
+    }
+
+    public Rope insert(int position, String text) {
+        return splice(position, 0, text);
+    }
+
+    public Rope delete(int position, int count) {
+        return splice(position, count, "");
+    }
+
+    /**
+     * Delete {@code deleteCount} chars at {@code position}, then insert {@code text} there.
+     */
+    public Rope splice(int position, int deleteCount, String text) {
+        if (position < 0 || deleteCount < 0 || position + deleteCount > root.length) {
+            throw new IndexOutOfBoundsException("Splice at " + position + "+" + deleteCount
+                    + " does not fit rope of length " + root.length);
+        }
+        Node[] head = split(root, position);
+        Node[] tail = split(head[1], deleteCount);
+        Node middle = text == null || text.isEmpty() ? EMPTY_LEAF : of(text).root;
+        return new Rope(join(join(head[0], middle), tail[1]));
+    }
+
+    public String substring(int start, int end) {
+        if (start < 0 || end > root.length || start > end) {
+            throw new IndexOutOfBoundsException("Range " + start + ".." + end + " of rope of length " + root.length);
+        }
+        StringBuilder out = new StringBuilder(end - start);
+        appendRange(root, start, end, out);
+        return out.toString();
+    }
+
+    /**
+     * Offset of the first char of a zero-based line.
+     */
+    public int lineStartOffset(int line) {
+        if (line < 0 || line > root.newlines) {
+            throw new IndexOutOfBoundsException("Line " + line + " of " + lineCount());
+        }
+        if (line == 0) {
+            return 0;
+        }
+        // Find the line-th newline; the line starts right after it
+        int remaining = line;
+        int offset = 0;
+        Node node = root;
+        while (node.text == null) {
+            if (remaining <= node.left.newlines) {
+                node = node.left;
+            } else {
+                remaining -= node.left.newlines;
+                offset += node.left.length;
+                node = node.right;
+            }
+        }
+        int index = -1;
+        for (int i = 0; i < remaining; i++) {
+            index = node.text.indexOf('\n', index + 1);
+        }
+        return offset + index + 1;
+    }
+
+    /**
+     * Zero-based line containing the char at {@code offset}; {@code length()} maps to the last line.
+     */
+    public int lineOfOffset(int offset) {
+        checkIndex(offset, root.length + 1);
+        int line = 0;
+        Node node = root;
+        while (node.text == null) {
+            if (offset < node.left.length) {
+                node = node.left;
+            } else {
+                offset -= node.left.length;
+                line += node.left.newlines;
+                node = node.right;
+            }
+        }
+        for (int i = 0; i < offset; i++) {
+            if (node.text.charAt(i) == '\n') {
+                line++;
+            }
+        }
+        return line;
+    }
+
+    /**
+     * Number of leading chars this rope has in common with {@code other}.
+     */
+    public int commonPrefixLength(CharSequence other) {
+        int matched = 0;
+        int max = Math.min(root.length, other.length());
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty() && matched < max) {
+            Node node = stack.pop();
+            if (node.text == null) {
+                stack.push(node.right);
+                stack.push(node.left);
+                continue;
+            }
+            String text = node.text;
+            int limit = Math.min(text.length(), max - matched);
+            for (int i = 0; i < limit; i++) {
+                if (text.charAt(i) != other.charAt(matched)) {
+                    return matched;
+                }
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Number of trailing chars this rope has in common with {@code other}, up to {@code limit}.
+     */
+    public int commonSuffixLength(CharSequence other, int limit) {
+        int matched = 0;
+        int max = Math.min(limit, Math.min(root.length, other.length()));
+        int otherEnd = other.length() - 1;
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty() && matched < max) {
+            Node node = stack.pop();
+            if (node.text == null) {
+                stack.push(node.left);
+                stack.push(node.right);
+                continue;
+            }
+            String text = node.text;
+            for (int i = text.length() - 1; i >= 0 && matched < max; i--) {
+                if (text.charAt(i) != other.charAt(otherEnd - matched)) {
+                    return matched;
+                }
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Write the text leaf by leaf, without materializing it as one string.
+     */
+    public void writeTo(Writer writer) throws IOException {
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            if (node.text == null) {
+                stack.push(node.right);
+                stack.push(node.left);
+            } else {
+                writer.write(node.text);
+            }
+        }
+    }
+
+    // Height of the tree, for tests of the balance invariant
+    int height() {
+        return root.height;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder(root.length);
+        appendRange(root, 0, root.length, out);
+        return out.toString();
+    }
+
+    private static void checkIndex(int index, int length) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " of rope of length " + length);
+        }
+    }
+
+    private static Node build(String text, int firstLeaf, int endLeaf) {
+        if (endLeaf - firstLeaf == 1) {
+            int start = firstLeaf * MAX_LEAF;
+            return new Node(text.substring(start, Math.min(text.length(), start + MAX_LEAF)));
+        }
+        int middle = (firstLeaf + endLeaf) >>> 1;
+        return new Node(build(text, firstLeaf, middle), build(text, middle, endLeaf));
+    }
+
+    private static void appendRange(Node node, int start, int end, StringBuilder out) {
+        if (start >= end) {
+            return;
+        }
+        if (node.text != null) {
+            out.append(node.text, start, end);
+            return;
+        }
+        int leftLength = node.left.length;
+        if (start < leftLength) {
+            appendRange(node.left, start, Math.min(end, leftLength), out);
+        }
+        if (end > leftLength) {
+            appendRange(node.right, Math.max(0, start - leftLength), end - leftLength, out);
+        }
+    }
+
+    private static Node[] split(Node node, int position) {
+        if (position <= 0) {
+            return new Node[] {EMPTY_LEAF, node};
+        }
+        if (position >= node.length) {
+            return new Node[] {node, EMPTY_LEAF};
+        }
+        if (node.text != null) {
+            return new Node[] {new Node(node.text.substring(0, position)), new Node(node.text.substring(position))};
+        }
+        int leftLength = node.left.length;
+        if (position == leftLength) {
+            return new Node[] {node.left, node.right};
+        }
+        if (position < leftLength) {
+            Node[] parts = split(node.left, position);
+            return new Node[] {parts[0], join(parts[1], node.right)};
+        }
+        Node[] parts = split(node.right, position - leftLength);
+        return new Node[] {join(node.left, parts[0]), parts[1]};
+    }
+
+    // Concatenation that keeps the tree balanced, descending the taller side until heights are close
+    private static Node join(Node left, Node right) {
+        if (left.length == 0) {
+            return right;
+        }
+        if (right.length == 0) {
+            return left;
+        }
+        if (left.text != null && right.text != null && left.length + right.length <= MAX_LEAF) {
+            return new Node(left.text + right.text);
+        }
+        if (left.height > right.height + 1) {
+            return balance(left.left, join(left.right, right));
+        }
+        if (right.height > left.height + 1) {
+            return balance(join(left, right.left), right.right);
+        }
+        return new Node(left, right);
+    }
+
+    private static Node balance(Node left, Node right) {
+        if (left.height > right.height + 1) {
+            if (left.left.height >= left.right.height) {
+                return new Node(left.left, new Node(left.right, right));
+            }
+            return new Node(new Node(left.left, left.right.left), new Node(left.right.right, right));
+        }
+        if (right.height > left.height + 1) {
+            if (right.right.height >= right.left.height) {
+                return new Node(new Node(left, right.left), right.right);
+            }
+            return new Node(new Node(left, right.left.left), new Node(right.left.right, right.right));
+        }
+        return new Node(left, right);
+    }
+
+    private static final class Node {
+
+        // Set for leaves only
+        private final String text;
+        private final Node left;
+        private final Node right;
+        private final int length;
+        private final int newlines;
+        private final int height;
+
+        Node(String text) {
+            this.text = text;
+            this.left = null;
+            this.right = null;
+            this.length = text.length();
+            int count = 0;
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) == '\n') {
+                    count++;
+                }
+            }
+            this.newlines = count;
+            this.height = 0;
+        }
+
+        Node(Node left, Node right) {
+            this.text = null;
+            this.left = left;
+            this.right = right;
+            this.length = left.length + right.length;
+            this.newlines = left.newlines + right.newlines;
+            this.height = Math.max(left.height, right.height) + 1;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.demo.util;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Approximate heaviest keys over a sliding time window: a ring of {@link SpaceSaving}
+ * summaries, one per time bucket, merged on read. Memory is bounded by
+ * {@code buckets * capacity} entries. The window moves a bucket at a time, so it covers
+ * between {@code window - window / buckets} and {@code window} of history.
+ */
+public final class SlidingTopK<K> {
+
+    private final int capacity;
+    private final long bucketMillis;
+    private final SpaceSaving<K>[] buckets;
+    private final long[] bucketEpochs;
+
+    @SuppressWarnings("unchecked")
+    public SlidingTopK(int capacity, Duration window, int buckets) {
+        if (buckets <= 0 || window.toMillis() < buckets) {
+            throw new IllegalArgumentException("Window must hold at least one millisecond per bucket");
+        }
+        this.capacity = capacity;
+        this.bucketMillis = window.toMillis() / buckets;
+        this.buckets = new SpaceSaving[buckets];
+        this.bucketEpochs = new long[buckets];
+        Arrays.fill(bucketEpochs, -1);
+    }
+
+    public synchronized void add(K key, long weight, long nowMillis) {
+        long epoch = nowMillis / bucketMillis;
+        int index = (int) (epoch % buckets.length);
+        if (bucketEpochs[index] != epoch) {
+            // This slot last held a bucket that has slid out of the window
+            buckets[index] = new SpaceSaving<>(capacity);
+            bucketEpochs[index] = epoch;
+        }
+        buckets[index].add(key, weight);
+    }
+
+    /**
+     * The window's buckets merged into one summary.
+     */
+    public synchronized SpaceSaving<K> snapshot(long nowMillis) {
+        long epoch = nowMillis / bucketMillis;
+        SpaceSaving<K> merged = new SpaceSaving<>(capacity);
+        for (int i = 0; i < buckets.length; i++) {
+            if (buckets[i] != null && bucketEpochs[i] > epoch - buckets.length) {
+                merged.addAll(buckets[i]);
+            }
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.demo.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Weighted Space-Saving summary: approximate top-k heaviest keys of a stream in memory
+ * fixed by {@code capacity}, however many distinct keys the stream has. When a new key
+ * arrives and the summary is full, it takes over the lightest entry's slot and inherits
+ * its count as the error bound. Counts therefore overestimate by at most {@link Entry#getError},
+ * and any key heavier than total weight / capacity is guaranteed to be tracked.
+ * <p>
+ * Entries sit in a binary min-heap by count, so adds are O(log capacity). Not thread-safe.
+ */
+public final class SpaceSaving<K> {
+
+    private final int capacity;
+    private final Map<K, Slot<K>> slots;
+    private final Slot<K>[] heap;
+    private int size;
+    private long total;
+
+    @SuppressWarnings("unchecked")
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.slots = new HashMap<>(capacity * 2);
+        this.heap = new Slot[capacity];
+    }
+
+    public void add(K key, long weight) {
+        add(key, weight, 0);
+    }
+
+    /**
+     * Fold another summary into this one, as when combining time buckets. Error bounds
+     * add up, so the result is as conservative as its inputs.
+     */
+    public void addAll(SpaceSaving<K> other) {
+        for (int i = 0; i < other.size; i++) {
+            Slot<K> slot = other.heap[i];
+            add(slot.key, slot.count, slot.error);
+        }
+    }
+
+    /**
+     * Total weight added, including weight of keys no longer tracked.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * The heaviest {@code k} entries, heaviest first.
+     */
+    public List<Entry<K>> top(int k) {
+        Slot<K>[] sorted = Arrays.copyOf(heap, size);
+        Arrays.sort(sorted, Comparator.comparingLong((Slot<K> slot) -> slot.count).reversed());
+        List<Entry<K>> entries = new ArrayList<>(Math.min(k, size));
+        for (int i = 0; i < Math.min(k, size); i++) {
+            entries.add(new Entry<>(sorted[i].key, sorted[i].count, sorted[i].error));
+        }
+        return entries;
+    }
+
+    private void add(K key, long weight, long error) {
+        if (weight <= 0) {
+            return;
+        }
+        total += weight;
+        Slot<K> slot = slots.get(key);
+        if (slot != null) {
+            slot.count += weight;
+            slot.error += error;
+            siftDown(slot.index);
+            return;
+        }
+        if (size < capacity) {
+            slot = new Slot<>(key, weight, error);
+            slot.index = size;
+            heap[size++] = slot;
+            slots.put(key, slot);
+            siftUp(slot.index);
+            return;
+        }
+        // Evict the lightest key; the newcomer may have been it all along, up to its count
+        Slot<K> lightest = heap[0];
+        slots.remove(lightest.key);
+        lightest.error = lightest.count + error;
+        lightest.count += weight;
+        lightest.key = key;
+        slots.put(key, lightest);
+        siftDown(0);
+    }
+
+    private void siftUp(int index) {
+        Slot<K> slot = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent].count <= slot.count) {
+                break;
+            }
+            place(heap[parent], index);
+            index = parent;
+        }
+        place(slot, index);
+    }
+
+    private void siftDown(int index) {
+        Slot<K> slot = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                child++;
+            }
+            if (slot.count <= heap[child].count) {
+                break;
+            }
+            place(heap[child], index);
+            index = child;
+        }
+        place(slot, index);
+    }
+
+    private void place(Slot<K> slot, int index) {
+        heap[index] = slot;
+        slot.index = index;
+    }
+
+    private static final class Slot<K> {
+
+        private K key;
+        private long count;
+        private long error;
+        private int index;
+
+        Slot(K key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    public static final class Entry<K> {
+
+        private final K key;
+        private final long count;
+        private final long error;
+
+        Entry(K key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        /** Estimated weight; the true weight is between {@code count - error} and {@code count}. */
+        public long getCount() {
+            return count;
+        }
+
+        public long getError() {
+            return error;
+        }
+    }
+}
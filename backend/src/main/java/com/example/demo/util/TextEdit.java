@@ -0,0 +1,90 @@
+package com.example.demo.util;
+
+/**
+ * A single splice on a text: delete {@code deleteCount} chars at {@code position}, then
+ * insert {@code insertText} there. Positions are UTF-16 indices, as in {@link String}.
+ */
+public final class TextEdit {
+
+    private final int position;
+    private final int deleteCount;
+    private final String insertText;
+
+    public TextEdit(int position, int deleteCount, String insertText) {
+        this.position = position;
+        this.deleteCount = deleteCount;
+        this.insertText = insertText != null ? insertText : "";
+    }
+
+    /**
+     * The smallest single splice turning {@code before} into {@code after}: everything
+     * between their common prefix and common suffix. Null if the texts are equal.
+     */
+    public static TextEdit between(String before, String after) {
+        String a = before != null ? before : "";
+        String b = after != null ? after : "";
+        if (a.equals(b)) {
+            return null;
+        }
+
+        int max = Math.min(a.length(), b.length());
+        int prefix = 0;
+        while (prefix < max && a.charAt(prefix) == b.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix
+                && a.charAt(a.length() - 1 - suffix) == b.charAt(b.length() - 1 - suffix)) {
+            suffix++;
+        }
+        return new TextEdit(prefix, a.length() - prefix - suffix, b.substring(prefix, b.length() - suffix));
+    }
+
+    /**
+     * As {@link #between(String, String)}, comparing against a rope leaf by leaf.
+     */
+    public static TextEdit between(Rope before, String after) {
+        String b = after != null ? after : "";
+        int prefix = before.commonPrefixLength(b);
+        if (prefix == before.length() && prefix == b.length()) {
+            return null;
+        }
+        int suffix = before.commonSuffixLength(b, Math.min(before.length(), b.length()) - prefix);
+        return new TextEdit(prefix, before.length() - prefix - suffix, b.substring(prefix, b.length() - suffix));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the edit does not fit the text
+     */
+    public String applyTo(String text) {
+        String base = text != null ? text : "";
+        if (position < 0 || deleteCount < 0 || position + deleteCount > base.length()) {
+            throw new IllegalArgumentException("Edit at " + position + "+" + deleteCount
+                    + " does not fit text of length " + base.length());
+        }
+        return base.substring(0, position) + insertText + base.substring(position + deleteCount);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the edit does not fit the text
+     */
+    public Rope applyTo(Rope text) {
+        if (position < 0 || deleteCount < 0 || position + deleteCount > text.length()) {
+            throw new IllegalArgumentException("Edit at " + position + "+" + deleteCount
+                    + " does not fit text of length " + text.length());
+        }
+        return text.splice(position, deleteCount, insertText);
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public int getDeleteCount() {
+        return deleteCount;
+    }
+
+    public String getInsertText() {
+        return insertText;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.demo.util;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Immutable view of the claims of a JWT whose signature has already been checked.
+ * Safe to share between threads and to keep in the verified-token cache.
+ */
+public final class VerifiedJwt {
+
+    private final UUID userId;
+    private final String username;
+    private final String email;
+    private final Instant expiresAt;
+
+    public VerifiedJwt(UUID userId, String username, String email, Instant expiresAt) {
+        this.userId = userId;
+        this.username = username;
+        this.email = email;
+        this.expiresAt = expiresAt;
+    }
+
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public boolean isExpired(Instant now) {
+        return expiresAt != null && !expiresAt.isAfter(now);
+    }
+}
@@ -0,0 +1,307 @@
+package com.example.demo.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of opaque records in numbered segment files under one directory.
+ * <p>
+ * Each record is framed as {@code [length][crc32][payload]}; a torn or corrupt frame
+ * at the end of a segment (a crash mid-write) ends recovery of that segment. A write
+ * that fails part-way is cut back off the segment, or if that fails too, the log moves
+ * on to a new segment so later records never sit behind the torn frame. Appends
+ * land in the OS page cache, which survives a JVM crash; how they reach the disk
+ * depends on the {@link FsyncPolicy}. With {@code ALWAYS}, concurrent appenders share
+ * fsyncs: whoever gets to sync first forces everything written so far, and the others
+ * find their records already covered.
+ * <p>
+ * Segments are truncated by rolling to a new one and deleting the old ones once the
+ * caller has persisted their contents elsewhere.
+ */
+public class WriteAheadLog implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    public enum FsyncPolicy {
+        /** fsync before {@link #sync} returns, grouped across concurrent appenders */
+        ALWAYS,
+        /** fsync in the background at a fixed interval */
+        INTERVAL,
+        /** leave it to the OS */
+        NEVER
+    }
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER_BYTES = 8;
+
+    private final Path directory;
+    private final FsyncPolicy policy;
+    private final int maxRecordBytes;
+    private final ScheduledExecutorService syncer;
+
+    // Lock order: syncLock before writeLock
+    private final Object syncLock = new Object();
+    private final Object writeLock = new Object();
+
+    private FileChannel channel;
+    private long segmentId;
+    // Bytes appended over the life of this instance, across segments
+    private long written;
+    private long synced;
+
+    public WriteAheadLog(Path directory, FsyncPolicy policy, long syncIntervalMs, int maxRecordBytes) throws IOException {
+        this.directory = directory;
+        this.policy = policy;
+        this.maxRecordBytes = maxRecordBytes;
+        Files.createDirectories(directory);
+
+        long lastSegment = 0;
+        for (long id : segmentIds()) {
+            lastSegment = Math.max(lastSegment, id);
+        }
+        openSegment(lastSegment + 1);
+
+        if (policy == FsyncPolicy.INTERVAL) {
+            syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "wal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncer.scheduleWithFixedDelay(() -> {
+                try {
+                    syncAll();
+                } catch (IOException e) {
+                    // Retried on the next tick
+                    logger.error("Could not sync the write-ahead log in {}: {}", directory, e.getMessage());
+                }
+            }, syncIntervalMs, syncIntervalMs, TimeUnit.MILLISECONDS);
+        } else {
+            syncer = null;
+        }
+    }
+
+    /**
+     * Append one record.
+     * @return a position to pass to {@link #sync} once the caller needs the record to be durable
+     */
+    public long append(byte[] payload) throws IOException {
+        if (payload.length > maxRecordBytes) {
+            throw new IllegalArgumentException("WAL record of " + payload.length + " bytes exceeds " + maxRecordBytes);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        frame.putInt(payload.length);
+        frame.putInt((int) crc.getValue());
+        frame.put(payload);
+        frame.flip();
+
+        synchronized (writeLock) {
+            if (!channel.isOpen()) {
+                // Left closed by a failed write that could not open the next segment
+                openSegment(segmentId + 1);
+            }
+            long start = channel.position();
+            try {
+                while (frame.hasRemaining()) {
+                    channel.write(frame);
+                }
+            } catch (IOException e) {
+                discardPartialWrite(start);
+                throw e;
+            }
+            written += frame.limit();
+            return written;
+        }
+    }
+
+    /**
+     * Wait until everything up to {@code position} is as durable as the policy promises.
+     */
+    public void sync(long position) throws IOException {
+        if (policy != FsyncPolicy.ALWAYS) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (synced >= position) {
+                // Another appender's fsync already covered this record
+                return;
+            }
+            forceLocked();
+        }
+    }
+
+    /**
+     * Start a new segment; records appended from now on go there.
+     * @return the new segment's id, for {@link #deleteSegmentsBefore}
+     */
+    public long roll() throws IOException {
+        synchronized (syncLock) {
+            synchronized (writeLock) {
+                if (channel.position() == 0) {
+                    return segmentId;
+                }
+                channel.force(false);
+                synced = written;
+                channel.close();
+                openSegment(segmentId + 1);
+                return segmentId;
+            }
+        }
+    }
+
+    /**
+     * Drop segments older than {@code segmentId} whose records are persisted elsewhere.
+     */
+    public void deleteSegmentsBefore(long segmentId) throws IOException {
+        for (long id : segmentIds()) {
+            if (id < segmentId) {
+                Files.deleteIfExists(segmentPath(id));
+            }
+        }
+    }
+
+    /**
+     * Records left by earlier runs, oldest first. Call before truncating with
+     * {@link #deleteSegmentsBefore} using {@link #currentSegment}.
+     */
+    public List<byte[]> recover() throws IOException {
+        List<byte[]> records = new ArrayList<>();
+        long current = currentSegment();
+        List<Long> ids = segmentIds();
+        ids.sort(null);
+        for (long id : ids) {
+            if (id >= current) {
+                continue;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segmentPath(id)));
+            while (buffer.remaining() >= HEADER_BYTES) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length < 0 || length > maxRecordBytes || length > buffer.remaining()) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                records.add(payload);
+            }
+        }
+        return records;
+    }
+
+    public long currentSegment() {
+        synchronized (writeLock) {
+            return segmentId;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (syncer != null) {
+            syncer.shutdownNow();
+        }
+        synchronized (syncLock) {
+            synchronized (writeLock) {
+                if (policy != FsyncPolicy.NEVER) {
+                    channel.force(false);
+                }
+                channel.close();
+            }
+        }
+    }
+
+    private void syncAll() throws IOException {
+        synchronized (syncLock) {
+            forceLocked();
+        }
+    }
+
+    // Caller holds syncLock, so no roll can close the channel underneath
+    private void forceLocked() throws IOException {
+        long target;
+        FileChannel current;
+        synchronized (writeLock) {
+            target = written;
+            current = channel;
+        }
+        if (synced >= target) {
+            return;
+        }
+        current.force(false);
+        synced = target;
+    }
+
+    // Caller holds writeLock
+    private void discardPartialWrite(long start) {
+        try {
+            channel.truncate(start);
+            channel.position(start);
+        } catch (IOException e) {
+            // Leave the torn frame at the end of this segment; recovery stops there
+            logger.error("Could not cut a failed write off WAL segment {}, moving to a new one: {}", segmentId, e.getMessage());
+            try {
+                // Records before the torn frame still count towards syncs already promised
+                channel.force(false);
+            } catch (IOException forceFailed) {
+                logger.error("Could not sync WAL segment {} before leaving it: {}", segmentId, forceFailed.getMessage());
+            }
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Already failing
+            }
+            try {
+                openSegment(segmentId + 1);
+            } catch (IOException openFailed) {
+                // The next append tries again
+                logger.error("Could not open WAL segment {}: {}", segmentId + 1, openFailed.getMessage());
+            }
+        }
+    }
+
+    private void openSegment(long id) throws IOException {
+        channel = FileChannel.open(segmentPath(id),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        segmentId = id;
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    private List<Long> segmentIds() throws IOException {
+        List<Long> ids = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                try {
+                    ids.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // Not one of ours
+                }
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.demo.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Traffic recorded from many threads lands in different stripes; reports must merge
+ * them back into one ranking per window.
+ */
+class HotspotTrackerTest {
+
+    @Test
+    void reportsMergeTrafficRecordedOnEveryThread() throws InterruptedException {
+        HotspotTracker tracker = new HotspotTracker(true, 100, 4);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 1_000; i++) {
+                    tracker.record(HotspotTracker.Direction.INBOUND, "busy-room", "doc", "user", 1, 10);
+                    tracker.record(HotspotTracker.Direction.INBOUND, "quiet-room", null, null, 1, 1);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Map<String, Object> rooms = section(tracker.report("1m", 10), "1m", "room", "inbound", "bytes");
+        assertThat(rooms.get("total")).isEqualTo(8L * 1_000 * 11);
+        List<Map<String, Object>> top = topOf(rooms);
+        assertThat(top.get(0).get("key")).isEqualTo("busy-room");
+        assertThat(top.get(0).get("count")).isEqualTo(8L * 1_000 * 10);
+        assertThat(top.get(1).get("key")).isEqualTo("quiet-room");
+
+        Map<String, Object> users = section(tracker.report("1m", 10), "1m", "user", "inbound", "messages");
+        assertThat(topOf(users).get(0).get("count")).isEqualTo(8L * 1_000);
+    }
+
+    @Test
+    void disabledTrackerRecordsNothing() {
+        HotspotTracker tracker = new HotspotTracker(false, 100, 4);
+        tracker.record(HotspotTracker.Direction.OUTBOUND, "room", "doc", "user", 3, 300);
+
+        Map<String, Object> rooms = section(tracker.report("15m", 10), "15m", "room", "outbound", "messages");
+        assertThat(rooms.get("total")).isEqualTo(0L);
+        assertThat(topOf(rooms)).isEmpty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> section(Map<String, Object> report, String... path) {
+        Map<String, Object> current = report;
+        for (String name : path) {
+            current = (Map<String, Object>) current.get(name);
+        }
+        return current;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> topOf(Map<String, Object> section) {
+        return (List<Map<String, Object>>) section.get("top");
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.demo.controller;
+
+import com.example.demo.dto.RoomCreateRequest;
+import com.example.demo.service.RoomService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Range requests for stored images: a Range with a current If-Range validator gets the
+ * slice, one with a stale validator must get the whole image instead.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+class DocumentImageRangeTest {
+
+    private static final byte[] IMAGE = new byte[64];
+
+    static {
+        for (int i = 0; i < IMAGE.length; i++) {
+            IMAGE[i] = (byte) i;
+        }
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private RoomService roomService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private String imageUrl;
+
+    @BeforeEach
+    void uploadImage() throws Exception {
+        RoomCreateRequest room = new RoomCreateRequest();
+        room.setName("Range room");
+        UUID roomId = roomService.createRoom(room).getId();
+
+        MvcResult upload = mockMvc.perform(multipart("/api/rooms/{roomId}/documents/upload-image", roomId)
+                        .file(new MockMultipartFile("file", "image.gif", "image/gif", IMAGE))
+                        .param("name", "image.gif"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        String documentId = objectMapper.readTree(upload.getResponse().getContentAsString()).get("id").asText();
+        imageUrl = "/api/rooms/" + roomId + "/documents/" + documentId + "/image";
+    }
+
+    @Test
+    void currentIfRangeGetsTheSlice() throws Exception {
+        String etag = mockMvc.perform(get(imageUrl)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        MvcResult result = mockMvc.perform(get(imageUrl)
+                        .header(HttpHeaders.RANGE, "bytes=0-3")
+                        .header(HttpHeaders.IF_RANGE, etag))
+                .andExpect(status().isPartialContent())
+                .andReturn();
+
+        assertThat(result.getResponse().getContentAsByteArray()).isEqualTo(Arrays.copyOf(IMAGE, 4));
+        assertThat(result.getResponse().getHeader(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 0-3/" + IMAGE.length);
+    }
+
+    @Test
+    void staleIfRangeGetsTheWholeImage() throws Exception {
+        MvcResult result = mockMvc.perform(get(imageUrl)
+                        .header(HttpHeaders.RANGE, "bytes=0-3")
+                        .header(HttpHeaders.IF_RANGE, "\"an-older-version\""))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertThat(result.getResponse().getContentAsByteArray()).isEqualTo(IMAGE);
+        assertThat(result.getResponse().getHeader(HttpHeaders.CONTENT_RANGE)).isNull();
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.DocumentCreateRequest;
+import com.example.demo.dto.RoomCreateRequest;
+import com.example.demo.model.DocumentType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The chunk sweep against the generated schema: chunks a document still uses survive it,
+ * chunks nothing uses any more are deleted. A negative grace period makes every chunk
+ * old enough to sweep.
+ */
+@SpringBootTest(properties = {
+        "document-chunks.min-document-chars=4096",
+        "document-chunks.min-chunk-chars=64",
+        "document-chunks.avg-chunk-chars=256",
+        "document-chunks.max-chunk-chars=1024",
+        "document-chunks.sweep-grace-minutes=-1"
+})
+@ActiveProfiles("h2")
+class DocumentChunkSweepTest {
+
+    @Autowired
+    private RoomService roomService;
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private DocumentChunkStore chunkStore;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private UUID roomId;
+
+    @BeforeEach
+    void createRoom() {
+        RoomCreateRequest room = new RoomCreateRequest();
+        room.setName("Chunk room");
+        roomId = roomService.createRoom(room).getId();
+    }
+
+    @Test
+    void chunksStayWhileAnyDocumentUsesThem() {
+        String text = randomText(new Random(1), 16_384);
+        UUID first = createDocument("first", text);
+        UUID second = createDocument("second", text);
+        List<String> hashes = chunkHashesOf(first);
+        assertThat(hashes).isNotEmpty().containsExactlyInAnyOrderElementsOf(chunkHashesOf(second));
+
+        documentService.deleteDocument(first);
+        chunkStore.sweepUnreferencedChunks();
+
+        assertThat(chunkHashesOf(first)).isEmpty();
+        assertThat(storedChunks(hashes)).isEqualTo(hashes.size());
+        assertThat(documentService.getDocument(second).orElseThrow().getContent()).isEqualTo(text);
+    }
+
+    @Test
+    void chunksOfADeletedDocumentAreSwept() {
+        UUID documentId = createDocument("gone", randomText(new Random(2), 16_384));
+        List<String> hashes = chunkHashesOf(documentId);
+        assertThat(hashes).isNotEmpty();
+
+        documentService.deleteDocument(documentId);
+        chunkStore.sweepUnreferencedChunks();
+
+        assertThat(storedChunks(hashes)).isZero();
+    }
+
+    private UUID createDocument(String name, String content) {
+        DocumentCreateRequest request = new DocumentCreateRequest();
+        request.setName(name);
+        request.setType(DocumentType.word);
+        request.setContent(content);
+        return documentService.createDocument(roomId, request).orElseThrow().getId();
+    }
+
+    private List<String> chunkHashesOf(UUID documentId) {
+        return jdbcTemplate.queryForList(
+                "SELECT hash FROM document_chunk_refs WHERE document_id = ?", String.class, documentId);
+    }
+
+    private int storedChunks(List<String> hashes) {
+        int count = 0;
+        for (String hash : hashes) {
+            count += jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM document_chunks WHERE hash = ?", Integer.class, hash);
+        }
+        return count;
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() < length) {
+            text.append((char) ('a' + random.nextInt(26)));
+            if (random.nextInt(8) == 0) {
+                text.append(' ');
+            }
+        }
+        return text.toString();
+    }
+}
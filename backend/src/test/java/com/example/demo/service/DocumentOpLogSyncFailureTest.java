@@ -0,0 +1,91 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.DocumentCreateRequest;
+import com.example.demo.dto.RoomCreateRequest;
+import com.example.demo.model.DocumentType;
+import com.example.demo.util.WriteAheadLog;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * An edit is only published once its WAL record is durable: when the fsync fails the
+ * caller gets the error and the document keeps its previous text and sequence number.
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+class DocumentOpLogSyncFailureTest {
+
+    @Autowired
+    private DocumentOpLog opLog;
+
+    @Autowired
+    private RoomService roomService;
+
+    @Autowired
+    private DocumentService documentService;
+
+    @TempDir
+    Path walDir;
+
+    private Object originalWal;
+    private WriteAheadLog failingWal;
+    private UUID documentId;
+
+    @BeforeEach
+    void createDocument() throws IOException {
+        RoomCreateRequest room = new RoomCreateRequest();
+        room.setName("WAL room");
+        UUID roomId = roomService.createRoom(room).getId();
+
+        DocumentCreateRequest request = new DocumentCreateRequest();
+        request.setName("notes");
+        request.setType(DocumentType.word);
+        request.setContent("hello");
+        documentId = documentService.createDocument(roomId, request).orElseThrow().getId();
+
+        originalWal = ReflectionTestUtils.getField(opLog, "wal");
+        failingWal = new WriteAheadLog(walDir, WriteAheadLog.FsyncPolicy.ALWAYS, 50, 1 << 20) {
+            @Override
+            public void sync(long position) throws IOException {
+                throw new IOException("Input/output error");
+            }
+        };
+    }
+
+    @AfterEach
+    void restoreWal() throws IOException {
+        ReflectionTestUtils.setField(opLog, "wal", originalWal);
+        failingWal.close();
+    }
+
+    @Test
+    void failedSyncLeavesTheDocumentUnchanged() {
+        long seq = opLog.apply(documentId, "hello", null).orElseThrow();
+
+        ReflectionTestUtils.setField(opLog, "wal", failingWal);
+        assertThatThrownBy(() -> opLog.apply(documentId, "hello world", null))
+                .isInstanceOf(UncheckedIOException.class);
+
+        DocumentOpLog.DocumentState state = opLog.live(documentId).orElseThrow();
+        assertThat(state.getContent()).isEqualTo("hello");
+        assertThat(state.getSeq()).isEqualTo(seq);
+
+        ReflectionTestUtils.setField(opLog, "wal", originalWal);
+        assertThat(opLog.apply(documentId, "hello again", null)).contains(seq + 1);
+        assertThat(opLog.live(documentId).orElseThrow().getContent()).isEqualTo("hello again");
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.demo.service;
+
+import com.example.demo.config.QueryStats;
+import com.example.demo.model.Document;
+import com.example.demo.model.DocumentRevision;
+import com.example.demo.model.DocumentType;
+import com.example.demo.model.Room;
+import com.example.demo.model.RoomPermission;
+import com.example.demo.model.User;
+import com.example.demo.repository.DocumentRepository;
+import com.example.demo.repository.DocumentRevisionRepository;
+import com.example.demo.repository.RoomPermissionRepository;
+import com.example.demo.repository.RoomRepository;
+import com.example.demo.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Regression tests for N+1 queries when mapping lists to DTOs: the number of
+ * statements must not grow with the number of rows returned.
+ */
+@SpringBootTest
+@ActiveProfiles("h2")
+class DtoQueryCountTest {
+
+    @Autowired
+    private RoomService roomService;
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private DocumentRevisionRepository revisionRepository;
+
+    @Autowired
+    private RoomPermissionRepository permissionRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    void getRoomsUsesConstantQueries() {
+        User owner = seedUser();
+        seedRooms(owner, 2, 1);
+        long few = countStatements(() -> roomService.getRooms(null, 200));
+
+        seedRooms(owner, 10, 2);
+        long many = countStatements(() -> roomService.getRooms(null, 200));
+
+        assertThat(many).isEqualTo(few);
+        assertThat(many).isLessThanOrEqualTo(2);
+    }
+
+    @Test
+    void getUserRoomsUsesConstantQueries() {
+        User owner = seedUser();
+        seedRooms(owner, 1, 1);
+        // Seeding bypasses RoomService, so drop the cached dashboard before measuring
+        roomService.evictUserRooms(owner.getId());
+        long few = countStatements(() -> roomService.getUserRooms(owner.getId(), null, null));
+
+        seedRooms(owner, 8, 1);
+        Room shared = seedRooms(seedUser(), 1, 3);
+        grantPermission(shared, owner, "write");
+        roomService.evictUserRooms(owner.getId());
+        long many = countStatements(() -> roomService.getUserRooms(owner.getId(), null, null));
+
+        assertThat(roomService.getUserRooms(owner.getId(), null, null))
+                .hasSize(10)
+                .anySatisfy(room -> {
+                    assertThat(room.getId()).isEqualTo(shared.getId());
+                    assertThat(room.getPermissionLevel()).isEqualTo("write");
+                    assertThat(room.getDocumentCount()).isEqualTo(3);
+                });
+        assertThat(many).isEqualTo(few);
+        assertThat(many).isLessThanOrEqualTo(1);
+
+        // Served from the per-user cache until the user's rooms change
+        assertThat(countStatements(() -> roomService.getUserRooms(owner.getId(), null, null))).isZero();
+    }
+
+    @Test
+    void getDocumentSummariesUsesConstantQueries() {
+        User owner = seedUser();
+        Room room = seedRooms(owner, 1, 2);
+        long few = countStatements(() -> documentService.getDocumentSummaries(room.getId(), null, 200));
+
+        seedDocuments(room, owner, 12);
+        long many = countStatements(() -> documentService.getDocumentSummaries(room.getId(), null, 200));
+
+        assertThat(documentService.getDocumentSummaries(room.getId(), null, 200).getItems()).hasSize(14);
+        assertThat(many).isEqualTo(few);
+        assertThat(many).isLessThanOrEqualTo(2);
+    }
+
+    /**
+     * Run inside a fresh transaction (like open-session-in-view in a request)
+     * so lazy associations would be loaded, and counted, if not fetch-joined.
+     * Counted by the same {@link QueryStats} scope the request filter uses, so no
+     * statement may repeat either.
+     */
+    private long countStatements(Supplier<?> operation) {
+        try (QueryStats.Scope scope = QueryStats.begin("test", "countStatements")) {
+            transactionTemplate.execute(status -> operation.get());
+            assertThat(scope.getMostRepeatedCount()).isLessThanOrEqualTo(1);
+            return scope.getStatementCount();
+        }
+    }
+
+    private User seedUser() {
+        return transactionTemplate.execute(status -> {
+            String suffix = UUID.randomUUID().toString().substring(0, 8);
+            User user = new User();
+            user.setUsername("user-" + suffix);
+            user.setEmail(suffix + "@example.com");
+            user.setPasswordHash("not-a-real-hash");
+            return userRepository.save(user);
+        });
+    }
+
+    private Room seedRooms(User owner, int rooms, int documentsPerRoom) {
+        Room last = null;
+        for (int i = 0; i < rooms; i++) {
+            last = transactionTemplate.execute(status -> {
+                Room room = new Room();
+                room.setName("Room");
+                room.setRoomKey(UUID.randomUUID().toString().substring(0, 10));
+                room.setIsPasswordProtected(false);
+                room.setCreatedBy(owner);
+                return roomRepository.save(room);
+            });
+            seedDocuments(last, owner, documentsPerRoom);
+        }
+        return last;
+    }
+
+    private void grantPermission(Room room, User user, String level) {
+        transactionTemplate.execute(status -> {
+            RoomPermission permission = new RoomPermission();
+            permission.setRoom(room);
+            permission.setUser(user);
+            permission.setPermissionLevel(level);
+            return permissionRepository.save(permission);
+        });
+    }
+
+    private void seedDocuments(Room room, User owner, int documents) {
+        transactionTemplate.execute(status -> {
+            for (int i = 0; i < documents; i++) {
+                Document document = new Document();
+                document.setRoom(room);
+                document.setName("Document " + i);
+                document.setType(DocumentType.word);
+                document.setContent("content " + i);
+                document.setCreatedBy(owner);
+                documentRepository.save(document);
+
+                DocumentRevision revision = new DocumentRevision();
+                revision.setDocument(document);
+                revision.setContentDiff("previous " + i);
+                revision.setRevisionNumber(1);
+                revisionRepository.save(revision);
+            }
+            return null;
+        });
+    }
+}
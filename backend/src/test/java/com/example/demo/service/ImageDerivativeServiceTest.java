@@ -0,0 +1,93 @@
+package com.example.demo.service;
+
+import com.example.demo.model.ImageVariant;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Variants are rendered off the request thread; content that cannot be rendered must be
+ * tried once, not again on every request for it.
+ */
+class ImageDerivativeServiceTest {
+
+    private static final long MAX_PIXELS = 100 * 100;
+
+    @TempDir
+    Path cacheDir;
+
+    private ImageDerivativeService service;
+
+    @AfterEach
+    void shutdown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void rendersAnImageWithinThePixelLimit() throws Exception {
+        service = newService();
+        byte[] png = png(100, 100);
+        UUID documentId = UUID.randomUUID();
+
+        Optional<ImageDerivativeService.ImageDerivative> derivative = Optional.empty();
+        for (int i = 0; i < 100 && derivative.isEmpty(); i++) {
+            derivative = service.getDerivative(documentId, "small", ImageVariant.thumb, () -> png);
+            Thread.sleep(20);
+        }
+
+        assertThat(derivative).isPresent();
+    }
+
+    @Test
+    void undecodableContentIsNotRequeued() throws Exception {
+        service = newService();
+        assertLoadedOnce("not-an-image", "<svg xmlns=\"http://www.w3.org/2000/svg\"/>".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void imageOverThePixelLimitIsNotDecodedOrRequeued() throws Exception {
+        service = newService();
+        assertLoadedOnce("too-large", png(101, 100));
+    }
+
+    private void assertLoadedOnce(String contentHash, byte[] content) throws InterruptedException {
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<byte[]> original = () -> {
+            loads.incrementAndGet();
+            return content;
+        };
+        UUID documentId = UUID.randomUUID();
+
+        for (int i = 0; i < 25; i++) {
+            assertThat(service.getDerivative(documentId, contentHash, ImageVariant.thumb, original)).isEmpty();
+            Thread.sleep(20);
+        }
+
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    private ImageDerivativeService newService() throws IOException {
+        return new ImageDerivativeService(cacheDir.toString(), 1 << 20, 1, 16, MAX_PIXELS, 100);
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", out);
+        return out.toByteArray();
+    }
+}
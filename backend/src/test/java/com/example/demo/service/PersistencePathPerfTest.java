@@ -0,0 +1,323 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.DocumentUpdateRequest;
+import com.example.demo.dto.RoomJoinRequest;
+import com.example.demo.model.User;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.util.ContentHash;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.function.IntConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Persistence-path benchmarks against H2 in PostgreSQL mode. Seeds rooms, documents and
+ * revisions at a configurable scale, then reports statements per operation and latency
+ * percentiles for the main service calls. Fails if any operation needs more statements
+ * than recorded in {@code perf/statements-per-op.properties}.
+ * <p>
+ * Tagged "perf", so it only runs with {@code ./mvnw test -Pperf}. Scale with
+ * {@code -Dperf.rooms=10000 -Dperf.revisions=1000000}; record a new baseline into
+ * target/perf with {@code -Dperf.record-baseline=true}, which skips the checks so a
+ * baseline can be recorded even when the committed one is too tight.
+ */
+@Tag("perf")
+@SpringBootTest
+@ActiveProfiles("h2")
+@TestPropertySource(properties = {
+        // Background jobs would add their statements to the counts
+        "document-ops.flush-interval-ms=3600000",
+        "document-ops.snapshot-interval-ms=3600000",
+        "document-ops.wal.fsync=never",
+        "logging.level.com.example.demo=WARN"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class PersistencePathPerfTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(PersistencePathPerfTest.class);
+    private static final String BASELINE = "perf/statements-per-op.properties";
+    private static final int SEED_BATCH = 5000;
+
+    private final int rooms = Integer.getInteger("perf.rooms", 1000);
+    private final int documentsPerRoom = Integer.getInteger("perf.documents-per-room", 5);
+    private final int revisions = Integer.getInteger("perf.revisions", 100000);
+    private final int warmup = Integer.getInteger("perf.warmup", 50);
+    private final int iterations = Integer.getInteger("perf.iterations", 500);
+    private final boolean recordBaseline = Boolean.getBoolean("perf.record-baseline");
+
+    @Autowired
+    private RoomService roomService;
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private DocumentOpLog opLog;
+
+    @Autowired
+    private RoomKeyIndex roomKeyIndex;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private Statistics statistics;
+    private Properties baseline;
+    private final Properties measured = new Properties();
+
+    private User owner;
+    private final List<UUID> roomIds = new ArrayList<>();
+    private final List<String> roomKeys = new ArrayList<>();
+    private final List<UUID> documentIds = new ArrayList<>();
+
+    @BeforeAll
+    void seed() throws IOException {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        baseline = new Properties();
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(BASELINE)) {
+            assertThat(in).as(BASELINE).isNotNull();
+            baseline.load(in);
+        }
+
+        owner = transactionTemplate.execute(status -> {
+            User user = new User();
+            user.setUsername("perf-owner");
+            user.setEmail("perf-owner@example.com");
+            user.setPasswordHash("not-a-real-hash");
+            return userRepository.save(user);
+        });
+
+        long started = System.nanoTime();
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (int i = 0; i < rooms; i++) {
+            roomIds.add(UUID.randomUUID());
+            roomKeys.add(String.format("P%09d", i));
+        }
+        batchInsert("INSERT INTO rooms (id, room_key, name, is_password_protected, created_by, created_at, updated_at) "
+                + "VALUES (?, ?, ?, FALSE, ?, ?, ?)", rooms, (ps, i) -> {
+            ps.setObject(1, roomIds.get(i));
+            ps.setString(2, roomKeys.get(i));
+            ps.setString(3, "Room " + i);
+            ps.setObject(4, owner.getId());
+            ps.setTimestamp(5, now);
+            ps.setTimestamp(6, now);
+        });
+        // Seeded behind RoomService's back, so the key index has to learn the keys too
+        roomKeys.forEach(roomKeyIndex::add);
+
+        int documents = rooms * documentsPerRoom;
+        for (int i = 0; i < documents; i++) {
+            documentIds.add(UUID.randomUUID());
+        }
+        batchInsert("INSERT INTO documents (id, room_id, name, type, content, content_hash, content_size, snapshot_seq, "
+                + "created_by, created_at, updated_at) VALUES (?, ?, ?, 'word', ?, ?, ?, 0, ?, ?, ?)", documents, (ps, i) -> {
+            String content = "Document " + i + " of the persistence benchmark.";
+            ps.setObject(1, documentIds.get(i));
+            ps.setObject(2, roomIds.get(i / documentsPerRoom));
+            ps.setString(3, "Document " + i);
+            ps.setString(4, content);
+            ps.setString(5, ContentHash.of(content));
+            ps.setLong(6, content.length());
+            ps.setObject(7, owner.getId());
+            ps.setTimestamp(8, now);
+            ps.setTimestamp(9, now);
+        });
+
+        batchInsert("INSERT INTO document_revisions (id, document_id, content_diff, revision_number, created_at) "
+                + "VALUES (?, ?, ?, ?, ?)", revisions, (ps, i) -> {
+            ps.setObject(1, UUID.randomUUID());
+            ps.setObject(2, documentIds.get(i % documents));
+            ps.setString(3, "Revision " + i);
+            ps.setInt(4, i / documents + 1);
+            ps.setTimestamp(5, now);
+        });
+
+        logger.warn("Seeded {} rooms, {} documents and {} revisions in {} ms", rooms, documents, revisions,
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    @AfterAll
+    void writeBaseline() throws IOException {
+        if (!recordBaseline) {
+            return;
+        }
+        Path out = Paths.get("target", "perf", "statements-per-op.properties");
+        Files.createDirectories(out.getParent());
+        try (OutputStream stream = Files.newOutputStream(out)) {
+            measured.store(stream, "Statements per operation; copy to src/test/resources/" + BASELINE);
+        }
+        logger.warn("Recorded baseline in {}", out.toAbsolutePath());
+    }
+
+    @Test
+    void updateDocument() {
+        // A working set of documents being edited, as in a busy room
+        int workingSet = Math.min(20, documentIds.size());
+        measure("updateDocument", i -> {
+            DocumentUpdateRequest request = new DocumentUpdateRequest();
+            request.setContent("Edited content, revision " + i);
+            int document = i % workingSet;
+            documentService.updateDocument(roomIds.get(document / documentsPerRoom), documentIds.get(document), request);
+        });
+    }
+
+    @Test
+    void getDocumentSummaries() {
+        measure("getDocumentSummaries", i -> documentService.getDocumentSummaries(roomIds.get(i % rooms), null, 50));
+    }
+
+    @Test
+    void getRooms() {
+        measure("getRooms", i -> roomService.getRooms(null, 50));
+    }
+
+    @Test
+    void joinRoom() {
+        // Every join grants a new permission, the expensive case
+        measure("joinRoom", i -> {
+            RoomJoinRequest request = new RoomJoinRequest();
+            request.setRoomKey(roomKeys.get(i % rooms));
+            request.setUserId(owner.getId());
+            roomService.joinRoom(request);
+        });
+    }
+
+    @Test
+    void revisionGrowth() {
+        UUID documentId = documentIds.get(documentIds.size() - 1);
+        UUID roomId = roomIds.get((documentIds.size() - 1) / documentsPerRoom);
+        long before = countRevisions(documentId);
+        for (int i = 0; i < iterations; i++) {
+            DocumentUpdateRequest request = new DocumentUpdateRequest();
+            request.setContent("Growth " + i);
+            documentService.updateDocument(roomId, documentId, request);
+        }
+        opLog.flush();
+        opLog.snapshot();
+
+        // Edits are folded into one revision per snapshot instead of one per update
+        long added = countRevisions(documentId) - before;
+        long pendingOps = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM document_ops WHERE document_id = ?", Long.class, documentId);
+        logger.warn(String.format("%-22s %d updates -> %d revisions, %d ops left after snapshot",
+                "revisionGrowth", iterations, added, pendingOps));
+        measured.setProperty("revisionsPerSnapshot", Long.toString(added));
+        assertThat(pendingOps).isZero();
+        if (!recordBaseline) {
+            assertThat((double) added).isLessThanOrEqualTo(baselineFor("revisionsPerSnapshot"));
+        }
+    }
+
+    /**
+     * Run an operation {@code warmup + iterations} times, each in its own transaction
+     * (as a request would be), and check the measured statements per operation.
+     */
+    private void measure(String name, IntConsumer operation) {
+        for (int i = 0; i < warmup; i++) {
+            int index = i;
+            transactionTemplate.executeWithoutResult(status -> operation.accept(index));
+        }
+
+        long[] nanos = new long[iterations];
+        long statements = 0;
+        for (int i = 0; i < iterations; i++) {
+            int index = warmup + i;
+            statistics.clear();
+            long started = System.nanoTime();
+            transactionTemplate.executeWithoutResult(status -> operation.accept(index));
+            nanos[i] = System.nanoTime() - started;
+            statements += statistics.getPrepareStatementCount();
+        }
+
+        Arrays.sort(nanos);
+        double perOp = (double) statements / iterations;
+        logger.warn(String.format("%-22s %6.2f stmts/op  p50 %8.1f us  p95 %8.1f us  p99 %8.1f us  max %8.1f us",
+                name, perOp, micros(nanos, 0.50), micros(nanos, 0.95), micros(nanos, 0.99), nanos[nanos.length - 1] / 1000.0));
+        measured.setProperty(name, String.format("%.2f", perOp));
+
+        if (!recordBaseline) {
+            assertThat(perOp).as("statements per %s", name).isLessThanOrEqualTo(baselineFor(name));
+        }
+    }
+
+    private double baselineFor(String name) {
+        String value = baseline.getProperty(name);
+        assertThat(value).as("baseline for %s in %s", name, BASELINE).isNotNull();
+        return Double.parseDouble(value);
+    }
+
+    private long countRevisions(UUID documentId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM document_revisions WHERE document_id = ?", Long.class, documentId);
+    }
+
+    private void batchInsert(String sql, int rows, RowSetter setter) {
+        for (int start = 0; start < rows; start += SEED_BATCH) {
+            int from = start;
+            int size = Math.min(SEED_BATCH, rows - start);
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    setter.set(ps, from + i);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return size;
+                }
+            }));
+        }
+    }
+
+    private static double micros(long[] sortedNanos, double percentile) {
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)] / 1000.0;
+    }
+
+    @FunctionalInterface
+    private interface RowSetter {
+        void set(PreparedStatement ps, int row) throws SQLException;
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.demo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Admission by share of the limit, additive growth while the limit is in use, and at
+ * most one multiplicative cut per round trip of slow calls.
+ */
+class AimdLimiterTest {
+
+    private static final long SLO_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    @Test
+    void admitsUpToTheShareOfTheLimit() {
+        AimdLimiter limiter = new AimdLimiter(10, 1, 100, 0.5, SLO_NANOS);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(limiter.tryAcquire(0.5)).isTrue();
+        }
+        // Low-priority work stops at half the limit, leaving the rest for more important calls
+        assertThat(limiter.tryAcquire(0.5)).isFalse();
+        for (int i = 0; i < 5; i++) {
+            assertThat(limiter.tryAcquire(1.0)).isTrue();
+        }
+        assertThat(limiter.tryAcquire(1.0)).isFalse();
+        assertThat(limiter.getInFlight()).isEqualTo(10);
+
+        limiter.release(System.nanoTime());
+        assertThat(limiter.tryAcquire(1.0)).isTrue();
+    }
+
+    @Test
+    void alwaysAdmitsOneCallHoweverSmallTheShare() {
+        AimdLimiter limiter = new AimdLimiter(2, 1, 100, 0.5, SLO_NANOS);
+
+        assertThat(limiter.tryAcquire(0.1)).isTrue();
+        assertThat(limiter.tryAcquire(0.1)).isFalse();
+    }
+
+    @Test
+    void growsByOnePerLimitOfFastCallsWhileBusy() {
+        AimdLimiter limiter = new AimdLimiter(10, 1, 100, 0.5, TimeUnit.SECONDS.toNanos(10));
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire(1.0);
+        }
+
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire(1.0);
+            limiter.release(System.nanoTime());
+        }
+
+        assertThat(limiter.getLimit()).isEqualTo(10);
+        limiter.tryAcquire(1.0);
+        limiter.release(System.nanoTime());
+        assertThat(limiter.getLimit()).isEqualTo(11);
+    }
+
+    @Test
+    void doesNotGrowWhileMostlyIdle() {
+        AimdLimiter limiter = new AimdLimiter(10, 1, 100, 0.5, TimeUnit.SECONDS.toNanos(10));
+
+        for (int i = 0; i < 1_000; i++) {
+            limiter.tryAcquire(1.0);
+            limiter.release(System.nanoTime());
+        }
+
+        assertThat(limiter.getLimit()).isEqualTo(10);
+    }
+
+    @Test
+    void cutsAtMostOncePerRoundTripOfSlowCalls() throws InterruptedException {
+        AimdLimiter limiter = new AimdLimiter(40, 1, 100, 0.5, SLO_NANOS);
+        long[] starts = new long[10];
+        for (int i = 0; i < starts.length; i++) {
+            limiter.tryAcquire(1.0);
+            starts[i] = System.nanoTime();
+        }
+        TimeUnit.MILLISECONDS.sleep(10);
+
+        // All ten started before the first cut, so they count as one congestion signal
+        for (long start : starts) {
+            limiter.release(start);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(20);
+
+        // A call started after that cut can cut again
+        limiter.tryAcquire(1.0);
+        long start = System.nanoTime();
+        TimeUnit.MILLISECONDS.sleep(10);
+        limiter.release(start);
+        assertThat(limiter.getLimit()).isEqualTo(10);
+    }
+
+    @Test
+    void unrefusedCallsCountTowardsTheLimit() {
+        AimdLimiter limiter = new AimdLimiter(2, 1, 100, 0.5, SLO_NANOS);
+        limiter.acquire();
+        limiter.acquire();
+
+        assertThat(limiter.tryAcquire(1.0)).isFalse();
+        limiter.acquire();
+        assertThat(limiter.getInFlight()).isEqualTo(3);
+    }
+
+    @Test
+    void usesTheGivenLatencySample() throws InterruptedException {
+        AimdLimiter limiter = new AimdLimiter(10, 1, 100, 0.5, SLO_NANOS);
+        limiter.tryAcquire(1.0);
+        long start = System.nanoTime();
+        TimeUnit.MILLISECONDS.sleep(10);
+
+        // Slow overall, but the part that was measured was within the SLO
+        limiter.release(start, 0);
+        assertThat(limiter.getLimit()).isEqualTo(10);
+
+        limiter.tryAcquire(1.0);
+        limiter.release(System.nanoTime(), SLO_NANOS + 1);
+        assertThat(limiter.getLimit()).isEqualTo(5);
+    }
+
+    @Test
+    void staysWithinItsBounds() throws InterruptedException {
+        AimdLimiter limiter = new AimdLimiter(4, 3, 5, 0.5, SLO_NANOS);
+        limiter.tryAcquire(1.0);
+        long start = System.nanoTime();
+        TimeUnit.MILLISECONDS.sleep(10);
+        limiter.release(start);
+
+        assertThat(limiter.getLimit()).isEqualTo(3);
+        assertThat(new AimdLimiter(50, 3, 5, 0.5, SLO_NANOS).getLimit()).isEqualTo(5);
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        assertThatThrownBy(() -> new AimdLimiter(10, 0, 100, 0.5, SLO_NANOS))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new AimdLimiter(10, 20, 10, 0.5, SLO_NANOS))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new AimdLimiter(10, 1, 100, 1.0, SLO_NANOS))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
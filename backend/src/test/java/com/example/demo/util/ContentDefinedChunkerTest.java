@@ -0,0 +1,94 @@
+package com.example.demo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Chunk boundaries must reassemble the text, respect the size limits, and depend on
+ * content rather than offsets, so an edit only changes the chunks around it.
+ */
+class ContentDefinedChunkerTest {
+
+    private static final int MIN = 256;
+    private static final int AVG = 1024;
+    private static final int MAX = 8192;
+
+    private final ContentDefinedChunker chunker = new ContentDefinedChunker(MIN, AVG, MAX);
+
+    @Test
+    void chunksReassembleTheTextWithinTheSizeLimits() {
+        String text = randomText(new Random(5), 500_000);
+        List<String> chunks = chunker.split(text);
+
+        assertThat(String.join("", chunks)).isEqualTo(text);
+        for (int i = 0; i < chunks.size() - 1; i++) {
+            assertThat(chunks.get(i).length()).isBetween(MIN + 1, MAX);
+        }
+        double mean = (double) text.length() / chunks.size();
+        assertThat(mean).isBetween(AVG / 2.0, AVG * 2.0);
+    }
+
+    @Test
+    void anEditOnlyChangesNearbyChunks() {
+        String text = randomText(new Random(8), 500_000);
+        String edited = text.substring(0, 250_000) + "inserted in the middle" + text.substring(250_000);
+
+        List<String> before = chunker.split(text);
+        List<String> after = chunker.split(edited);
+
+        Set<String> unchanged = new HashSet<>(before);
+        unchanged.retainAll(new HashSet<>(after));
+        // Cuts resynchronize within a chunk or two of the edit
+        assertThat(unchanged.size()).isGreaterThanOrEqualTo(before.size() - 3);
+        assertThat(chunker.split(text)).isEqualTo(before);
+    }
+
+    @Test
+    void neverSplitsASurrogatePair() {
+        StringBuilder text = new StringBuilder();
+        Random random = new Random(13);
+        while (text.length() < 200_000) {
+            text.appendCodePoint(0x1F600 + random.nextInt(64));
+            if (random.nextInt(4) == 0) {
+                text.append((char) ('a' + random.nextInt(26)));
+            }
+        }
+
+        List<String> chunks = chunker.split(text.toString());
+
+        assertThat(String.join("", chunks)).isEqualTo(text.toString());
+        for (String chunk : chunks) {
+            assertThat(Character.isHighSurrogate(chunk.charAt(chunk.length() - 1))).isFalse();
+            assertThat(Character.isLowSurrogate(chunk.charAt(0))).isFalse();
+        }
+    }
+
+    @Test
+    void shortTextIsOneChunk() {
+        assertThat(chunker.split("short")).containsExactly("short");
+        assertThat(chunker.split("")).isEmpty();
+    }
+
+    @Test
+    void rejectsSizesOutOfOrder() {
+        assertThatThrownBy(() -> new ContentDefinedChunker(1024, 1024, 8192))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ContentDefinedChunker(0, 1024, 8192))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(random.nextInt(12) == 0 ? ' ' : (char) ('a' + random.nextInt(26)));
+        }
+        return text.toString();
+    }
+}
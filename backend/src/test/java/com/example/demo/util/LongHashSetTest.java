@@ -0,0 +1,82 @@
+package com.example.demo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Open addressing with backward-shift deletion, checked against {@link HashSet}. Heavy
+ * churn over a small key range keeps probe runs long and wrapping around the table, which
+ * is where a wrong shift would leave a value unreachable.
+ */
+class LongHashSetTest {
+
+    @Test
+    void matchesHashSetUnderChurn() {
+        Random random = new Random(17);
+        LongHashSet set = new LongHashSet(16);
+        Set<Long> model = new HashSet<>();
+
+        for (int i = 0; i < 200_000; i++) {
+            long value = 1 + random.nextInt(3_000);
+            if (random.nextBoolean()) {
+                assertThat(set.add(value)).isEqualTo(model.add(value));
+            } else {
+                assertThat(set.remove(value)).isEqualTo(model.remove(value));
+            }
+            if (i % 1_000 == 0) {
+                assertSameContents(set, model, 3_000);
+            }
+        }
+        assertSameContents(set, model, 3_000);
+    }
+
+    @Test
+    void valuesStayReachableAfterRemovingTheirPredecessors() {
+        LongHashSet set = new LongHashSet(1_000);
+        for (long value = 1; value <= 1_000; value++) {
+            set.add(value);
+        }
+        for (long value = 1; value <= 1_000; value += 2) {
+            assertThat(set.remove(value)).isTrue();
+        }
+
+        for (long value = 1; value <= 1_000; value++) {
+            assertThat(set.contains(value)).isEqualTo(value % 2 == 0);
+        }
+        assertThat(set.size()).isEqualTo(500);
+    }
+
+    @Test
+    void growsPastItsExpectedSize() {
+        LongHashSet set = new LongHashSet(4);
+        for (long value = 1; value <= 10_000; value++) {
+            set.add(value * 0x9E3779B97F4A7C15L);
+        }
+
+        assertThat(set.size()).isEqualTo(10_000);
+        for (long value = 1; value <= 10_000; value++) {
+            assertThat(set.contains(value * 0x9E3779B97F4A7C15L)).isTrue();
+        }
+    }
+
+    @Test
+    void rejectsZero() {
+        LongHashSet set = new LongHashSet(16);
+
+        assertThatThrownBy(() -> set.add(0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> set.contains(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static void assertSameContents(LongHashSet set, Set<Long> model, int maxValue) {
+        assertThat(set.size()).isEqualTo(model.size());
+        for (long value = 1; value <= maxValue; value++) {
+            assertThat(set.contains(value)).isEqualTo(model.contains(value));
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.demo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Rope edits checked against a plain StringBuilder, plus the AVL height bound that keeps
+ * them O(log n).
+ */
+class RopeTest {
+
+    @Test
+    void roundTripsTextAcrossLeaves() {
+        String text = randomText(new Random(1), Rope.MAX_LEAF * 5 + 17);
+        Rope rope = Rope.of(text);
+
+        assertThat(rope.toString()).isEqualTo(text);
+        assertThat(rope.length()).isEqualTo(text.length());
+        assertThat(rope.charAt(Rope.MAX_LEAF)).isEqualTo(text.charAt(Rope.MAX_LEAF));
+        assertThat(rope.substring(Rope.MAX_LEAF - 3, Rope.MAX_LEAF * 2 + 3))
+                .isEqualTo(text.substring(Rope.MAX_LEAF - 3, Rope.MAX_LEAF * 2 + 3));
+        assertThat(Rope.of("").isEmpty()).isTrue();
+        assertThat(Rope.of(null).toString()).isEqualTo("");
+    }
+
+    @Test
+    void randomSplicesMatchStringBuilder() throws Exception {
+        Random random = new Random(42);
+        StringBuilder model = new StringBuilder(randomText(random, 20_000));
+        Rope rope = Rope.of(model.toString());
+
+        for (int i = 0; i < 2_000; i++) {
+            int position = random.nextInt(model.length() + 1);
+            int deleteCount = random.nextInt(Math.min(model.length() - position, 3_000) + 1);
+            String insert = randomText(random, random.nextInt(i % 10 == 0 ? 3_000 : 20));
+            model.replace(position, position + deleteCount, insert);
+            rope = rope.splice(position, deleteCount, insert);
+        }
+
+        assertThat(rope.toString()).isEqualTo(model.toString());
+        assertThat(rope.length()).isEqualTo(model.length());
+        assertThat(rope.lineCount()).isEqualTo(model.toString().split("\n", -1).length);
+        StringWriter written = new StringWriter();
+        rope.writeTo(written);
+        assertThat(written.toString()).isEqualTo(model.toString());
+    }
+
+    @Test
+    void editsLeaveEarlierVersionsUnchanged() {
+        Rope original = Rope.of("hello world");
+        Rope edited = original.splice(6, 5, "rope").insert(0, ">> ").delete(3, 1);
+
+        assertThat(original.toString()).isEqualTo("hello world");
+        assertThat(edited.toString()).isEqualTo(">> ello rope");
+    }
+
+    @Test
+    void staysBalancedUnderAppendsAndSplits() {
+        // Appending at the end and cutting at the front are the cases that degenerate an unbalanced tree
+        Random random = new Random(7);
+        Rope rope = Rope.empty();
+        for (int i = 0; i < 20_000; i++) {
+            rope = rope.insert(rope.length(), randomText(random, 1 + random.nextInt(Rope.MAX_LEAF)));
+        }
+        assertBalanced(rope);
+
+        for (int i = 0; i < 5_000; i++) {
+            rope = rope.delete(0, Math.min(rope.length(), 1 + random.nextInt(50)));
+            rope = rope.insert(random.nextInt(rope.length() + 1), "x");
+        }
+        assertBalanced(rope);
+    }
+
+    @Test
+    void convertsBetweenLinesAndOffsets() {
+        StringBuilder model = new StringBuilder();
+        for (int line = 0; line < 3_000; line++) {
+            model.append("line ").append(line).append('\n');
+        }
+        String text = model.toString();
+        // Joined from pieces cut mid-line, so newline counts must add up across uneven leaves
+        Rope rope = Rope.of(text.substring(0, 5_003)).insert(5_003, text.substring(5_003));
+
+        int offset = 0;
+        for (int line = 0; line < rope.lineCount(); line++) {
+            assertThat(rope.lineStartOffset(line)).isEqualTo(offset);
+            assertThat(rope.lineOfOffset(offset)).isEqualTo(line);
+            offset = text.indexOf('\n', offset) + 1;
+        }
+        assertThat(rope.lineCount()).isEqualTo(3_001);
+        assertThat(rope.lineOfOffset(rope.length())).isEqualTo(3_000);
+    }
+
+    @Test
+    void measuresCommonPrefixAndSuffix() {
+        String text = randomText(new Random(3), Rope.MAX_LEAF * 3);
+        Rope rope = Rope.of(text);
+        String other = text.substring(0, 2_000) + "#" + text.substring(2_001);
+
+        assertThat(rope.commonPrefixLength(other)).isEqualTo(2_000);
+        assertThat(rope.commonSuffixLength(other, text.length())).isEqualTo(text.length() - 2_001);
+        assertThat(rope.commonSuffixLength(other, 10)).isEqualTo(10);
+        assertThat(rope.commonPrefixLength(text + "more")).isEqualTo(text.length());
+    }
+
+    @Test
+    void rejectsSplicesOutsideTheText() {
+        Rope rope = Rope.of("abc");
+
+        assertThatThrownBy(() -> rope.splice(2, 2, "x")).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> rope.splice(-1, 0, "x")).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> rope.charAt(3)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    // AVL trees are at most ~1.44 log2(n) high; leaves hold at least one char
+    private static void assertBalanced(Rope rope) {
+        double bound = 1.45 * Math.log(rope.length() + 2) / Math.log(2) + 1;
+        assertThat(rope.height()).isLessThanOrEqualTo((int) bound);
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(random.nextInt(40) == 0 ? '\n' : (char) ('a' + random.nextInt(26)));
+        }
+        return text.toString();
+    }
+}
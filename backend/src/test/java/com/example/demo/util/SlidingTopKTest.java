@@ -0,0 +1,67 @@
+package com.example.demo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Traffic counts only while its bucket is inside the window, with time passed in
+ * explicitly so the window can be moved without waiting.
+ */
+class SlidingTopKTest {
+
+    // Six 10-second buckets
+    private final SlidingTopK<String> topK = new SlidingTopK<>(8, Duration.ofMinutes(1), 6);
+
+    @Test
+    void mergesBucketsInsideTheWindow() {
+        topK.add("a", 5, 0);
+        topK.add("b", 3, 15_000);
+        topK.add("a", 2, 25_000);
+
+        SpaceSaving<String> window = topK.snapshot(30_000);
+
+        assertThat(window.getTotal()).isEqualTo(10L);
+        assertThat(keys(window)).containsExactly("a", "b");
+        assertThat(window.top(1).get(0).getCount()).isEqualTo(7L);
+    }
+
+    @Test
+    void dropsBucketsThatSlideOut() {
+        topK.add("a", 5, 0);
+        topK.add("b", 3, 15_000);
+
+        // Bucket 0 is more than a window behind bucket 6
+        assertThat(keys(topK.snapshot(65_000))).containsExactly("b");
+        assertThat(topK.snapshot(75_000).isEmpty()).isTrue();
+    }
+
+    @Test
+    void reusesASlotForANewBucket() {
+        topK.add("old", 9, 1_000);
+        // Same ring slot, one full window later
+        topK.add("new", 1, 61_000);
+
+        SpaceSaving<String> window = topK.snapshot(61_000);
+
+        assertThat(keys(window)).containsExactly("new");
+        assertThat(window.getTotal()).isEqualTo(1L);
+    }
+
+    @Test
+    void rejectsWindowsShorterThanTheirBuckets() {
+        assertThatThrownBy(() -> new SlidingTopK<String>(8, Duration.ofMillis(3), 6))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static List<String> keys(SpaceSaving<String> summary) {
+        return summary.top(Integer.MAX_VALUE).stream()
+                .map(SpaceSaving.Entry::getKey)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.demo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Space-Saving must be exact while every key fits, and beyond that keep its guarantees:
+ * counts overestimate by at most their error, and heavy keys are never lost.
+ */
+class SpaceSavingTest {
+
+    @Test
+    void isExactWhileEveryKeyFits() {
+        SpaceSaving<String> summary = new SpaceSaving<>(10);
+        summary.add("a", 5);
+        summary.add("b", 7);
+        summary.add("a", 4);
+        summary.add("c", 1);
+
+        List<SpaceSaving.Entry<String>> top = summary.top(2);
+
+        assertThat(top).hasSize(2);
+        assertThat(top.get(0).getKey()).isEqualTo("a");
+        assertThat(top.get(0).getCount()).isEqualTo(9L);
+        assertThat(top.get(0).getError()).isEqualTo(0L);
+        assertThat(top.get(1).getKey()).isEqualTo("b");
+        assertThat(summary.getTotal()).isEqualTo(17L);
+    }
+
+    @Test
+    void boundsCountsAndKeepsHeavyKeysOnASkewedStream() {
+        int capacity = 20;
+        SpaceSaving<Integer> summary = new SpaceSaving<>(capacity);
+        Map<Integer, Long> exact = new HashMap<>();
+        Random random = new Random(23);
+
+        // A few heavy keys in a long tail of 5,000 light ones
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt(10) < 4 ? random.nextInt(5) : 100 + random.nextInt(5_000);
+            long weight = 1 + random.nextInt(3);
+            summary.add(key, weight);
+            exact.merge(key, weight, Long::sum);
+        }
+
+        long total = exact.values().stream().mapToLong(Long::longValue).sum();
+        assertThat(summary.getTotal()).isEqualTo(total);
+        List<SpaceSaving.Entry<Integer>> top = summary.top(capacity);
+        for (SpaceSaving.Entry<Integer> entry : top) {
+            long trueCount = exact.get(entry.getKey());
+            assertThat(entry.getCount()).isGreaterThanOrEqualTo(trueCount);
+            assertThat(entry.getCount() - entry.getError()).isLessThanOrEqualTo(trueCount);
+        }
+        List<Integer> heaviest = summary.top(5).stream()
+                .map(SpaceSaving.Entry::getKey)
+                .collect(Collectors.toList());
+        for (int heavy = 0; heavy < 5; heavy++) {
+            assertThat(exact.get(heavy)).isGreaterThan(total / capacity);
+        }
+        assertThat(heaviest).contains(0, 1, 2, 3, 4);
+    }
+
+    @Test
+    void mergesSummaries() {
+        SpaceSaving<String> first = new SpaceSaving<>(4);
+        first.add("a", 3);
+        first.add("b", 1);
+        SpaceSaving<String> second = new SpaceSaving<>(4);
+        second.add("a", 2);
+        second.add("c", 6);
+
+        SpaceSaving<String> merged = new SpaceSaving<>(4);
+        merged.addAll(first);
+        merged.addAll(second);
+
+        assertThat(merged.getTotal()).isEqualTo(12L);
+        assertThat(merged.top(1).get(0).getKey()).isEqualTo("c");
+        assertThat(merged.top(2).get(1).getKey()).isEqualTo("a");
+        assertThat(merged.top(2).get(1).getCount()).isEqualTo(5L);
+    }
+
+    @Test
+    void ignoresNonPositiveWeights() {
+        SpaceSaving<String> summary = new SpaceSaving<>(4);
+        summary.add("a", 0);
+        summary.add("b", -3);
+
+        assertThat(summary.isEmpty()).isTrue();
+        assertThat(summary.getTotal()).isEqualTo(0L);
+    }
+
+    @Test
+    void rejectsNonPositiveCapacity() {
+        assertThatThrownBy(() -> new SpaceSaving<String>(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.demo.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * The splice computed between two texts must be minimal and reproduce the new text,
+ * whether the old one is a string or a rope.
+ */
+class TextEditTest {
+
+    @Test
+    void findsTheSpliceBetweenCommonPrefixAndSuffix() {
+        TextEdit edit = TextEdit.between("the quick fox", "the slow fox");
+
+        assertThat(edit.getPosition()).isEqualTo(4);
+        assertThat(edit.getDeleteCount()).isEqualTo(5);
+        assertThat(edit.getInsertText()).isEqualTo("slow");
+    }
+
+    @Test
+    void equalTextsNeedNoEdit() {
+        assertThat(TextEdit.between("same", "same")).isNull();
+        assertThat(TextEdit.between(Rope.of("same"), "same")).isNull();
+        assertThat(TextEdit.between(Rope.empty(), "")).isNull();
+        assertThat(TextEdit.between((String) null, "")).isNull();
+    }
+
+    @Test
+    void overlappingPrefixAndSuffixAreNotCountedTwice() {
+        // "aa" -> "aaa": prefix and suffix both match everything, the edit is one inserted char
+        TextEdit edit = TextEdit.between("aa", "aaa");
+
+        assertThat(edit.getDeleteCount()).isEqualTo(0);
+        assertThat(edit.getInsertText()).isEqualTo("a");
+        assertThat(edit.applyTo("aa")).isEqualTo("aaa");
+
+        TextEdit fromRope = TextEdit.between(Rope.of("aaa"), "aa");
+        assertThat(fromRope.getDeleteCount()).isEqualTo(1);
+        assertThat(fromRope.getInsertText()).isEqualTo("");
+        assertThat(fromRope.applyTo(Rope.of("aaa")).toString()).isEqualTo("aa");
+    }
+
+    @Test
+    void ropeAndStringAgreeOnRandomEdits() {
+        Random random = new Random(11);
+        String before = randomText(random, Rope.MAX_LEAF * 4);
+        Rope rope = Rope.of(before);
+        for (int i = 0; i < 500; i++) {
+            int position = random.nextInt(before.length() + 1);
+            int deleteCount = random.nextInt(Math.min(before.length() - position, 200) + 1);
+            String after = before.substring(0, position) + randomText(random, random.nextInt(200))
+                    + before.substring(position + deleteCount);
+
+            TextEdit fromString = TextEdit.between(before, after);
+            TextEdit fromRope = TextEdit.between(rope, after);
+
+            if (fromString == null) {
+                assertThat(fromRope).isNull();
+                continue;
+            }
+            assertThat(fromRope.getPosition()).isEqualTo(fromString.getPosition());
+            assertThat(fromRope.getDeleteCount()).isEqualTo(fromString.getDeleteCount());
+            assertThat(fromRope.getInsertText()).isEqualTo(fromString.getInsertText());
+            assertThat(fromString.applyTo(before)).isEqualTo(after);
+            rope = fromRope.applyTo(rope);
+            assertThat(rope.toString()).isEqualTo(after);
+            before = after;
+        }
+    }
+
+    @Test
+    void rejectsEditsThatDoNotFit() {
+        TextEdit edit = new TextEdit(3, 2, "x");
+
+        assertThatThrownBy(() -> edit.applyTo("abcd")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> edit.applyTo(Rope.of("abcd"))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // Small alphabet, so prefixes and suffixes often match by chance
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append((char) ('a' + random.nextInt(3)));
+        }
+        return text.toString();
+    }
+}
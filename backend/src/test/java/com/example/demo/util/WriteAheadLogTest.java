@@ -0,0 +1,189 @@
+package com.example.demo.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Framing and recovery of the write-ahead log: what a restart sees after clean shutdowns,
+ * crashes mid-write, corruption and checkpoints.
+ */
+class WriteAheadLogTest {
+
+    private static final int MAX_RECORD_BYTES = 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recoversRecordsFromEarlierRuns() throws IOException {
+        try (WriteAheadLog wal = open(WriteAheadLog.FsyncPolicy.ALWAYS)) {
+            wal.sync(wal.append(bytes("first")));
+            wal.sync(wal.append(bytes("second")));
+        }
+
+        try (WriteAheadLog wal = open(WriteAheadLog.FsyncPolicy.ALWAYS)) {
+            assertThat(strings(wal.recover())).containsExactly("first", "second");
+            wal.deleteSegmentsBefore(wal.currentSegment());
+        }
+
+        try (WriteAheadLog wal = open(WriteAheadLog.FsyncPolicy.ALWAYS)) {
+            assertThat(wal.recover()).isEmpty();
+        }
+    }
+
+    @Test
+    void positionsCountFramedBytes() throws IOException {
+        try (WriteAheadLog wal = open(WriteAheadLog.FsyncPolicy.NEVER)) {
+            long first = wal.append(bytes("abc"));
+            long second = wal.append(bytes("de"));
+
+            // 4-byte length and 4-byte CRC in front of each payload
+            assertThat(first).isEqualTo(8 + 3L);
+            assertThat(second).isEqualTo(first + 8 + 2);
+        }
+    }
+
+    @Test
+    void stopsAtATornTail() throws IOException {
+        try (WriteAheadLog wal = open(WriteAheadLog.FsyncPolicy.ALWAYS)) {
+            wal.append(bytes("complete"));
+            wal.append(bytes("torn by a crash"));
+        }
+        Path segment = onlySegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        try (WriteAheadLog wal = open(WriteAheadLog.FsyncPolicy.ALWAYS)) {
+            assertThat(strings(wal.recover())).containsExactly("complete");
+        }
+    }
+
+    @Test
+    void stopsAtAChecksumMismatch() throws IOException {
+        try (WriteAheadLog wal = open(WriteAheadLog.FsyncPolicy.ALWAYS)) {
+            wal.append(bytes("intact"));
+            wal.append(bytes("corrupted"));
+            wal.append(bytes("after the corruption"));
+        }
+        Path segment = onlySegment();
+        byte[] content = Files.readAllBytes(segment);
+        // First payload byte of the second record
+        content[8 + "intact".length() + 8] ^= 0x01;
+        Files.write(segment, content);
+
+        try (WriteAheadLog wal = open(WriteAheadLog.FsyncPolicy.ALWAYS)) {
+            assertThat(strings(wal.recover())).containsExactly("intact");
+        }
+    }
+
+    @Test
+    void stopsAtAnImpossibleLength() throws IOException {
+        try (WriteAheadLog wal = open(WriteAheadLog.FsyncPolicy.ALWAYS)) {
+            wal.append(bytes("intact"));
+        }
+        Path segment = onlySegment();
+        // A header claiming more than the record limit, as garbage after a crash might
+        Files.write(segment, new byte[] {0x7F, 0, 0, 0, 0, 0, 0, 0, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        try (WriteAheadLog wal = open(WriteAheadLog.FsyncPolicy.ALWAYS)) {
+            assertThat(strings(wal.recover())).containsExactly("intact");
+        }
+    }
+
+    @Test
+    void deletesSegmentsBeforeACheckpoint() throws IOException {
+        try (WriteAheadLog wal = open(WriteAheadLog.FsyncPolicy.INTERVAL)) {
+            wal.append(bytes("checkpointed"));
+            long checkpoint = wal.roll();
+            wal.append(bytes("pending"));
+
+            assertThat(segments()).hasSize(2);
+            wal.deleteSegmentsBefore(checkpoint);
+            assertThat(segments()).hasSize(1);
+        }
+
+        try (WriteAheadLog wal = open(WriteAheadLog.FsyncPolicy.ALWAYS)) {
+            assertThat(strings(wal.recover())).containsExactly("pending");
+        }
+    }
+
+    @Test
+    void rollingAnEmptySegmentKeepsIt() throws IOException {
+        try (WriteAheadLog wal = open(WriteAheadLog.FsyncPolicy.ALWAYS)) {
+            long segment = wal.currentSegment();
+
+            assertThat(wal.roll()).isEqualTo(segment);
+            assertThat(segments()).hasSize(1);
+        }
+    }
+
+    @Test
+    void recoversSegmentsOldestFirst() throws IOException {
+        try (WriteAheadLog wal = open(WriteAheadLog.FsyncPolicy.ALWAYS)) {
+            wal.append(bytes("one"));
+            wal.roll();
+            wal.append(bytes("two"));
+            wal.roll();
+            wal.append(bytes("three"));
+        }
+
+        try (WriteAheadLog wal = open(WriteAheadLog.FsyncPolicy.ALWAYS)) {
+            assertThat(strings(wal.recover())).containsExactly("one", "two", "three");
+        }
+    }
+
+    @Test
+    void rejectsOversizedRecords() throws IOException {
+        try (WriteAheadLog wal = open(WriteAheadLog.FsyncPolicy.ALWAYS)) {
+            assertThatThrownBy(() -> wal.append(new byte[MAX_RECORD_BYTES + 1]))
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    private WriteAheadLog open(WriteAheadLog.FsyncPolicy policy) throws IOException {
+        return new WriteAheadLog(directory, policy, 10, MAX_RECORD_BYTES);
+    }
+
+    // The segment written by the one run so far; empty segments opened since are skipped
+    private Path onlySegment() throws IOException {
+        List<Path> written = new ArrayList<>();
+        for (Path segment : segments()) {
+            if (Files.size(segment) > 0) {
+                written.add(segment);
+            }
+        }
+        assertThat(written).hasSize(1);
+        return written.get(0);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> strings(List<byte[]> records) {
+        return records.stream()
+                .map(record -> new String(record, StandardCharsets.UTF_8))
+                .collect(Collectors.toList());
+    }
+}
@@ -10,8 +10,9 @@ export async function GET(
   const roomId = params.roomId;
   console.log(`Forwarding GET request for documents in room ${roomId} to backend`);
   
-  // Forward to backend
-  const backendUrl = `http://localhost:8080/api/rooms/${roomId}/documents`;
+  // Forward to backend, keeping the paging parameters
+  const search = request.nextUrl.searchParams.toString();
+  const backendUrl = `http://localhost:8080/api/rooms/${roomId}/documents${search ? `?${search}` : ''}`;
   
   // Forward authorization header if present
   const authHeader = request.headers.get('authorization');
@@ -28,10 +29,19 @@ export async function GET(
       headers,
     });
     
+    if (!response.ok) {
+      return NextResponse.json(
+        { error: `Backend returned status ${response.status}` },
+        { status: response.status }
+      );
+    }
+    
     const data = await response.json();
     console.log(`Retrieved ${data.length} documents from backend for room ${roomId}`);
     
-    return NextResponse.json(data);
+    // The cursor for the next page travels in a header, so pass it through
+    const nextCursor = response.headers.get('X-Next-Cursor');
+    return NextResponse.json(data, nextCursor ? { headers: { 'X-Next-Cursor': nextCursor } } : undefined);
   } catch (error) {
     console.error(`Error forwarding GET request to backend for room ${roomId}:`, error);
     return NextResponse.json(
@@ -16,6 +16,7 @@ import { Switch } from '@/components/ui/switch'
 import { storeRoomPassword } from '@/lib/dev-storage'
 import { useAuth } from "@/contexts/AuthContext"
 import { authService } from "@/lib/auth-service"
+import { rememberRoomAccess } from "@/lib/room-access"
 
 export default function CreateRoomPage() {
   const router = useRouter()
@@ -130,6 +131,7 @@ export default function CreateRoomPage() {
         localStorage.setItem('username', username)
       }
       localStorage.setItem('currentRoom', JSON.stringify(data))
+      rememberRoomAccess(data)
       
       // Store the password again after successful room creation
       // This ensures we have the password stored for this room key
@@ -11,9 +11,11 @@ import { AnimatedBackground } from "@/components/animated-background"
 import { KeyRound, Lock } from "lucide-react"
 import { AlertCircle } from 'lucide-react'
 import { Alert, AlertDescription, AlertTitle } from '@/components/ui/alert'
-import { roomHasPassword, getRoomDocuments, storeRoomState, storeRoomDocuments } from '@/lib/dev-storage'
+import { roomHasPassword, getRoomDocuments, storeRoomState } from '@/lib/dev-storage'
+import { fetchRoomDocumentSummaries } from '@/lib/documents-api'
 import { useAuth } from "@/contexts/AuthContext"
 import { authService } from "@/lib/auth-service"
+import { getRoomTicket, rememberRoomAccess } from "@/lib/room-access"
 
 export default function JoinRoomPage() {
   const router = useRouter()
@@ -118,8 +120,8 @@ export default function JoinRoomPage() {
     // Use the password protection status from the API data
     console.log(`Room ${roomKey} password protected (from state): ${isPasswordProtected}`);
 
-    if (isPasswordProtected) {
-      // If room is password protected, move to password step
+    if (isPasswordProtected && !storedTicket()) {
+      // If room is password protected and we hold no ticket for it, move to password step
       setStep('password');
     } else {
       // If not password protected, join the room directly
@@ -137,9 +139,13 @@ export default function JoinRoomPage() {
     handleJoinRoom();
   };
 
+  // The access ticket from an earlier join of this room, which spares typing the password again
+  const storedTicket = () => (roomData && roomData.id ? getRoomTicket(roomData.id) : null);
+
   const handleJoinRoom = async () => {
     setError('');
     setIsLoading(true);
+    const ticket = storedTicket();
 
     try {
       console.log(`Joining room ${roomKey} with username ${username}${isPasswordProtected ? ' and password' : ''}`);
@@ -149,7 +155,7 @@ export default function JoinRoomPage() {
       // Use authenticated API if user is logged in, otherwise use guest API
       if (isAuthenticated) {
         console.log('Joining room with authenticated user')
-        room = await authService.joinRoom(roomKey, isPasswordProtected ? password : undefined)
+        room = await authService.joinRoom(roomKey, isPasswordProtected ? password : undefined, ticket)
       } else {
         console.log('Joining room as guest user')
         const response = await fetch('/api/rooms/join', {
@@ -161,6 +167,7 @@ export default function JoinRoomPage() {
             roomKey,
             username,
             password: isPasswordProtected ? password : undefined,
+            ticket: ticket || undefined,
           }),
         });
 
@@ -178,20 +185,18 @@ export default function JoinRoomPage() {
         localStorage.setItem('username', username);
       }
       localStorage.setItem('currentRoom', JSON.stringify(room));
+      rememberRoomAccess(room);
       
       // Fetch documents from the database first
       console.log(`Fetching documents from database for room ${room.id}...`);
       
       try {
-        const docsResponse = await fetch(`/api/rooms/${room.id}/documents`);
-        if (docsResponse.ok) {
-          const documents = await docsResponse.json();
+        // Summaries carry no content, so they only pick the editor; it loads the documents itself
+        const documents = await fetchRoomDocumentSummaries(room.id);
+        if (documents !== null) {
           console.log(`Found ${documents.length} documents in database for room ${room.id}`);
           
           if (documents.length > 0) {
-            // Store documents locally for offline use
-            storeRoomDocuments(room.id, documents);
-            
             // Get the editor type from the first document
             const editorType = documents[0].type;
             console.log(`Documents found in database. Redirecting to editor with type: ${editorType}`);
@@ -209,7 +214,7 @@ export default function JoinRoomPage() {
             return;
           }
         } else {
-          console.log(`No documents found in database for room ${room.id}, status: ${docsResponse.status}`);
+          console.log(`Could not list documents in database for room ${room.id}`);
         }
       } catch (dbError) {
         console.error('Error fetching documents from database:', dbError);
@@ -245,6 +250,10 @@ export default function JoinRoomPage() {
       }
     } catch (error: any) {
       console.error('Error joining room:', error);
+      if (isPasswordProtected && !password) {
+        // The stored ticket was refused (expired, or the password changed), so ask for the password
+        setStep('password');
+      }
       setError(error.message || 'Failed to join room');
     } finally {
       setIsLoading(false);
@@ -4,7 +4,8 @@ import { useEffect, useState } from 'react';
 import { useRouter } from 'next/navigation';
 import { AppSidebar } from '@/components/app-sidebar';
 import { EditorSelection } from '@/components/editor-selection';
-import { storeRoomState, storeRoomDocuments, getRoomState, getRoomDocuments } from '@/lib/dev-storage';
+import { storeRoomState, getRoomState, getRoomDocuments } from '@/lib/dev-storage';
+import { fetchRoomDocumentSummaries } from '@/lib/documents-api';
 
 interface EditorSelectionPageProps {
   params: Promise<{
@@ -41,19 +42,17 @@ export default function EditorSelectionPage({ params }: EditorSelectionPageProps
         // 1. First, try to fetch documents from the database
         try {
           console.log(`Select page: Fetching documents from database for room ${roomId}...`);
-          const docsResponse = await fetch(`/api/rooms/${roomId}/documents`);
-          if (docsResponse.ok) {
-            const dbDocuments = await docsResponse.json();
+          // Summaries only: enough to pick the editor, but not cached as the room's documents
+          // since they carry no content; the editor loads the full documents itself
+          const dbDocuments = await fetchRoomDocumentSummaries(roomId);
+          if (dbDocuments !== null) {
             console.log(`Select page: Found ${dbDocuments.length} documents in database for room ${roomId}`);
             
             if (dbDocuments.length > 0) {
               documents = dbDocuments;
-              // Store documents locally for offline use
-              storeRoomDocuments(roomId, documents);
-              console.log(`Select page: Stored ${documents.length} documents locally for room ${roomId}`);
             }
           } else {
-            console.log(`Select page: No documents found in database for room ${roomId}, status: ${docsResponse.status}`);
+            console.log(`Select page: Could not list documents in database for room ${roomId}`);
           }
         } catch (dbError) {
           console.error('Select page: Error fetching documents from database:', dbError);
@@ -31,6 +31,7 @@ import {
 } from "lucide-react"
 import { useAuth } from "@/contexts/AuthContext"
 import { authService, type Room } from "@/lib/auth-service"
+import { getRoomTicket, rememberRoomAccess } from "@/lib/room-access"
 
 type AppSidebarProps = {
   defaultOpen?: boolean
@@ -158,8 +159,9 @@ export function AppSidebar({ defaultOpen = false }: AppSidebarProps) {
       // For authenticated users navigating to their own rooms, we can assume they have access
       // But we still need to check if it's password protected and handle accordingly
       
-      if (room.isPasswordProtected) {
-        // For password-protected rooms, redirect to join page with room key
+      const ticket = getRoomTicket(room.id)
+      if (room.isPasswordProtected && !ticket) {
+        // For password-protected rooms we hold no ticket for, redirect to join page with room key
         console.log(`Room ${room.name} is password protected, redirecting to join page`)
         router.push(`/join?roomKey=${room.roomKey}`)
         closeSidebar()
@@ -169,11 +171,12 @@ export function AppSidebar({ defaultOpen = false }: AppSidebarProps) {
       // For non-password protected rooms or rooms the user created, 
       // we can join directly via API to ensure proper permissions
       console.log(`Joining room ${room.name} directly...`)
-      const joinResult = await authService.joinRoom(room.roomKey)
+      const joinResult = await authService.joinRoom(room.roomKey, undefined, ticket)
       
       if (joinResult) {
         // Store the room metadata
         localStorage.setItem('currentRoom', JSON.stringify(joinResult))
+        rememberRoomAccess(joinResult)
         
         // Navigate to the room
         router.push(`/room/${roomId}/select`)
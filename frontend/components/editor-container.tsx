@@ -43,6 +43,8 @@ import {
 import { Tooltip, TooltipContent, TooltipProvider, TooltipTrigger } from "@/components/ui/tooltip"
 import { storeRoomDocuments, getRoomDocuments, debugRoomStorage, forceSaveDocument } from "@/lib/dev-storage"
 import { getRoomState, storeRoomState } from "@/lib/dev-storage"
+import { fetchRoomDocuments } from "@/lib/documents-api"
+import { roomSocketUrl } from "@/lib/room-access"
 
 type Document = {
   id: string
@@ -112,7 +114,8 @@ export function EditorContainer({
   const [roomKey, setRoomKey] = useState<string>("")
   const [roomName, setRoomName] = useState<string>("")
 
-  const { isConnected, lastMessage, sendMessage } = useWebSocket(`ws://localhost:8080/ws/room/${roomId}`)
+  // Carries the JWT and any room ticket; password rooms refuse bare handshakes
+  const { isConnected, lastMessage, sendMessage } = useWebSocket(roomSocketUrl(roomId))
 
   // Send JOIN message when WebSocket connects (only once)
   useEffect(() => {
@@ -301,10 +304,10 @@ export function EditorContainer({
       
       // First try to fetch from backend database
       try {
-        const response = await fetch(`/api/rooms/${roomId}/documents`);
-        if (response.ok) {
-          const docs = await response.json();
-          if (docs && docs.length > 0) {
+        // Listings are paged and carry no content, so this follows the cursor and loads each document
+        const docs = await fetchRoomDocuments(roomId);
+        if (docs !== null) {
+          if (docs.length > 0) {
             console.log(`Found ${docs.length} documents from database for room ${roomId}:`, docs);
             
             // Convert backend document format to frontend format
@@ -357,7 +360,7 @@ export function EditorContainer({
             return;
           }
         } else {
-          console.log(`No documents found in database for room ${roomId}, status: ${response.status}`);
+          console.log(`Could not load documents from database for room ${roomId}`);
         }
       } catch (error) {
         console.error(`Error fetching documents from database for room ${roomId}:`, error);
@@ -2,6 +2,12 @@
 
 import { useState, useEffect, useCallback, useRef } from 'react'
 
+// Close code the server sends when it drains before a restart
+const SERVICE_RESTART_CLOSE_CODE = 1012
+
+// Spread for the reconnect delay when the server gave none
+const DEFAULT_RESTART_SPREAD_MS = 5000
+
 interface WebSocketHook {
   isConnected: boolean
   lastMessage: MessageEvent | null
@@ -24,6 +30,8 @@ export function useWebSocket(url: string): WebSocketHook {
   const reconnectTimeoutRef = useRef<NodeJS.Timeout | null>(null);
   const socketRef = useRef<WebSocket | null>(null);
   const MAX_RECONNECT_ATTEMPTS = 3 // Reduced from 10
+  // Delay the server asked for in a RECONNECT frame before closing with SERVICE_RESTART
+  const restartDelayRef = useRef<number | null>(null);
   
   // Create a function to connect to WebSocket that we can reuse
   const connectToWebSocket = useCallback(() => {
@@ -68,6 +76,12 @@ export function useWebSocket(url: string): WebSocketHook {
 
       ws.onmessage = (event) => {
         try {
+          if (typeof event.data === 'string' && event.data.includes('"RECONNECT"')) {
+            const message = JSON.parse(event.data);
+            if (message.type === 'RECONNECT' && typeof message.retryAfterMs === 'number') {
+              restartDelayRef.current = message.retryAfterMs;
+            }
+          }
           setLastMessage(event);
           console.log(`📨 WebSocket message received:`, event.data.substring(0, 100));
         } catch (err) {
@@ -79,6 +93,24 @@ export function useWebSocket(url: string): WebSocketHook {
         console.log(`🔌 WebSocket disconnected (code: ${event.code}, clean: ${event.wasClean})`);
         setIsConnected(false);
         
+        // The server is draining: reconnect (to another node) after the delay it gave,
+        // which differs per client so the reconnects are spread out
+        if (event.code === SERVICE_RESTART_CLOSE_CODE) {
+          const delay = restartDelayRef.current ?? Math.floor(Math.random() * DEFAULT_RESTART_SPREAD_MS);
+          restartDelayRef.current = null;
+          console.log(`🔄 Server restarting, reconnecting in ${delay}ms...`);
+          
+          if (reconnectTimeoutRef.current) {
+            clearTimeout(reconnectTimeoutRef.current);
+          }
+          
+          reconnectTimeoutRef.current = setTimeout(() => {
+            setReconnectAttempts(0);
+            connectToWebSocket();
+          }, delay);
+          return;
+        }
+        
         // Only reconnect if it wasn't a clean close and we haven't exceeded max attempts
         if (!event.wasClean && reconnectAttempts < MAX_RECONNECT_ATTEMPTS) {
           const delay = Math.min(1000 * (reconnectAttempts + 1), 5000); // Max 5 second delay
@@ -155,7 +155,7 @@ class AuthService {
     return response.json()
   }
 
-  async joinRoom(roomKey: string, password?: string): Promise<Room> {
+  async joinRoom(roomKey: string, password?: string, ticket?: string | null): Promise<Room> {
     // First, try to check if the user already has access to this room
     // This bypasses password protection for rooms they created or have permissions for
     try {
@@ -182,6 +182,8 @@ class AuthService {
       body: JSON.stringify({
         roomKey,
         password,
+        // A ticket from an earlier join stands in for the password
+        ticket: ticket || undefined,
         userId: this.getCurrentUserId(),
       }),
     })
@@ -0,0 +1,91 @@
+/**
+ * Client helpers for the room document API.
+ *
+ * The listing (GET /api/rooms/:roomId/documents) returns summaries without content, one
+ * page at a time: while more rows follow, the response carries an X-Next-Cursor header to
+ * send back as ?cursor=. Content comes from GET /api/rooms/:roomId/documents/:documentId.
+ */
+
+export const NEXT_CURSOR_HEADER = 'X-Next-Cursor';
+
+// Marker the backend puts in `content` for documents whose data is served by /image
+const BINARY_CONTENT_MARKER = 'BINARY_CONTENT_AVAILABLE';
+
+// Content requests in flight at once when opening a room
+const CONTENT_FETCH_CONCURRENCY = 4;
+
+/**
+ * Every document summary in the room, following the cursor to the last page.
+ * Returns null if the listing could not be fetched.
+ */
+export async function fetchRoomDocumentSummaries(roomId: string): Promise<any[] | null> {
+  const summaries: any[] = [];
+  let cursor: string | null = null;
+
+  do {
+    const url: string = cursor
+      ? `/api/rooms/${roomId}/documents?cursor=${encodeURIComponent(cursor)}`
+      : `/api/rooms/${roomId}/documents`;
+    const response = await fetch(url);
+    if (!response.ok) {
+      console.warn(`Failed to list documents for room ${roomId}, status: ${response.status}`);
+      return null;
+    }
+    const page = await response.json();
+    summaries.push(...page);
+    cursor = response.headers.get(NEXT_CURSOR_HEADER);
+  } while (cursor);
+
+  return summaries;
+}
+
+/**
+ * The text content of one document, or null if it could not be fetched.
+ * Image documents have no text content; their data comes from the /image endpoint.
+ */
+export async function fetchDocumentContent(roomId: string, documentId: string): Promise<string | null> {
+  const response = await fetch(`/api/rooms/${roomId}/documents/${documentId}`);
+  if (!response.ok) {
+    console.warn(`Failed to fetch document ${documentId} in room ${roomId}, status: ${response.status}`);
+    return null;
+  }
+  const document = await response.json();
+  if (!document.content || document.content === BINARY_CONTENT_MARKER) {
+    return '';
+  }
+  return document.content;
+}
+
+/**
+ * Every document in the room with its text content loaded. Returns null if the listing
+ * or any document's content could not be fetched: showing such a document empty would
+ * let the next save overwrite the stored text.
+ */
+export async function fetchRoomDocuments(roomId: string): Promise<any[] | null> {
+  const summaries = await fetchRoomDocumentSummaries(roomId);
+  if (summaries === null) {
+    return null;
+  }
+
+  const documents: any[] = new Array(summaries.length);
+  let next = 0;
+  let failed = false;
+  const worker = async () => {
+    while (!failed && next < summaries.length) {
+      const index = next++;
+      const summary = summaries[index];
+      const isImage = summary.contentType && summary.contentType.startsWith('image/');
+      const content = isImage ? '' : await fetchDocumentContent(roomId, summary.id);
+      if (content === null) {
+        failed = true;
+        return;
+      }
+      documents[index] = { ...summary, content };
+    }
+  };
+  await Promise.all(
+    Array.from({ length: Math.min(CONTENT_FETCH_CONCURRENCY, summaries.length) }, worker)
+  );
+
+  return failed ? null : documents;
+}
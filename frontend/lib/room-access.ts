@@ -0,0 +1,50 @@
+/**
+ * Credentials for a room's WebSocket handshake.
+ *
+ * The backend authenticates /ws/room/:roomId handshakes from the `token` query parameter
+ * (browsers cannot set headers on WebSockets). Guests of password-protected rooms, and
+ * signed-in users without a stored permission, present the `ticket` that room creation
+ * and joins return as `accessTicket` instead of sending the password again.
+ */
+
+const ticketKey = (roomId: string) => `room_ticket_${roomId}`;
+
+/**
+ * Keep the access ticket from a create or join response, if it has one.
+ */
+export function rememberRoomAccess(room: any): void {
+  if (typeof window === 'undefined' || !room || !room.id || !room.accessTicket) {
+    return;
+  }
+  try {
+    localStorage.setItem(ticketKey(room.id), room.accessTicket);
+  } catch (e) {
+    console.error(`Error storing access ticket for room ${room.id}:`, e);
+  }
+}
+
+export function getRoomTicket(roomId: string): string | null {
+  if (typeof window === 'undefined') {
+    return null;
+  }
+  return localStorage.getItem(ticketKey(roomId));
+}
+
+/**
+ * The room's WebSocket URL with whatever credentials this browser holds for it.
+ */
+export function roomSocketUrl(roomId: string): string {
+  const params = new URLSearchParams();
+  if (typeof window !== 'undefined') {
+    const token = localStorage.getItem('auth_token');
+    if (token) {
+      params.set('token', token);
+    }
+    const ticket = getRoomTicket(roomId);
+    if (ticket) {
+      params.set('ticket', ticket);
+    }
+  }
+  const query = params.toString();
+  return `ws://localhost:8080/ws/room/${roomId}${query ? `?${query}` : ''}`;
+}